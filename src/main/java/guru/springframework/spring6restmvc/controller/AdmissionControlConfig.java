@@ -0,0 +1,58 @@
+package guru.springframework.spring6restmvc.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Puts {@link AdmissionControlFilter} in front of {@code /api/v1/*} when {@code admission.enabled=true}.
+ * Rejections are counted as {@code http.server.admission.rejected}, tagged by reason.
+ */
+@Configuration
+@ConditionalOnProperty(name = "admission.enabled", havingValue = "true")
+public class AdmissionControlConfig {
+
+    @Value("${admission.client.rate:50}")
+    private double clientRate;
+
+    @Value("${admission.client.burst:100}")
+    private int clientBurst;
+
+    @Value("${admission.endpoint.rate:2000}")
+    private double endpointRate;
+
+    @Value("${admission.endpoint.burst:4000}")
+    private int endpointBurst;
+
+    @Value("${admission.max-keys:100000}")
+    private int maxKeys;
+
+    @Value("${admission.concurrency.initial-limit:50}")
+    private int initialLimit;
+
+    @Value("${admission.concurrency.min-limit:10}")
+    private int minLimit;
+
+    @Value("${admission.concurrency.max-limit:500}")
+    private int maxLimit;
+
+    @Bean
+    FilterRegistrationBean<AdmissionControlFilter> admissionControlFilter(MeterRegistry meterRegistry) {
+        AdmissionControlFilter filter = new AdmissionControlFilter(
+                new RateLimiter(clientRate, clientBurst, maxKeys),
+                new RateLimiter(endpointRate, endpointBurst, maxKeys),
+                new ConcurrencyLimit(initialLimit, minLimit, maxLimit),
+                System::nanoTime, meterRegistry);
+
+        FilterRegistrationBean<AdmissionControlFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/api/v1/*");
+        // right after the observation filter, so rejected requests still show up in http.server.requests
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+
+        return registration;
+    }
+}
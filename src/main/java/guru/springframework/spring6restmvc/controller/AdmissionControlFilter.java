@@ -0,0 +1,160 @@
+package guru.springframework.spring6restmvc.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Admits a request only when both the bucket of its client and the bucket of its endpoint hold a token, and
+ * the {@link ConcurrencyLimit} has room. Otherwise it answers 429 or 503 with a Retry-After header right away,
+ * without reaching the controllers.
+ *
+ * The client is the remote address. The endpoint is the method and the path with ids replaced, so
+ * {@code GET /api/v1/beer/{id}} shares one bucket across beers. An asynchronous request holds its slot until it
+ * completes, not just until the controller returns.
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final long OVERLOAD_RETRY_SECONDS = 1;
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final RateLimiter clientLimiter;
+    private final RateLimiter endpointLimiter;
+    private final ConcurrencyLimit concurrencyLimit;
+    private final LongSupplier clock;
+    private final Counter rateLimited;
+    private final Counter overloaded;
+
+    AdmissionControlFilter(RateLimiter clientLimiter, RateLimiter endpointLimiter,
+                           ConcurrencyLimit concurrencyLimit, LongSupplier clock, MeterRegistry registry) {
+        this.clientLimiter = clientLimiter;
+        this.endpointLimiter = endpointLimiter;
+        this.concurrencyLimit = concurrencyLimit;
+        this.clock = clock;
+
+        this.rateLimited = Counter.builder("http.server.admission.rejected")
+                .tag("reason", "rate-limit")
+                .register(registry);
+        this.overloaded = Counter.builder("http.server.admission.rejected")
+                .tag("reason", "overload")
+                .register(registry);
+        Gauge.builder("http.server.admission.concurrency.limit", concurrencyLimit, ConcurrencyLimit::getLimit)
+                .register(registry);
+        Gauge.builder("http.server.admission.in.flight", concurrencyLimit, ConcurrencyLimit::getInFlight)
+                .register(registry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = clock.getAsLong();
+
+        // a token taken from the client bucket is not handed back when the endpoint bucket is empty
+        long wait = clientLimiter.tryAcquire(request.getRemoteAddr(), start);
+        if (wait == 0) {
+            wait = endpointLimiter.tryAcquire(endpoint(request), start);
+        }
+        if (wait > 0) {
+            rateLimited.increment();
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, TimeUnit.NANOSECONDS.toSeconds(wait + ONE_SECOND - 1));
+            return;
+        }
+
+        if (!concurrencyLimit.tryAcquire()) {
+            overloaded.increment();
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, OVERLOAD_RETRY_SECONDS);
+            return;
+        }
+
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new Release(start));
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                concurrencyLimit.release(clock.getAsLong() - start);
+            }
+        }
+    }
+
+    static String endpoint(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        StringBuilder endpoint = new StringBuilder(request.getMethod().length() + path.length() + 1)
+                .append(request.getMethod()).append(' ');
+
+        int from = 0;
+        while (from < path.length()) {
+            int to = path.indexOf('/', from + 1);
+            if (to < 0) {
+                to = path.length();
+            }
+
+            if (isUuid(path, from + 1, to)) {
+                endpoint.append("/{id}");
+            } else {
+                endpoint.append(path, from, to);
+            }
+            from = to;
+        }
+
+        return endpoint.toString();
+    }
+
+    private static boolean isUuid(String path, int from, int to) {
+        return to - from == 36 && path.charAt(from + 8) == '-' && path.charAt(from + 13) == '-'
+                && path.charAt(from + 18) == '-' && path.charAt(from + 23) == '-';
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, long retryAfterSeconds) {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+    }
+
+    private class Release implements AsyncListener {
+
+        private final long start;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Release(long start) {
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            if (released.compareAndSet(false, true)) {
+                concurrencyLimit.release(clock.getAsLong() - start);
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -1,74 +1,295 @@
 package guru.springframework.spring6restmvc.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.spring6restmvc.model.BeerBatchResult;
+import guru.springframework.spring6restmvc.model.BeerChangeFeed;
 import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.services.AsyncBeerService;
+import guru.springframework.spring6restmvc.services.BeerCursor;
 import guru.springframework.spring6restmvc.services.BeerService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by jt, Spring Framework Guru.
+ *
+ * Single beer operations go through {@link AsyncBeerService} when there is one, for a backing service that
+ * blocks, and release the request thread until the service is done; see {@link ServiceCalls}. The list,
+ * search and bulk endpoints work on in-memory indexes and stay synchronous.
  */
 @Slf4j
 @RequiredArgsConstructor
 @RestController
 @RequestMapping("/api/v1/beer")
 public class BeerController {
+    public static final int BATCH_CHUNK_SIZE = 1000;
+    public static final int MAX_CHANGES = 1000;
+    // below the servlet container's async timeout
+    public static final int MAX_CHANGES_WAIT_SECONDS = 25;
+
     private final BeerService beerService;
+    // empty unless the backing service blocks
+    private final Optional<AsyncBeerService> asyncBeerService;
+    private final ObjectMapper objectMapper;
+    private final MappingJackson2CborHttpMessageConverter cborConverter;
+    private final MappingJackson2SmileHttpMessageConverter smileConverter;
+    private final ListResponseCache listResponseCache;
+    private final IdempotentPosts idempotentPosts;
 
     @PatchMapping("/{beerId}")
-    public ResponseEntity<?> updateBeerPatchById(@PathVariable("beerId")UUID beerId, @RequestBody BeerDTO beer){
+    public Object updateBeerPatchById(@PathVariable("beerId")UUID beerId, @RequestBody BeerDTO beer,
+                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
 
-        beerService.patchBeerById(beerId, beer);
+        beer.setVersion(ETags.expectedVersion(beerId, ifMatch));
 
-        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        return ServiceCalls.respondAfter(asyncBeerService, () -> beerService.patchBeerById(beerId, beer),
+                async -> async.patchBeerById(beerId, beer), () -> new ResponseEntity<Void>(HttpStatus.NO_CONTENT));
     }
 
     @DeleteMapping("/{beerId}")
-    public ResponseEntity<?> deleteById(@PathVariable("beerId") UUID beerId){
-
-        beerService.deleteById(beerId);
+    public Object deleteById(@PathVariable("beerId") UUID beerId){
 
-        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        return ServiceCalls.respondAfter(asyncBeerService, () -> beerService.deleteById(beerId),
+                async -> async.deleteById(beerId), () -> new ResponseEntity<Void>(HttpStatus.NO_CONTENT));
     }
 
     @PutMapping("/{beerId}")
-    public ResponseEntity<?> updateById(@PathVariable("beerId")UUID beerId, @RequestBody BeerDTO beer){
+    public Object updateById(@PathVariable("beerId")UUID beerId, @RequestBody BeerDTO beer,
+                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+
+        beer.setVersion(ETags.expectedVersion(beerId, ifMatch));
+
+        return ServiceCalls.respondAfter(asyncBeerService, () -> beerService.updateBeerById(beerId, beer),
+                async -> async.updateBeerById(beerId, beer), () -> new ResponseEntity<Void>(HttpStatus.NO_CONTENT));
+    }
 
-        beerService.updateBeerById(beerId, beer);
+    /**
+     * Adds {@code delta} to the quantity on hand, or takes it away when negative. Answers 409 when there is
+     * not enough stock, and the adjusted beer otherwise.
+     */
+    @PostMapping("/{beerId}/inventory")
+    public Object adjustInventory(@PathVariable("beerId") UUID beerId,
+                                  @RequestParam("delta") int delta,
+                                  @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept)
+            throws HttpMediaTypeNotAcceptableException {
+        MediaType mediaType = ListResponseCache.negotiate(accept);
 
-        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        return ServiceCalls.respond(asyncBeerService, () -> beerService.adjustInventory(beerId, delta),
+                async -> async.adjustInventory(beerId, delta), adjusted -> respond(adjusted, mediaType));
     }
 
+    /**
+     * Creates a beer. With an {@value IdempotentPosts#IDEMPOTENCY_KEY} header, retries get the response of the
+     * first request instead of creating another beer.
+     */
     @PostMapping()
-    public ResponseEntity<?> handlePost(@RequestBody BeerDTO beer){
+    public Object handlePost(@RequestBody BeerDTO beer,
+                             @RequestHeader(value = IdempotentPosts.IDEMPOTENCY_KEY, required = false) String idempotencyKey){
+
+        // a direct call, or a retry of a post already answered, is done by now
+        return ServiceCalls.settled(idempotentPosts.execute("beer", idempotencyKey, beer, () -> asyncBeerService
+                .map(async -> async.saveNewBeer(beer))
+                .orElseGet(() -> CompletableFuture.completedFuture(beerService.saveNewBeer(beer)))
+                .thenApply(savedBeer -> {
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.add("Location", "/api/v1/beer/" + savedBeer.getId().toString());
+
+                    return new ResponseEntity<>(headers, HttpStatus.CREATED);
+                })));
+    }
 
-        BeerDTO savedBeer = beerService.saveNewBeer(beer);
+    /**
+     * Bulk import, reads an array or a sequence of beers incrementally and hands them to the service in chunks.
+     * Beers come as JSON, NDJSON, CBOR or Smile.
+     *
+     * The items before a malformed one are imported and reported, the malformed one is reported as failed with its
+     * position and the rest of the body is not read; the response is 207 then, 200 otherwise.
+     */
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, BinaryFormatsConfig.APPLICATION_SMILE_VALUE})
+    public ResponseEntity<List<BeerBatchResult>> handleBatch(InputStream body,
+                                                             @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType) throws IOException {
+        List<BeerBatchResult> results = new ArrayList<>();
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.add("Location", "/api/v1/beer/" + savedBeer.getId().toString());
+        ObjectMapper mapper = objectMapper;
+        if (MediaType.APPLICATION_CBOR.isCompatibleWith(contentType)) {
+            mapper = cborConverter.getObjectMapper();
+        } else if (BinaryFormatsConfig.APPLICATION_SMILE.isCompatibleWith(contentType)) {
+            mapper = smileConverter.getObjectMapper();
+        }
 
-        return new ResponseEntity<>(headers, HttpStatus.CREATED);
+        // a root level array is unwrapped, so arrays and sequences read the same way
+        try (MappingIterator<BeerDTO> beers = mapper.readerFor(BeerDTO.class).readValues(body)) {
+            List<BeerDTO> chunk = new ArrayList<>(BATCH_CHUNK_SIZE);
+
+            try {
+                while (beers.hasNextValue()) {
+                    chunk.add(beers.nextValue());
+
+                    if (chunk.size() == BATCH_CHUNK_SIZE) {
+                        results.addAll(beerService.upsertBeers(chunk));
+                        chunk = new ArrayList<>(BATCH_CHUNK_SIZE);
+                    }
+                }
+            } catch (JsonProcessingException e) {
+                // the stream cannot be resynchronized after a malformed item, the items read before it still count
+                if (!chunk.isEmpty()) {
+                    results.addAll(beerService.upsertBeers(chunk));
+                }
+                results.add(BeerBatchResult.builder()
+                        .status(BeerBatchResult.Status.FAILED)
+                        .message("Malformed beer at index " + results.size() + ": " + e.getOriginalMessage())
+                        .build());
+
+                return ResponseEntity.status(HttpStatus.MULTI_STATUS).body(results);
+            }
+
+            if (!chunk.isEmpty()) {
+                results.addAll(beerService.upsertBeers(chunk));
+            }
+        }
+
+        return ResponseEntity.ok(results);
     }
 
+    /**
+     * A page of beers. With {@code after=<beer name>,<id>} of the last beer a client has, the page is the
+     * beers that follow it in name order instead, and {@code page} is ignored.
+     */
     @GetMapping()
-    public List<BeerDTO> listBeers(){
-        return beerService.listBeers();
+    public ResponseEntity<byte[]> listBeers(@RequestParam(value = "beerName", required = false) String beerName,
+                                            @RequestParam(value = "beerStyle", required = false) BeerStyle beerStyle,
+                                            @RequestParam(value = "after", required = false) String after,
+                                            @PageableDefault(size = 25, sort = "beerName") Pageable pageable,
+                                            WebRequest request) throws HttpMediaTypeNotAcceptableException, IOException {
+        BeerCursor cursor = after == null ? null : cursor(after, pageable.getSort());
+        Sort.Order byName = pageable.getSort().getOrderFor("beerName");
+        boolean descending = byName != null && byName.isDescending();
+
+        // read the count before the page, a write in between only costs the client a full response next time
+        long modificationCount = beerService.getModificationCount();
+
+        return listResponseCache.respond("beer", modificationCount, request, () -> cursor == null
+                ? beerService.listBeers(beerName, beerStyle, pageable).getContent()
+                : beerService.listBeersAfter(beerName, beerStyle, cursor, pageable.getPageSize(), descending).getContent());
+    }
+
+    @GetMapping("/search")
+    public List<BeerDTO> searchBeers(@RequestParam("q") String query,
+                                     @PageableDefault(size = 25) Pageable pageable){
+        return beerService.searchBeers(query, pageable).getContent();
+    }
+
+    /**
+     * Inserts, updates and deletes after sequence {@code since}. Without {@code since} the response only carries
+     * the sequence to follow from. With {@code wait} the request long-polls for up to that many seconds until
+     * there is a change, and returns an empty feed if there is none.
+     */
+    @GetMapping("/changes")
+    public CompletableFuture<BeerChangeFeed> getChanges(@RequestParam(value = "since", required = false) Long since,
+                                                        @RequestParam(value = "limit", defaultValue = "" + MAX_CHANGES) int limit,
+                                                        @RequestParam(value = "wait", defaultValue = "0") int waitSeconds){
+        if (limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be positive");
+        }
+        int max = Math.min(limit, MAX_CHANGES);
+
+        BeerChangeFeed feed = beerService.getChanges(since, max);
+        if (!feed.getChanges().isEmpty() || waitSeconds <= 0) {
+            return CompletableFuture.completedFuture(feed);
+        }
+
+        long from = feed.getLastSequence();
+        return beerService.awaitChange(from)
+                .completeOnTimeout(null, Math.min(waitSeconds, MAX_CHANGES_WAIT_SECONDS), TimeUnit.SECONDS)
+                .thenApply(changed -> beerService.getChanges(from, max));
+    }
+
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamBeers(@RequestHeader HttpHeaders headers){
+        return JsonStreams.stream(beerService.streamBeers(), objectMapper, headers.getAccept());
+    }
+
+    /**
+     * Looks up to {@value MultiGets#MAX_IDS} beers in one request. Answers the found beers in request order
+     * plus the ids that do not exist.
+     */
+    @PostMapping("/lookup")
+    public Object getBeersByIds(@RequestBody List<UUID> beerIds){
+        Set<UUID> ids = MultiGets.ids(beerIds);
+
+        return ServiceCalls.respond(asyncBeerService, () -> beerService.getBeersByIds(ids),
+                async -> async.getBeersByIds(ids), found -> MultiGets.result(ids, found));
     }
 
     @GetMapping("/{beerId}")
-    public BeerDTO getBeerById(@PathVariable("beerId") UUID beerId){
+    public Object getBeerById(@PathVariable("beerId") UUID beerId,
+                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept)
+            throws HttpMediaTypeNotAcceptableException {
+        // the tag names the representation, so the format is settled here rather than by the converters
+        MediaType mediaType = ListResponseCache.negotiate(accept);
 
         log.debug("Get Beer by Id - in controller asdasdsadasda");
 
-        return beerService.getBeerById(beerId).orElseThrow(NotFoundException::new);
+        return ServiceCalls.respond(asyncBeerService, () -> beerService.getBeerById(beerId),
+                async -> async.getBeerById(beerId), found -> respond(found, mediaType));
+    }
+
+    /**
+     * The beer with its ETag, If-None-Match is checked against it when the response entity is written.
+     */
+    private static ResponseEntity<BeerDTO> respond(Optional<BeerDTO> found, MediaType mediaType) {
+        BeerDTO beer = found.orElseThrow(NotFoundException::new);
         // Possibile perchè ora restituisco un Optional<Beer> dal service, quindi se Beer esiste bene, sennò lancia una NotFoundException
+
+        return ResponseEntity.ok().contentType(mediaType).varyBy(HttpHeaders.ACCEPT)
+                .eTag(ETags.of(beer, mediaType)).body(beer);
     }
 
+    /**
+     * Split at the last comma, the name may contain commas.
+     */
+    private static BeerCursor cursor(String after, Sort sort) {
+        if (sort.stream().anyMatch(order -> !"beerName".equals(order.getProperty()))) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "after only continues the beerName order");
+        }
+
+        int comma = after.lastIndexOf(',');
+        try {
+            if (comma >= 0) {
+                return new BeerCursor(after.substring(0, comma), UUID.fromString(after.substring(comma + 1)));
+            }
+        } catch (IllegalArgumentException e) {
+            // not an id after the comma
+        }
+
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "after must be <beer name>,<id>");
+    }
 }
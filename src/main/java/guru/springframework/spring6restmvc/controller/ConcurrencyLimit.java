@@ -0,0 +1,116 @@
+package guru.springframework.spring6restmvc.controller;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Caps the requests in flight at a limit that follows the observed latency.
+ *
+ * Every completed request feeds its latency into a short and a long moving average. While the short one stays
+ * within {@value #TOLERANCE} times the long one the limit grows by about its square root, once it goes beyond
+ * the limit shrinks in proportion, by half at most. The long average does not follow the short one beyond
+ * the tolerance, so the limit stays down for as long as the latency does. The averages and the limit are one
+ * immutable estimate swapped in with compare-and-set, the in-flight count is an {@link AtomicInteger}, so
+ * nothing locks.
+ */
+final class ConcurrencyLimit {
+
+    private static final double SHORT_WEIGHT = 0.1;
+    private static final double LONG_WEIGHT = 0.01;
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+
+    private record Estimate(double limit, double shortLatency, double longLatency) {
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicReference<Estimate> estimate;
+
+    /**
+     * @throws IllegalArgumentException when the limits are not positive and ordered
+     */
+    ConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 0 < min <= initial <= max");
+        }
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.estimate = new AtomicReference<>(new Estimate(initialLimit, 0, 0));
+    }
+
+    /**
+     * Takes a slot, to be handed back through {@link #release(long)}.
+     *
+     * @return false when the limit is reached
+     */
+    boolean tryAcquire() {
+        int limit = getLimit();
+
+        while (true) {
+            int current = inFlight.get();
+
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Hands back a slot taken by {@link #tryAcquire()} and adapts the limit.
+     *
+     * @param latency nanos the request took
+     */
+    void release(long latency) {
+        int current = inFlight.getAndDecrement();
+
+        double sample = Math.max(1, latency);
+
+        estimate.updateAndGet(previous -> next(previous, sample, current));
+    }
+
+    int getLimit() {
+        return (int) estimate.get().limit();
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    private Estimate next(Estimate previous, double latency, int inFlight) {
+        double shortLatency = previous.shortLatency() == 0 ? latency
+                : previous.shortLatency() + (latency - previous.shortLatency()) * SHORT_WEIGHT;
+        double longLatency = previous.longLatency();
+        // held while the short average is beyond tolerance, otherwise an overload that lasts becomes the norm
+        // and the limit grows back into it; only at the lowest limit, where there is nothing left to shed,
+        // does a latency that stays up become the new norm
+        if (longLatency == 0) {
+            longLatency = latency;
+        } else if (shortLatency <= TOLERANCE * longLatency || previous.limit() < minLimit + 1) {
+            longLatency += (latency - longLatency) * LONG_WEIGHT;
+        }
+
+        // the long average crept up during an overload, let it come down quicker once latency recovers
+        if (longLatency > 2 * shortLatency) {
+            longLatency *= 0.95;
+        }
+
+        double limit = previous.limit();
+
+        // too little load to tell whether a higher limit would hurt
+        if (inFlight < limit / 2) {
+            return new Estimate(limit, shortLatency, longLatency);
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longLatency / shortLatency));
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+
+        return new Estimate(limit, shortLatency, longLatency);
+    }
+}
@@ -0,0 +1,34 @@
+package guru.springframework.spring6restmvc.controller;
+
+import guru.springframework.spring6restmvc.services.ChangesExpiredException;
+import guru.springframework.spring6restmvc.services.InsufficientInventoryException;
+import guru.springframework.spring6restmvc.services.VersionConflictException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+@ControllerAdvice
+public class ControllerExceptionHandler {
+
+    @ExceptionHandler(VersionConflictException.class)
+    public ResponseEntity<?> handleVersionConflict(VersionConflictException e) {
+        return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @ExceptionHandler(InsufficientInventoryException.class)
+    public ResponseEntity<?> handleInsufficientInventory(InsufficientInventoryException e) {
+        return new ResponseEntity<>(HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(ChangesExpiredException.class)
+    public ResponseEntity<?> handleChangesExpired(ChangesExpiredException e) {
+        return new ResponseEntity<>(HttpStatus.GONE);
+    }
+
+    @ExceptionHandler(DuplicateKeyException.class)
+    public ResponseEntity<?> handleDuplicateKey(DuplicateKeyException e) {
+        return new ResponseEntity<>(HttpStatus.CONFLICT);
+    }
+}
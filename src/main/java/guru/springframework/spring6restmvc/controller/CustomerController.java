@@ -1,18 +1,31 @@
 package guru.springframework.spring6restmvc.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import guru.springframework.spring6restmvc.model.CustomerDTO;
+import guru.springframework.spring6restmvc.services.AsyncCustomerService;
 import guru.springframework.spring6restmvc.services.CustomerService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by jt, Spring Framework Guru.
+ *
+ * Single customer operations go through {@link AsyncCustomerService} when there is one, for a backing service
+ * that blocks, and release the request thread until the service is done; see {@link ServiceCalls}.
  */
 //@RequestMapping("/api/v1/customer")
 @RequiredArgsConstructor
@@ -20,54 +33,99 @@ import java.util.UUID;
 public class CustomerController {
 
     private final CustomerService customerService;
+    // empty unless the backing service blocks
+    private final Optional<AsyncCustomerService> asyncCustomerService;
+    private final ObjectMapper objectMapper;
+    private final ListResponseCache listResponseCache;
+    private final IdempotentPosts idempotentPosts;
 
     public static final String CUSTOMERS_URI = "/api/v1/customer";
     public static final String CUSTOMER_URI_ID = CUSTOMERS_URI + "/{customerId}";
 
     @PatchMapping(CUSTOMER_URI_ID)
-    public ResponseEntity<?> patchCustomerById(@PathVariable("customerId") UUID customerId,
-                                                @RequestBody CustomerDTO customer){
+    public Object patchCustomerById(@PathVariable("customerId") UUID customerId,
+                                    @RequestBody CustomerDTO customer,
+                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
 
-        customerService.patchCustomerById(customerId, customer);
+        customer.setVersion(ETags.expectedVersion(customerId, ifMatch));
 
-        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        return ServiceCalls.respondAfter(asyncCustomerService, () -> customerService.patchCustomerById(customerId, customer),
+                async -> async.patchCustomerById(customerId, customer), () -> new ResponseEntity<Void>(HttpStatus.NO_CONTENT));
     }
 
     @DeleteMapping(CUSTOMER_URI_ID)
-    public ResponseEntity<?> deleteCustomerById(@PathVariable("customerId") UUID customerId){
+    public Object deleteCustomerById(@PathVariable("customerId") UUID customerId){
 
-        customerService.deleteCustomerById(customerId);
-
-        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        return ServiceCalls.respondAfter(asyncCustomerService, () -> customerService.deleteCustomerById(customerId),
+                async -> async.deleteCustomerById(customerId), () -> new ResponseEntity<Void>(HttpStatus.NO_CONTENT));
     }
 
     @PutMapping(CUSTOMER_URI_ID)
-    public ResponseEntity<?> updateCustomerByID(@PathVariable("customerId") UUID customerId,
-                                             @RequestBody CustomerDTO customer){
+    public Object updateCustomerByID(@PathVariable("customerId") UUID customerId,
+                                     @RequestBody CustomerDTO customer,
+                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
 
-        customerService.updateCustomerById(customerId, customer);
+        customer.setVersion(ETags.expectedVersion(customerId, ifMatch));
 
-        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        return ServiceCalls.respondAfter(asyncCustomerService, () -> customerService.updateCustomerById(customerId, customer),
+                async -> async.updateCustomerById(customerId, customer), () -> new ResponseEntity<Void>(HttpStatus.NO_CONTENT));
     }
 
+    /**
+     * Creates a customer, retries with the same {@value IdempotentPosts#IDEMPOTENCY_KEY} header are answered
+     * like in {@link BeerController#handlePost}.
+     */
     @PostMapping(CUSTOMERS_URI)
-    public ResponseEntity<?> handlePost(@RequestBody CustomerDTO customer){
-        CustomerDTO savedCustomer = customerService.saveNewCustomer(customer);
+    public Object handlePost(@RequestBody CustomerDTO customer,
+                             @RequestHeader(value = IdempotentPosts.IDEMPOTENCY_KEY, required = false) String idempotencyKey){
+        return ServiceCalls.settled(idempotentPosts.execute("customer", idempotencyKey, customer, () -> asyncCustomerService
+                .map(async -> async.saveNewCustomer(customer))
+                .orElseGet(() -> CompletableFuture.completedFuture(customerService.saveNewCustomer(customer)))
+                .thenApply(savedCustomer -> {
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.add("Location", "/api/v1/customer/" + savedCustomer.getId().toString());
+
+                    return new ResponseEntity<>(headers, HttpStatus.CREATED);
+                })));
+    }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.add("Location", "/api/v1/customer/" + savedCustomer.getId().toString());
+    @GetMapping(CUSTOMERS_URI)
+    public ResponseEntity<byte[]> listAllCustomers(WebRequest request) throws HttpMediaTypeNotAcceptableException, IOException {
+        long modificationCount = customerService.getModificationCount();
 
-        return new ResponseEntity<>(headers, HttpStatus.CREATED);
+        return listResponseCache.respond("customer", modificationCount, request, customerService::getAllCustomers);
     }
 
-    @GetMapping(CUSTOMERS_URI)
-    public List<CustomerDTO> listAllCustomers(){
-        return customerService.getAllCustomers();
+    @GetMapping(value = CUSTOMERS_URI, params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllCustomers(@RequestHeader HttpHeaders headers){
+        return JsonStreams.stream(customerService.streamAllCustomers(), objectMapper, headers.getAccept());
+    }
+
+    /**
+     * Looks up to {@value MultiGets#MAX_IDS} customers in one request, see {@link BeerController#getBeersByIds}.
+     */
+    @PostMapping(CUSTOMERS_URI + "/lookup")
+    public Object getCustomersByIds(@RequestBody List<UUID> customerIds){
+        Set<UUID> ids = MultiGets.ids(customerIds);
+
+        return ServiceCalls.respond(asyncCustomerService, () -> customerService.getCustomersByIds(ids),
+                async -> async.getCustomersByIds(ids), found -> MultiGets.result(ids, found));
     }
 
     @GetMapping(CUSTOMER_URI_ID)
-    public CustomerDTO getCustomerById(@PathVariable("customerId") UUID id){
-        return customerService.getCustomerById(id).orElseThrow(NotFoundException::new);
+    public Object getCustomerById(@PathVariable("customerId") UUID id,
+                                  @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept)
+            throws HttpMediaTypeNotAcceptableException {
+        MediaType mediaType = ListResponseCache.negotiate(accept);
+
+        return ServiceCalls.respond(asyncCustomerService, () -> customerService.getCustomerById(id),
+                async -> async.getCustomerById(id), found -> {
+                    CustomerDTO customer = found.orElseThrow(NotFoundException::new);
+
+                    // If-None-Match is checked against the ETag when the response entity is written
+                    return ResponseEntity.ok().contentType(mediaType).varyBy(HttpHeaders.ACCEPT)
+                            .eTag(ETags.of(customer, mediaType)).body(customer);
+                });
     }
 
 }
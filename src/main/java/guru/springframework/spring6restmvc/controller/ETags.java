@@ -0,0 +1,64 @@
+package guru.springframework.spring6restmvc.controller;
+
+import guru.springframework.spring6restmvc.model.Versioned;
+import guru.springframework.spring6restmvc.services.VersionConflictException;
+import org.springframework.http.MediaType;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Strong entity tags built from the DTO id and version, or from a store modification count for lists.
+ *
+ * A strong tag names one representation, so the tags of CBOR and Smile bodies carry their format and
+ * those of gzipped list bodies the coding; JSON keeps the plain tag. Modification counts start over with
+ * every process, list tags also carry an epoch drawn at startup so a tag of an earlier run or of another
+ * instance never matches.
+ */
+final class ETags {
+
+    private static final String EPOCH = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+
+    private ETags() {
+    }
+
+    static String of(Versioned dto, MediaType mediaType) {
+        return "\"" + dto.getId() + "-" + dto.getVersion() + format(mediaType) + "\"";
+    }
+
+    static String of(long modificationCount, MediaType mediaType, boolean gzip) {
+        return "\"" + EPOCH + "-" + modificationCount + format(mediaType) + (gzip ? "-gzip" : "") + "\"";
+    }
+
+    private static String format(MediaType mediaType) {
+        return MediaType.APPLICATION_JSON.isCompatibleWith(mediaType) ? "" : "-" + mediaType.getSubtype();
+    }
+
+    /**
+     * Version an If-Match header asks for, {@code null} when there is no header or it is {@code *}.
+     * Only a single strong tag of this resource can be satisfied, in any of its formats.
+     *
+     * @throws VersionConflictException when the header cannot match this resource
+     */
+    static Integer expectedVersion(UUID id, String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || "*".equals(ifMatch.trim())) {
+            return null;
+        }
+
+        String tag = ifMatch.trim();
+        String prefix = "\"" + id + "-";
+
+        if (tag.startsWith(prefix) && tag.endsWith("\"") && tag.length() > prefix.length() + 1) {
+            String version = tag.substring(prefix.length(), tag.length() - 1);
+            int format = version.indexOf('-');
+
+            try {
+                return Integer.valueOf(format < 0 ? version : version.substring(0, format));
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+        }
+
+        throw new VersionConflictException("If-Match " + tag + " does not match " + id);
+    }
+}
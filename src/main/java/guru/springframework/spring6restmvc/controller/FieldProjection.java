@@ -0,0 +1,154 @@
+package guru.springframework.spring6restmvc.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.std.BeanSerializerBase;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serializes only the chosen properties of a DTO, or of each DTO in a collection.
+ *
+ * The properties are picked once from the bean serializer Jackson builds for the type, and kept per serializer,
+ * so every mapper (JSON, CBOR, Smile) gets its own set and a projected write costs one lookup per object.
+ */
+public final class FieldProjection {
+
+    /**
+     * A response body to write through {@code projection}.
+     */
+    @JsonSerialize(using = ProjectedSerializer.class)
+    public record Projected(Object value, FieldProjection projection) {
+    }
+
+    private final Set<String> fields;
+    private final Map<JsonSerializer<?>, BeanPropertyWriter[]> writers = new ConcurrentHashMap<>();
+
+    private FieldProjection(Set<String> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * @param fields comma separated property names
+     * @throws IllegalArgumentException when no property is named
+     */
+    public static FieldProjection of(String fields) {
+        Set<String> names = new LinkedHashSet<>();
+
+        for (String field : fields.split(",")) {
+            if (!field.isBlank()) {
+                names.add(field.strip());
+            }
+        }
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("No fields given");
+        }
+
+        return new FieldProjection(Set.copyOf(names));
+    }
+
+    public Projected apply(Object value) {
+        return new Projected(value, this);
+    }
+
+    /**
+     * The writers of the projected properties of {@code type}, in the order Jackson writes them.
+     *
+     * @throws IllegalArgumentException when the type is not a bean or lacks one of the properties
+     */
+    BeanPropertyWriter[] writersFor(Class<?> type, SerializerProvider provider) throws IOException {
+        JsonSerializer<Object> serializer = provider.findValueSerializer(type);
+        BeanPropertyWriter[] selected = writers.get(serializer);
+
+        if (selected == null) {
+            selected = select(type, serializer);
+            writers.putIfAbsent(serializer, selected);
+        }
+
+        return selected;
+    }
+
+    private BeanPropertyWriter[] select(Class<?> type, JsonSerializer<?> serializer) {
+        if (!(serializer instanceof BeanSerializerBase beanSerializer)) {
+            throw new IllegalArgumentException(type.getSimpleName() + " has no properties to select");
+        }
+
+        List<BeanPropertyWriter> selected = new ArrayList<>(fields.size());
+        Iterator<PropertyWriter> properties = beanSerializer.properties();
+        while (properties.hasNext()) {
+            if (properties.next() instanceof BeanPropertyWriter property && fields.contains(property.getName())) {
+                selected.add(property);
+            }
+        }
+
+        if (selected.size() < fields.size()) {
+            Set<String> unknown = new LinkedHashSet<>(fields);
+            selected.forEach(property -> unknown.remove(property.getName()));
+            throw new IllegalArgumentException("Unknown fields of " + type.getSimpleName() + ": " + unknown);
+        }
+
+        return selected.toArray(BeanPropertyWriter[]::new);
+    }
+
+    private void writeProjected(Object bean, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        if (bean == null) {
+            generator.writeNull();
+            return;
+        }
+
+        BeanPropertyWriter[] selected;
+        try {
+            selected = writersFor(bean.getClass(), provider);
+        } catch (IllegalArgumentException e) {
+            throw JsonMappingException.from(generator, e.getMessage(), e);
+        }
+
+        generator.writeStartObject(bean, selected.length);
+        for (BeanPropertyWriter property : selected) {
+            try {
+                property.serializeAsField(bean, generator, provider);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw JsonMappingException.from(generator, "Could not write " + property.getName(), e);
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    static class ProjectedSerializer extends StdSerializer<Projected> {
+
+        ProjectedSerializer() {
+            super(Projected.class);
+        }
+
+        @Override
+        public void serialize(Projected projected, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            FieldProjection projection = projected.projection();
+
+            if (projected.value() instanceof Collection<?> items) {
+                generator.writeStartArray(items, items.size());
+                for (Object item : items) {
+                    projection.writeProjected(item, generator, provider);
+                }
+                generator.writeEndArray();
+            } else {
+                projection.writeProjected(projected.value(), generator, provider);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package guru.springframework.spring6restmvc.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.spring6restmvc.model.Versioned;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Applies a {@code fields=} query parameter to the beer and customer endpoints answering DTOs or lists of them,
+ * writing only the named properties. Projections are built once per distinct parameter value.
+ */
+@ControllerAdvice(assignableTypes = {BeerController.class, CustomerController.class})
+@RequiredArgsConstructor
+public class FieldProjectionAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String FIELDS_PARAM = "fields";
+
+    // beyond this many distinct parameter values, projections are built per request instead of cached
+    private static final int MAX_CACHED_PROJECTIONS = 256;
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, FieldProjection> projections = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return AbstractJackson2HttpMessageConverter.class.isAssignableFrom(converterType);
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (body == null || !(request instanceof ServletServerHttpRequest servletRequest)) {
+            return body;
+        }
+
+        String fields = servletRequest.getServletRequest().getParameter(FIELDS_PARAM);
+
+        return fields == null ? body : project(body, fields);
+    }
+
+    /**
+     * {@code body} to be written with only {@code fields}, or {@code body} itself when it holds no DTOs.
+     *
+     * @throws ResponseStatusException 400 when {@code fields} names no or unknown properties
+     */
+    Object project(Object body, String fields) {
+        Object sample = body instanceof Collection<?> items ? items.stream().findFirst().orElse(null) : body;
+        if (sample != null && !(sample instanceof Versioned)) {
+            return body;
+        }
+
+        FieldProjection projection = projection(fields);
+
+        // fail before the first byte is written, not halfway through the body
+        if (sample != null) {
+            try {
+                projection.writersFor(sample.getClass(), objectMapper.getSerializerProviderInstance());
+            } catch (IllegalArgumentException | IOException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+            }
+        }
+
+        return projection.apply(body);
+    }
+
+    private FieldProjection projection(String fields) {
+        FieldProjection projection = projections.get(fields);
+
+        if (projection == null) {
+            try {
+                projection = FieldProjection.of(fields);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+            }
+
+            if (projections.size() < MAX_CACHED_PROJECTIONS) {
+                projections.putIfAbsent(fields, projection);
+            }
+        }
+
+        return projection;
+    }
+}
@@ -0,0 +1,84 @@
+package guru.springframework.spring6restmvc.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Creating POSTs made safe to retry with an {@value #IDEMPOTENCY_KEY} header.
+ *
+ * The first request with a key runs, its response is kept for the key and answers every retry until it
+ * expires, without the store being asked again. Retries arriving while the first one still runs wait for
+ * the same execution. A failed execution is not kept, so the next retry runs again. A key sent again with
+ * a different body is answered 422, it cannot be told apart from a client reusing keys by mistake.
+ */
+@Component
+public class IdempotentPosts {
+
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    static final int MAX_KEY_LENGTH = 255;
+
+    private record Key(String resource, String idempotencyKey) {
+    }
+
+    private record Execution(Object body, CompletableFuture<ResponseEntity<Void>> response) {
+    }
+
+    private final Cache<Key, Execution> executions;
+
+    public IdempotentPosts(@Value("${idempotency.maximum-size:100000}") long maximumSize,
+                           @Value("${idempotency.expire-after-write:24h}") Duration expireAfterWrite) {
+        this.executions = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .build();
+    }
+
+    /**
+     * The response of {@code post}, run once per {@code idempotencyKey} of {@code resource}. Without a key
+     * {@code post} just runs.
+     *
+     * @param resource       name of the created resource, keys of different resources do not collide
+     * @param idempotencyKey the client's key, {@code null} when it sent none
+     * @param body           the request body, a retry must send an equal one
+     * @throws ResponseStatusException 400 for a blank or overlong key, 422 for a known key with another body
+     */
+    public CompletableFuture<ResponseEntity<Void>> execute(String resource, String idempotencyKey, Object body,
+                                                           Supplier<CompletableFuture<ResponseEntity<Void>>> post) {
+        if (idempotencyKey == null) {
+            return post.get();
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    IDEMPOTENCY_KEY + " must have 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+
+        Key key = new Key(resource, idempotencyKey);
+        // atomic per key: concurrent duplicates get the execution the first of them started
+        Execution execution = executions.asMap().computeIfAbsent(key, k -> new Execution(body, post.get()));
+
+        if (!execution.body().equals(body)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    IDEMPOTENCY_KEY + " " + idempotencyKey + " was used with a different request body");
+        }
+
+        // outside the compute, a future completed already runs this right away
+        return execution.response().whenComplete((response, failure) -> {
+            if (failure != null) {
+                executions.asMap().remove(key, execution);
+            }
+        });
+    }
+
+    void invalidateAll() {
+        executions.invalidateAll();
+    }
+}
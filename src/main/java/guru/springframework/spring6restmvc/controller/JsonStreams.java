@@ -0,0 +1,74 @@
+package guru.springframework.spring6restmvc.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Writes a service stream to the response one element at a time, either as a JSON array or as
+ * newline delimited JSON, so the list is never materialized or buffered as a whole.
+ */
+final class JsonStreams {
+
+    private JsonStreams() {
+    }
+
+    static ResponseEntity<StreamingResponseBody> stream(Stream<?> items, ObjectMapper objectMapper, List<MediaType> accept) {
+        boolean ndjson = prefersNdjson(accept);
+        // the generator buffers on its own, flushing per element would defeat it
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        StreamingResponseBody body = outputStream -> {
+            try (items; JsonGenerator generator = writer.createGenerator(outputStream)) {
+                Iterator<?> iterator = items.iterator();
+
+                if (!ndjson) {
+                    generator.writeStartArray();
+                }
+
+                boolean first = true;
+                while (iterator.hasNext()) {
+                    writer.writeValue(generator, iterator.next());
+
+                    if (ndjson) {
+                        generator.writeRaw('\n');
+                    }
+                    if (first) {
+                        // get the first bytes on the wire early
+                        generator.flush();
+                        first = false;
+                    }
+                }
+
+                if (!ndjson) {
+                    generator.writeEndArray();
+                }
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    private static boolean prefersNdjson(List<MediaType> accept) {
+        for (MediaType mediaType : accept) {
+            if (mediaType.equalsTypeAndSubtype(MediaType.APPLICATION_NDJSON)) {
+                return true;
+            }
+            if (mediaType.includes(MediaType.APPLICATION_JSON)) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+}
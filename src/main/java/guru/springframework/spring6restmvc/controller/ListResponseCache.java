@@ -0,0 +1,210 @@
+package guru.springframework.spring6restmvc.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized list responses, kept as bytes until the store they were read from changes.
+ *
+ * A body is cached per resource, query parameters, media type and content coding, together with the store
+ * modification count read before the list was. Every store write bumps the count, so a body is only served
+ * again while no write happened since; a stale one is replaced by the next request for it. Bodies of at least
+ * {@value #MIN_COMPRESSED_SIZE} bytes are also kept gzipped for clients that accept it.
+ */
+@Component
+public class ListResponseCache {
+
+    // the same threshold as server.compression.min-response-size
+    static final int MIN_COMPRESSED_SIZE = 2048;
+
+    private static final List<MediaType> PRODUCIBLE = List.of(MediaType.APPLICATION_JSON,
+            MediaType.APPLICATION_CBOR, BinaryFormatsConfig.APPLICATION_SMILE);
+    private static final String GZIP = "gzip";
+    private static final String VARY = HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING;
+
+    private record Variant(String resource, String parameters, MediaType mediaType, boolean gzip) {
+    }
+
+    private record Body(long modificationCount, byte[] bytes, boolean gzipped) {
+    }
+
+    private final Map<MediaType, ObjectMapper> mappers;
+    private final FieldProjectionAdvice fieldProjectionAdvice;
+    private final Cache<Variant, Body> bodies;
+
+    public ListResponseCache(ObjectMapper objectMapper, MappingJackson2CborHttpMessageConverter cborConverter,
+                             MappingJackson2SmileHttpMessageConverter smileConverter,
+                             FieldProjectionAdvice fieldProjectionAdvice,
+                             @Value("${list.cache.maximum-weight:16MB}") DataSize maximumWeight) {
+        this.mappers = Map.of(MediaType.APPLICATION_JSON, objectMapper,
+                MediaType.APPLICATION_CBOR, cborConverter.getObjectMapper(),
+                BinaryFormatsConfig.APPLICATION_SMILE, smileConverter.getObjectMapper());
+        this.fieldProjectionAdvice = fieldProjectionAdvice;
+        this.bodies = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight.toBytes())
+                .weigher((Variant variant, Body body) -> body.bytes().length)
+                .build();
+    }
+
+    /**
+     * The list answering {@code request}, from the cache when it was serialized at {@code modificationCount}
+     * already, otherwise read from {@code list} and serialized. {@code null}, for a 304, when the request's
+     * If-None-Match names the negotiated representation at {@code modificationCount}.
+     *
+     * @param resource          name of the listed resource, part of the cache key
+     * @param modificationCount store modification count, read before anything else of the store
+     * @throws HttpMediaTypeNotAcceptableException when the client accepts neither JSON, CBOR nor Smile
+     */
+    public ResponseEntity<byte[]> respond(String resource, long modificationCount, WebRequest request,
+                                          Supplier<? extends List<?>> list)
+            throws HttpMediaTypeNotAcceptableException, IOException {
+        Variant variant = new Variant(resource, parameters(request), negotiate(header(request, HttpHeaders.ACCEPT)),
+                acceptsGzip(header(request, HttpHeaders.ACCEPT_ENCODING)));
+
+        // whether a gzip accepting client gets gzip only depends on the body, which the count pins down
+        if (request.checkNotModified(ETags.of(modificationCount, variant.mediaType(), variant.gzip()))) {
+            return null;
+        }
+
+        Body body = bodies.getIfPresent(variant);
+        if (body == null || body.modificationCount() != modificationCount) {
+            body = serialize(variant, modificationCount, list.get(), request.getParameter(FieldProjectionAdvice.FIELDS_PARAM));
+
+            // a request that read an older count finishing late must not replace a newer body
+            bodies.asMap().merge(variant, body,
+                    (cached, fresh) -> fresh.modificationCount() >= cached.modificationCount() ? fresh : cached);
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(variant.mediaType())
+                .header(HttpHeaders.VARY, VARY);
+        if (body.gzipped()) {
+            response.header(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+
+        return response.body(body.bytes());
+    }
+
+    void invalidateAll() {
+        bodies.invalidateAll();
+    }
+
+    private Body serialize(Variant variant, long modificationCount, List<?> list, String fields) throws IOException {
+        Object value = fields == null ? list : fieldProjectionAdvice.project(list, fields);
+        byte[] bytes = mappers.get(variant.mediaType()).writeValueAsBytes(value);
+
+        if (variant.gzip() && bytes.length >= MIN_COMPRESSED_SIZE) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(bytes);
+            }
+
+            return new Body(modificationCount, compressed.toByteArray(), true);
+        }
+
+        return new Body(modificationCount, bytes, false);
+    }
+
+    private static String header(WebRequest request, String name) {
+        String[] values = request.getHeaderValues(name);
+
+        return values == null ? null : String.join(",", values);
+    }
+
+    private static String parameters(WebRequest request) {
+        Map<String, String[]> parameters = request.getParameterMap();
+        if (parameters.isEmpty()) {
+            return "";
+        }
+
+        // the same parameters in another order share a body
+        StringBuilder key = new StringBuilder();
+        new TreeMap<>(parameters).forEach((name, values) -> key.append(name).append('=')
+                .append(Arrays.toString(values)).append('&'));
+
+        return key.toString();
+    }
+
+    /**
+     * The producible type the client accepts with the highest quality, JSON when it did not say.
+     */
+    static MediaType negotiate(String accept) throws HttpMediaTypeNotAcceptableException {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+
+        List<MediaType> acceptedTypes;
+        try {
+            acceptedTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            throw new HttpMediaTypeNotAcceptableException("Could not parse 'Accept' header: " + e.getMessage());
+        }
+
+        MediaType best = null;
+        double bestQuality = 0;
+
+        for (MediaType accepted : acceptedTypes) {
+            for (MediaType producible : PRODUCIBLE) {
+                if (accepted.getQualityValue() > bestQuality && accepted.includes(producible)) {
+                    best = producible;
+                    bestQuality = accepted.getQualityValue();
+                }
+            }
+        }
+
+        if (best == null) {
+            throw new HttpMediaTypeNotAcceptableException(PRODUCIBLE);
+        }
+
+        return best;
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+
+            if (GZIP.equalsIgnoreCase(parts[0].strip())) {
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].strip();
+
+                    if (parameter.startsWith("q=")) {
+                        try {
+                            return Double.parseDouble(parameter.substring(2)) > 0;
+                        } catch (NumberFormatException e) {
+                            return false;
+                        }
+                    }
+                }
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,56 @@
+package guru.springframework.spring6restmvc.controller;
+
+import guru.springframework.spring6restmvc.model.MultiGetResult;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Request checks and response assembly shared by the multi-get endpoints.
+ */
+final class MultiGets {
+
+    static final int MAX_IDS = 1000;
+
+    private MultiGets() {
+    }
+
+    /**
+     * The requested ids without duplicates, in request order.
+     *
+     * @throws ResponseStatusException 400 when there are none or more than {@link #MAX_IDS}
+     */
+    static Set<UUID> ids(List<UUID> requested) {
+        if (requested == null || requested.isEmpty() || requested.size() > MAX_IDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Between 1 and " + MAX_IDS + " ids expected");
+        }
+        if (requested.contains(null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ids must not be null");
+        }
+
+        return new LinkedHashSet<>(requested);
+    }
+
+    static <T> MultiGetResult<T> result(Set<UUID> ids, Map<UUID, T> found) {
+        List<T> items = new ArrayList<>(found.size());
+        List<UUID> missing = new ArrayList<>(ids.size() - found.size());
+
+        for (UUID id : ids) {
+            T item = found.get(id);
+
+            if (item != null) {
+                items.add(item);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        return MultiGetResult.<T>builder().found(items).missing(missing).build();
+    }
+}
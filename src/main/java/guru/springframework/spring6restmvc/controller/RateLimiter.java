@@ -0,0 +1,69 @@
+package guru.springframework.spring6restmvc.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One token bucket per key, refilled at {@code rate} tokens a second up to {@code burst} tokens.
+ *
+ * Buckets follow the generic cell rate algorithm: the whole state is the time at which the bucket would be
+ * empty again, kept in an {@link AtomicLong} and advanced with compare-and-set, so taking a token never locks.
+ * A bucket whose time has passed is full and indistinguishable from a new one, so a bucket left alone for the
+ * length of a burst expires. Past {@code maxKeys} buckets the cache evicts the ones least likely to be used again;
+ * both are amortized by the cache, a request never pays for a sweep. An evicted bucket that was still draining
+ * comes back full, the price of a hard bound when more keys are active than it allows.
+ */
+final class RateLimiter {
+
+    private final long interval;
+    private final long tolerance;
+    private final Cache<String, AtomicLong> buckets;
+
+    /**
+     * @throws IllegalArgumentException when the rate or burst is not positive
+     */
+    RateLimiter(double rate, int burst, int maxKeys) {
+        if (rate <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+
+        this.interval = Math.max(1, Math.round(1_000_000_000 / rate));
+        this.tolerance = interval * burst;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofNanos(tolerance))
+                .build();
+    }
+
+    /**
+     * Takes a token from the bucket of {@code key}.
+     *
+     * @param now {@link System#nanoTime()}
+     * @return 0 when a token was taken, otherwise the nanos until the next one
+     */
+    long tryAcquire(String key, long now) {
+        AtomicLong bucket = buckets.get(key, k -> new AtomicLong(now));
+
+        while (true) {
+            long emptyAt = bucket.get();
+            long next = (emptyAt - now > 0 ? emptyAt : now) + interval;
+            long wait = next - now - tolerance;
+
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(emptyAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    long size() {
+        buckets.cleanUp();
+
+        return buckets.estimatedSize();
+    }
+}
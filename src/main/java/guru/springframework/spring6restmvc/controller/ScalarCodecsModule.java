@@ -0,0 +1,378 @@
+package guru.springframework.spring6restmvc.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.deser.std.UUIDDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
+import com.fasterxml.jackson.databind.ser.std.UUIDSerializer;
+import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
+import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+
+/**
+ * Jackson codecs for the UUIDs, timestamps and prices of every DTO, writing and parsing them through a
+ * per-thread char buffer and the parser's own text buffer instead of an intermediate String each.
+ *
+ * Output is exactly what the standard serializers produce. Anything off the common path, such as a
+ * {@code @JsonFormat} pattern, timestamps as arrays, a year outside 0 to 9999 or a price with more than
+ * {@value #MAX_FAST_DIGITS} digits, goes through the standard codec instead. Binary generators write UUIDs
+ * and decimals natively and are left alone.
+ */
+@Component
+public class ScalarCodecsModule extends SimpleModule {
+
+    static final int MAX_FAST_DIGITS = 15;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final long[] POWERS_OF_TEN = new long[MAX_FAST_DIGITS + 1];
+
+    // long enough for any of the values written here
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[40]);
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    public ScalarCodecsModule() {
+        super(ScalarCodecsModule.class.getSimpleName());
+
+        addSerializer(UUID.class, new UuidSerializer());
+        addDeserializer(UUID.class, new UuidDeserializer());
+        addSerializer(LocalDateTime.class, new FastLocalDateTimeSerializer());
+        addDeserializer(LocalDateTime.class, new FastLocalDateTimeDeserializer());
+        addSerializer(BigDecimal.class, new DecimalSerializer());
+    }
+
+    /**
+     * Writes the 36 character form of {@code id} at {@code offset}.
+     *
+     * @return the offset after it
+     */
+    static int writeUuid(UUID id, char[] buffer, int offset) {
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+
+        writeHex(msb >>> 32, buffer, offset, 8);
+        buffer[offset + 8] = '-';
+        writeHex(msb >>> 16, buffer, offset + 9, 4);
+        buffer[offset + 13] = '-';
+        writeHex(msb, buffer, offset + 14, 4);
+        buffer[offset + 18] = '-';
+        writeHex(lsb >>> 48, buffer, offset + 19, 4);
+        buffer[offset + 23] = '-';
+        writeHex(lsb, buffer, offset + 24, 12);
+
+        return offset + 36;
+    }
+
+    /**
+     * Parses the 36 character form of a UUID, in either case.
+     *
+     * @return {@code null} when {@code text} is anything else
+     */
+    static UUID parseUuid(char[] text, int offset, int length) {
+        if (length != 36) {
+            return null;
+        }
+
+        long msb = 0;
+        long lsb = 0;
+        for (int i = 0; i < 36; i++) {
+            char c = text[offset + i];
+
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return null;
+                }
+                continue;
+            }
+
+            int digit = hexDigit(c);
+            if (digit < 0) {
+                return null;
+            }
+            if (i < 18) {
+                msb = msb << 4 | digit;
+            } else {
+                lsb = lsb << 4 | digit;
+            }
+        }
+
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * Writes {@code value} the way {@link DateTimeFormatter#ISO_LOCAL_DATE_TIME} formats it, seconds always
+     * and the fraction without trailing zeros. The year must be within 0 to 9999.
+     *
+     * @return the offset after it
+     */
+    static int writeLocalDateTime(LocalDateTime value, char[] buffer, int offset) {
+        int position = writeDigits(value.getYear(), 4, buffer, offset);
+        buffer[position++] = '-';
+        position = writeDigits(value.getMonthValue(), 2, buffer, position);
+        buffer[position++] = '-';
+        position = writeDigits(value.getDayOfMonth(), 2, buffer, position);
+        buffer[position++] = 'T';
+        position = writeDigits(value.getHour(), 2, buffer, position);
+        buffer[position++] = ':';
+        position = writeDigits(value.getMinute(), 2, buffer, position);
+        buffer[position++] = ':';
+        position = writeDigits(value.getSecond(), 2, buffer, position);
+
+        int nano = value.getNano();
+        if (nano > 0) {
+            int digits = 9;
+            while (nano % 10 == 0) {
+                nano /= 10;
+                digits--;
+            }
+            buffer[position++] = '.';
+            position = writeDigits(nano, digits, buffer, position);
+        }
+
+        return position;
+    }
+
+    /**
+     * Parses {@code yyyy-MM-ddTHH:mm}, optionally followed by {@code :ss} and a fraction of 1 to 9 digits.
+     *
+     * @return {@code null} when {@code text} is anything else or no valid date and time
+     */
+    static LocalDateTime parseLocalDateTime(char[] text, int offset, int length) {
+        if (length != 16 && length != 19 && (length < 21 || length > 29)) {
+            return null;
+        }
+        if (text[offset + 4] != '-' || text[offset + 7] != '-' || text[offset + 10] != 'T'
+                || text[offset + 13] != ':' || (length > 16 && text[offset + 16] != ':')
+                || (length > 19 && text[offset + 19] != '.')) {
+            return null;
+        }
+
+        int year = parseDigits(text, offset, 4);
+        int month = parseDigits(text, offset + 5, 2);
+        int day = parseDigits(text, offset + 8, 2);
+        int hour = parseDigits(text, offset + 11, 2);
+        int minute = parseDigits(text, offset + 14, 2);
+        int second = length > 16 ? parseDigits(text, offset + 17, 2) : 0;
+        int nano = 0;
+        if (length > 19) {
+            nano = parseDigits(text, offset + 20, length - 20);
+            for (int i = length - 20; i < 9 && nano >= 0; i++) {
+                nano *= 10;
+            }
+        }
+
+        if ((year | month | day | hour | minute | second | nano) < 0) {
+            return null;
+        }
+
+        try {
+            return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes {@code unscaled} with {@code scale} fraction digits, the way {@link BigDecimal#toString()} writes
+     * a value of at most {@value #MAX_FAST_DIGITS} digits whose exponent stays in its plain notation range.
+     *
+     * @return the offset after it
+     */
+    static int writeDecimal(long unscaled, int scale, char[] buffer, int offset) {
+        int position = offset;
+        if (unscaled < 0) {
+            buffer[position++] = '-';
+            unscaled = -unscaled;
+        }
+
+        // at least one integer digit
+        int digits = Math.max(digitCount(unscaled), scale + 1);
+        int end = position + digits + (scale > 0 ? 1 : 0);
+        int point = end - scale - 1;
+
+        for (int i = end - 1; i >= position; i--) {
+            if (scale > 0 && i == point) {
+                buffer[i] = '.';
+            } else {
+                buffer[i] = (char) ('0' + unscaled % 10);
+                unscaled /= 10;
+            }
+        }
+
+        return end;
+    }
+
+    private static void writeHex(long value, char[] buffer, int offset, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = HEX_DIGITS[(int) value & 0xF];
+            value >>>= 4;
+        }
+    }
+
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+
+        return -1;
+    }
+
+    private static int writeDigits(int value, int digits, char[] buffer, int offset) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+
+        return offset + digits;
+    }
+
+    /**
+     * @return {@code -1} when any of the characters is no ASCII digit
+     */
+    private static int parseDigits(char[] text, int offset, int digits) {
+        int value = 0;
+
+        for (int i = offset; i < offset + digits; i++) {
+            char c = text[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+
+        return value;
+    }
+
+    private static int digitCount(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+
+        return digits;
+    }
+
+    static class UuidSerializer extends StdScalarSerializer<UUID> {
+
+        private final UUIDSerializer binary = new UUIDSerializer();
+
+        UuidSerializer() {
+            super(UUID.class);
+        }
+
+        @Override
+        public void serialize(UUID value, JsonGenerator g, SerializerProvider provider) throws IOException {
+            if (g.canWriteBinaryNatively()) {
+                binary.serialize(value, g, provider);
+                return;
+            }
+
+            char[] buffer = BUFFER.get();
+            g.writeString(buffer, 0, writeUuid(value, buffer, 0));
+        }
+    }
+
+    static class UuidDeserializer extends StdScalarDeserializer<UUID> {
+
+        private final UUIDDeserializer standard = new UUIDDeserializer();
+
+        UuidDeserializer() {
+            super(UUID.class);
+        }
+
+        @Override
+        public UUID deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.hasToken(JsonToken.VALUE_STRING)) {
+                UUID parsed = parseUuid(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+                if (parsed != null) {
+                    return parsed;
+                }
+            }
+
+            // other lengths, base64 and binary, and the error message for anything invalid
+            return standard.deserialize(p, ctxt);
+        }
+    }
+
+    static class FastLocalDateTimeSerializer extends LocalDateTimeSerializer {
+
+        @Override
+        public void serialize(LocalDateTime value, JsonGenerator g, SerializerProvider provider) throws IOException {
+            if (_formatter == null && !useTimestamp(provider) && value.getYear() >= 0 && value.getYear() <= 9999) {
+                char[] buffer = BUFFER.get();
+                g.writeString(buffer, 0, writeLocalDateTime(value, buffer, 0));
+                return;
+            }
+
+            super.serialize(value, g, provider);
+        }
+    }
+
+    static class FastLocalDateTimeDeserializer extends LocalDateTimeDeserializer {
+
+        FastLocalDateTimeDeserializer() {
+            super(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        }
+
+        @Override
+        public LocalDateTime deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (_formatter == DateTimeFormatter.ISO_LOCAL_DATE_TIME && p.hasToken(JsonToken.VALUE_STRING)) {
+                LocalDateTime parsed = parseLocalDateTime(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+                if (parsed != null) {
+                    return parsed;
+                }
+            }
+
+            return super.deserialize(p, ctxt);
+        }
+    }
+
+    static class DecimalSerializer extends StdScalarSerializer<BigDecimal> {
+
+        DecimalSerializer() {
+            super(BigDecimal.class);
+        }
+
+        @Override
+        public void serialize(BigDecimal value, JsonGenerator g, SerializerProvider provider) throws IOException {
+            int scale = value.scale();
+            int precision = value.precision();
+
+            // within 15 digits the unscaled value comes back exactly from the double, which BigDecimal computes
+            // without allocating, while unscaledValue() would allocate a BigInteger
+            if (g.canWriteBinaryNatively() || scale < 0 || scale > MAX_FAST_DIGITS || precision > MAX_FAST_DIGITS
+                    || precision - 1 - scale < -6) {
+                g.writeNumber(value);
+                return;
+            }
+
+            long unscaled = Math.round(value.doubleValue() * POWERS_OF_TEN[scale]);
+            char[] buffer = BUFFER.get();
+            g.writeNumber(buffer, 0, writeDecimal(unscaled, scale, buffer, 0));
+        }
+    }
+}
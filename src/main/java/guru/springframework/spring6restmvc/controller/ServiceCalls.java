@@ -0,0 +1,49 @@
+package guru.springframework.spring6restmvc.controller;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Service calls of the single item endpoints, made on the request thread unless the backing service blocks.
+ *
+ * Only then is there an async service, see {@code service.async.*}: the call goes through it and the handler
+ * returns the future, so the request thread is released until the call is done. Handlers using this return
+ * {@code Object}, Spring MVC picks the return value handler by the type of the returned value.
+ */
+final class ServiceCalls {
+
+    private ServiceCalls() {
+    }
+
+    /**
+     * @param call      the call on the blocking service
+     * @param asyncCall the same call on the async service
+     * @param response  the response to the call's result
+     * @return the response, or a future of it when the call went through the async service
+     */
+    static <A, T> Object respond(Optional<A> asyncService, Supplier<T> call,
+                                 Function<A, CompletableFuture<T>> asyncCall, Function<T, ?> response) {
+        return asyncService.<Object>map(async -> asyncCall.apply(async).thenApply(response))
+                .orElseGet(() -> response.apply(call.get()));
+    }
+
+    /**
+     * Like {@link #respond(Optional, Supplier, Function, Function)}, for calls without a result.
+     */
+    static <A> Object respondAfter(Optional<A> asyncService, Runnable call,
+                                   Function<A, CompletableFuture<Void>> asyncCall, Supplier<?> response) {
+        return respond(asyncService, () -> {
+            call.run();
+            return null;
+        }, asyncCall, done -> response.get());
+    }
+
+    /**
+     * The response of a future that is already done, answered like a direct call, or else the future.
+     */
+    static Object settled(CompletableFuture<?> response) {
+        return response.isDone() && !response.isCompletedExceptionally() ? response.join() : response;
+    }
+}
@@ -0,0 +1,23 @@
+package guru.springframework.spring6restmvc.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.UUID;
+
+/**
+ * Outcome of one item of a bulk beer import, reported in request order.
+ */
+@Builder
+@Data
+public class BeerBatchResult {
+
+    public enum Status {
+        CREATED, UPDATED, FAILED
+    }
+
+    private UUID id;
+    private String upc;
+    private Status status;
+    private String message;
+}
@@ -0,0 +1,28 @@
+package guru.springframework.spring6restmvc.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.UUID;
+
+/**
+ * One insert, update or delete in the beer change feed. Sequences follow the order writes were recorded,
+ * which for concurrent writes to one beer can differ from version order, so consumers should skip a beer
+ * whose version is not newer than the one they hold.
+ */
+@Builder
+@Data
+public class BeerChange {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE
+    }
+
+    private long sequence;
+    private Type type;
+    private UUID beerId;
+    /**
+     * The beer after the write, or before it for a delete.
+     */
+    private BeerDTO beer;
+}
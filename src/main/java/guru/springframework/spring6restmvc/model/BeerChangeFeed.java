@@ -0,0 +1,17 @@
+package guru.springframework.spring6restmvc.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * A slice of the beer change feed. {@code lastSequence} is the {@code since} to ask for next.
+ */
+@Builder
+@Data
+public class BeerChangeFeed {
+
+    private long lastSequence;
+    private List<BeerChange> changes;
+}
@@ -10,9 +10,9 @@ import java.util.UUID;
 /**
  * Created by jt, Spring Framework Guru.
  */
-@Builder
+@Builder(toBuilder = true)
 @Data
-public class BeerDTO {
+public class BeerDTO implements Versioned {
     private UUID id;
     private Integer version;
     private String beerName;
@@ -10,8 +10,8 @@ import java.util.UUID;
  * Created by jt, Spring Framework Guru.
  */
 @Data
-@Builder
-public class CustomerDTO {
+@Builder(toBuilder = true)
+public class CustomerDTO implements Versioned {
 
     private String name;
     private UUID id;
@@ -0,0 +1,18 @@
+package guru.springframework.spring6restmvc.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Answer to a lookup of many ids at once: what was found, in request order, and the ids that were not.
+ */
+@Builder
+@Data
+public class MultiGetResult<T> {
+
+    private List<T> found;
+    private List<UUID> missing;
+}
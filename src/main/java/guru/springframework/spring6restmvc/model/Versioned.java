@@ -0,0 +1,15 @@
+package guru.springframework.spring6restmvc.model;
+
+import java.util.UUID;
+
+/**
+ * Common shape of the DTOs kept in a {@link guru.springframework.spring6restmvc.services.RecordStore}.
+ */
+public interface Versioned {
+
+    UUID getId();
+
+    Integer getVersion();
+
+    void setVersion(Integer version);
+}
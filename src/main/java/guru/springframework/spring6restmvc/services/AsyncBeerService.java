@@ -0,0 +1,36 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link BeerService}, the futures complete once the service call is done.
+ * Lets controllers give the request thread back while a slow store works. Failures, like
+ * {@link VersionConflictException}, complete the future exceptionally.
+ */
+public interface AsyncBeerService {
+
+    CompletableFuture<Slice<BeerDTO>> listBeers(String beerName, BeerStyle beerStyle, Pageable pageable);
+
+    CompletableFuture<Optional<BeerDTO>> getBeerById(UUID id);
+
+    CompletableFuture<Map<UUID, BeerDTO>> getBeersByIds(Collection<UUID> ids);
+
+    CompletableFuture<BeerDTO> saveNewBeer(BeerDTO beer);
+
+    CompletableFuture<Void> updateBeerById(UUID beerId, BeerDTO beer);
+
+    CompletableFuture<Void> deleteById(UUID beerId);
+
+    CompletableFuture<Void> patchBeerById(UUID beerId, BeerDTO beer);
+
+    CompletableFuture<Optional<BeerDTO>> adjustInventory(UUID beerId, int delta);
+}
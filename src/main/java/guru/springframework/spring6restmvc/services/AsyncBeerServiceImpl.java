@@ -0,0 +1,91 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the calls of a blocking {@link BeerService} on an executor, by default one virtual thread per call
+ * so a blocked store holds no platform thread either.
+ *
+ * Only there with {@code service.async.beers=true}, as the {@code jdbc} profile sets: in front of the
+ * in-memory store the hand-off would cost more than the call.
+ */
+@Service
+@ConditionalOnProperty(name = "service.async.beers", havingValue = "true")
+public class AsyncBeerServiceImpl implements AsyncBeerService, DisposableBean {
+
+    private final BeerService beerService;
+    private final Executor executor;
+
+    @Autowired
+    public AsyncBeerServiceImpl(BeerService beerService) {
+        this(beerService, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public AsyncBeerServiceImpl(BeerService beerService, Executor executor) {
+        this.beerService = beerService;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Slice<BeerDTO>> listBeers(String beerName, BeerStyle beerStyle, Pageable pageable) {
+        return CompletableFuture.supplyAsync(() -> beerService.listBeers(beerName, beerStyle, pageable), executor);
+    }
+
+    @Override
+    public CompletableFuture<Optional<BeerDTO>> getBeerById(UUID id) {
+        return CompletableFuture.supplyAsync(() -> beerService.getBeerById(id), executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, BeerDTO>> getBeersByIds(Collection<UUID> ids) {
+        return CompletableFuture.supplyAsync(() -> beerService.getBeersByIds(ids), executor);
+    }
+
+    @Override
+    public CompletableFuture<BeerDTO> saveNewBeer(BeerDTO beer) {
+        return CompletableFuture.supplyAsync(() -> beerService.saveNewBeer(beer), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateBeerById(UUID beerId, BeerDTO beer) {
+        return CompletableFuture.runAsync(() -> beerService.updateBeerById(beerId, beer), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteById(UUID beerId) {
+        return CompletableFuture.runAsync(() -> beerService.deleteById(beerId), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> patchBeerById(UUID beerId, BeerDTO beer) {
+        return CompletableFuture.runAsync(() -> beerService.patchBeerById(beerId, beer), executor);
+    }
+
+    @Override
+    public CompletableFuture<Optional<BeerDTO>> adjustInventory(UUID beerId, int delta) {
+        return CompletableFuture.supplyAsync(() -> beerService.adjustInventory(beerId, delta), executor);
+    }
+
+    @Override
+    public void destroy() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.close();
+        }
+    }
+}
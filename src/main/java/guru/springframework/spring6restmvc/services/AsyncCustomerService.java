@@ -0,0 +1,30 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.CustomerDTO;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link CustomerService}, see {@link AsyncBeerService}.
+ */
+public interface AsyncCustomerService {
+
+    CompletableFuture<List<CustomerDTO>> getAllCustomers();
+
+    CompletableFuture<Optional<CustomerDTO>> getCustomerById(UUID uuid);
+
+    CompletableFuture<Map<UUID, CustomerDTO>> getCustomersByIds(Collection<UUID> ids);
+
+    CompletableFuture<CustomerDTO> saveNewCustomer(CustomerDTO customer);
+
+    CompletableFuture<Void> updateCustomerById(UUID customerId, CustomerDTO customer);
+
+    CompletableFuture<Void> deleteCustomerById(UUID customerId);
+
+    CompletableFuture<Void> patchCustomerById(UUID customerId, CustomerDTO customer);
+}
@@ -0,0 +1,80 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.CustomerDTO;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the calls of a blocking {@link CustomerService} on an executor, see {@link AsyncBeerServiceImpl}.
+ */
+@Service
+@ConditionalOnProperty(name = "service.async.customers", havingValue = "true")
+public class AsyncCustomerServiceImpl implements AsyncCustomerService, DisposableBean {
+
+    private final CustomerService customerService;
+    private final Executor executor;
+
+    @Autowired
+    public AsyncCustomerServiceImpl(CustomerService customerService) {
+        this(customerService, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public AsyncCustomerServiceImpl(CustomerService customerService, Executor executor) {
+        this.customerService = customerService;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<List<CustomerDTO>> getAllCustomers() {
+        return CompletableFuture.supplyAsync(customerService::getAllCustomers, executor);
+    }
+
+    @Override
+    public CompletableFuture<Optional<CustomerDTO>> getCustomerById(UUID uuid) {
+        return CompletableFuture.supplyAsync(() -> customerService.getCustomerById(uuid), executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, CustomerDTO>> getCustomersByIds(Collection<UUID> ids) {
+        return CompletableFuture.supplyAsync(() -> customerService.getCustomersByIds(ids), executor);
+    }
+
+    @Override
+    public CompletableFuture<CustomerDTO> saveNewCustomer(CustomerDTO customer) {
+        return CompletableFuture.supplyAsync(() -> customerService.saveNewCustomer(customer), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateCustomerById(UUID customerId, CustomerDTO customer) {
+        return CompletableFuture.runAsync(() -> customerService.updateCustomerById(customerId, customer), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteCustomerById(UUID customerId) {
+        return CompletableFuture.runAsync(() -> customerService.deleteCustomerById(customerId), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> patchCustomerById(UUID customerId, CustomerDTO customer) {
+        return CompletableFuture.runAsync(() -> customerService.patchCustomerById(customerId, customer), executor);
+    }
+
+    @Override
+    public void destroy() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.close();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package guru.springframework.spring6restmvc.services;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the service that actually holds the data, as opposed to decorators in front of it such as
+ * {@link CachingBeerService}. Exactly one backing service per type is active, whichever the profile picks.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD, ElementType.PARAMETER, ElementType.FIELD})
+@Retention(RetentionPolicy.RUNTIME)
+@Qualifier
+public @interface BackingService {
+}
@@ -0,0 +1,113 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.BeerChange;
+import guru.springframework.spring6restmvc.model.BeerChangeFeed;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Bounded, sequence-numbered log of the writes to the beer store, kept in a ring buffer. Once full, the
+ * oldest changes are overwritten and readers still behind them get a {@link ChangesExpiredException}.
+ *
+ * Every waiting reader gets a future of its own, kept until the next write completes it on the common pool,
+ * so the writer does not run their continuations. A future completed before, by a timeout or a cancellation,
+ * is dropped right away: readers polling a quiet log do not pile up.
+ */
+class BeerChangeLog implements RecordStore.WriteListener<BeerDTO> {
+
+    static final int DEFAULT_CAPACITY = 10_000;
+
+    private final BeerChange[] ring;
+
+    // guarded by this
+    private long lastSequence;
+    private Set<CompletableFuture<Void>> waiters = new HashSet<>();
+
+    BeerChangeLog(int capacity) {
+        this.ring = new BeerChange[capacity];
+    }
+
+    @Override
+    public void onWrite(BeerDTO previous, BeerDTO current) {
+        BeerChange.Type type = previous == null ? BeerChange.Type.INSERT
+                : current == null ? BeerChange.Type.DELETE : BeerChange.Type.UPDATE;
+        BeerDTO beer = current != null ? current : previous;
+        Set<CompletableFuture<Void>> woken;
+
+        synchronized (this) {
+            long sequence = ++lastSequence;
+            ring[(int) (sequence % ring.length)] = BeerChange.builder()
+                    .sequence(sequence)
+                    .type(type)
+                    .beerId(beer.getId())
+                    .beer(beer)
+                    .build();
+
+            woken = waiters;
+            if (!woken.isEmpty()) {
+                waiters = new HashSet<>();
+            }
+        }
+
+        if (!woken.isEmpty()) {
+            ForkJoinPool.commonPool().execute(() -> woken.forEach(waiter -> waiter.complete(null)));
+        }
+    }
+
+    /**
+     * Up to {@code limit} changes after {@code since}, oldest first. A {@code null} since returns no changes,
+     * only the current sequence to follow the feed from.
+     */
+    synchronized BeerChangeFeed changesSince(Long since, int limit) {
+        if (since == null) {
+            return BeerChangeFeed.builder().lastSequence(lastSequence).changes(List.of()).build();
+        }
+
+        long oldest = Math.max(1, lastSequence - ring.length + 1);
+        if (since < oldest - 1 || since > lastSequence) {
+            throw new ChangesExpiredException(since, oldest, lastSequence);
+        }
+
+        long last = Math.min(lastSequence, since + limit);
+        List<BeerChange> changes = new ArrayList<>((int) (last - since));
+        for (long sequence = since + 1; sequence <= last; sequence++) {
+            changes.add(ring[(int) (sequence % ring.length)]);
+        }
+
+        return BeerChangeFeed.builder().lastSequence(last).changes(changes).build();
+    }
+
+    /**
+     * Completes once there is a change after {@code since}. Every caller gets a future of its own, so
+     * cancelling or timing it out affects nobody else.
+     */
+    CompletableFuture<Void> awaitChange(long since) {
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+
+        synchronized (this) {
+            if (lastSequence > since) {
+                return CompletableFuture.completedFuture(null);
+            }
+            waiters.add(waiter);
+        }
+
+        // also runs for the write completing it, which has swapped the set out already
+        waiter.whenComplete((changed, failure) -> forget(waiter));
+
+        return waiter;
+    }
+
+    synchronized int waiting() {
+        return waiters.size();
+    }
+
+    private synchronized void forget(CompletableFuture<Void> waiter) {
+        waiters.remove(waiter);
+    }
+}
@@ -0,0 +1,23 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.BeerDTO;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Position right after a beer in name order, see {@link BeerService#listBeersAfter}. The id orders beers of
+ * the same name; the name compares case-insensitively, like the name filter.
+ *
+ * @param beerName name of the beer, {@code null} sorts first
+ */
+public record BeerCursor(String beerName, UUID id) {
+
+    public BeerCursor {
+        Objects.requireNonNull(id, "id");
+    }
+
+    public static BeerCursor after(BeerDTO beer) {
+        return new BeerCursor(beer.getBeerName(), beer.getId());
+    }
+}
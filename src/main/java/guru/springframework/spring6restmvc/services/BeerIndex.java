@@ -0,0 +1,170 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import org.springframework.util.StringUtils;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Secondary indexes over the beer store: one name-ordered skip list for the whole catalog and one per
+ * {@link BeerStyle}, so a filtered, name-sorted page can be read without touching the rest of the catalog,
+ * plus a upc lookup used by the bulk import.
+ *
+ * Entries carry the version of the snapshot they were built from. Every version gets its own entry, so
+ * concurrent writers never remove each other's entries; an entry that lost a race and outlived its
+ * snapshot is detected by {@link #isCurrent} and dropped by the reader that finds it.
+ */
+class BeerIndex implements RecordStore.WriteListener<BeerDTO> {
+
+    record Entry(String name, UUID id, int version) implements Comparable<Entry> {
+
+        private static final UUID MIN_ID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+
+        private static final Comparator<Entry> ORDER = Comparator.comparing(Entry::name)
+                .thenComparing(Entry::id)
+                .thenComparingInt(Entry::version);
+
+        static Entry of(BeerDTO beer) {
+            return new Entry(normalize(beer.getBeerName()), beer.getId(),
+                    beer.getVersion() == null ? 0 : beer.getVersion());
+        }
+
+        static Entry lowerBound(String name) {
+            return new Entry(name, MIN_ID, Integer.MIN_VALUE);
+        }
+
+        /**
+         * Below every version of beer {@code id} with the {@link BeerIndex#normalize normalized} {@code name}.
+         */
+        static Entry lowerBound(String name, UUID id) {
+            return new Entry(name, id, Integer.MIN_VALUE);
+        }
+
+        /**
+         * Above every version of beer {@code id} with the {@link BeerIndex#normalize normalized} {@code name}.
+         */
+        static Entry upperBound(String name, UUID id) {
+            return new Entry(name, id, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    private final NavigableSet<Entry> byName = new ConcurrentSkipListSet<>();
+    private final Map<BeerStyle, NavigableSet<Entry>> byStyle = new EnumMap<>(BeerStyle.class);
+    // upcs are not unique, the seed data already shares one between two beers
+    private final Map<String, Set<UUID>> byUpc = new ConcurrentHashMap<>();
+
+    BeerIndex() {
+        // populated once, only the sets themselves change afterwards
+        for (BeerStyle style : BeerStyle.values()) {
+            byStyle.put(style, new ConcurrentSkipListSet<>());
+        }
+    }
+
+    @Override
+    public void onWrite(BeerDTO previous, BeerDTO current) {
+        if (current != null) {
+            add(current);
+        }
+        if (previous != null) {
+            remove(previous);
+
+            if (previous.getUpc() != null && (current == null || !previous.getUpc().equals(current.getUpc()))) {
+                // atomic per upc with the add, an emptied set is never handed to a writer adding to it
+                byUpc.computeIfPresent(previous.getUpc(), (upc, ids) -> {
+                    ids.remove(previous.getId());
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+        }
+    }
+
+    /**
+     * Ids of the beers written with this upc. Callers must check the upc of the beers they load, the mapping
+     * can lag behind a concurrent write.
+     */
+    Set<UUID> findByUpc(String upc) {
+        Set<UUID> ids = upc == null ? null : byUpc.get(upc);
+
+        return ids == null ? Set.of() : Set.copyOf(ids);
+    }
+
+    /**
+     * Entries matching the filters, ordered by name. Either filter may be {@code null}.
+     */
+    NavigableSet<Entry> select(BeerStyle beerStyle, String namePrefix) {
+        NavigableSet<Entry> entries = beerStyle == null ? byName : byStyle.get(beerStyle);
+
+        if (!StringUtils.hasText(namePrefix)) {
+            return entries;
+        }
+
+        String prefix = normalize(namePrefix);
+
+        return entries.subSet(Entry.lowerBound(prefix), true,
+                Entry.lowerBound(prefix + Character.MAX_VALUE), false);
+    }
+
+    static boolean isCurrent(Entry entry, BeerDTO beer) {
+        return beer != null && entry.equals(Entry.of(beer));
+    }
+
+    void evict(Entry entry) {
+        byName.remove(entry);
+        byStyle.values().forEach(entries -> entries.remove(entry));
+    }
+
+    int size() {
+        return byName.size();
+    }
+
+    int upcSize() {
+        return byUpc.size();
+    }
+
+    int size(BeerStyle beerStyle) {
+        return byStyle.get(beerStyle).size();
+    }
+
+    private void add(BeerDTO beer) {
+        Entry entry = Entry.of(beer);
+
+        byName.add(entry);
+        if (beer.getBeerStyle() != null) {
+            byStyle.get(beer.getBeerStyle()).add(entry);
+        }
+        if (beer.getUpc() != null) {
+            byUpc.compute(beer.getUpc(), (upc, ids) -> {
+                Set<UUID> added = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+                added.add(beer.getId());
+                return added;
+            });
+        }
+    }
+
+    private void remove(BeerDTO beer) {
+        Entry entry = Entry.of(beer);
+
+        byName.remove(entry);
+        if (beer.getBeerStyle() != null) {
+            byStyle.get(beer.getBeerStyle()).remove(entry);
+        }
+    }
+
+    static String normalize(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+}
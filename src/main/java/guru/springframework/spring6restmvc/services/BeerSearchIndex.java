@@ -0,0 +1,339 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index behind the beer search. Name tokens and upcs map to the beers containing them, with a
+ * sorted vocabulary for prefix matches, and every name token is indexed by its trigrams for typo tolerant
+ * matches: tokens sharing a trigram with a term are candidates, those within a small edit distance match.
+ * Trigrams point at tokens rather than beers, so a fuzzy lookup only scans the vocabulary.
+ *
+ * Postings carry the version they were added for and a write only removes its own, like {@link BeerIndex}.
+ * Candidates are always scored against the current beer, so a posting left behind by reordered writes is
+ * filtered out by the search that finds it.
+ */
+class BeerSearchIndex implements RecordStore.WriteListener<BeerDTO> {
+
+    /**
+     * Beers scored per search at most, a very unselective query is ranked among the first of them only.
+     */
+    static final int MAX_CANDIDATES = 10_000;
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private record Hit(BeerDTO beer, double score) {
+
+        private static final Comparator<Hit> RANKING = Comparator.comparingDouble(Hit::score).reversed()
+                .thenComparing(hit -> hit.beer().getBeerName(), Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+                .thenComparing(hit -> hit.beer().getId());
+    }
+
+    private final Postings names = new Postings();
+    private final Postings upcs = new Postings();
+    private final Map<String, Set<String>> tokensByTrigram = new ConcurrentHashMap<>();
+
+    @Override
+    public void onWrite(BeerDTO previous, BeerDTO current) {
+        if (current != null) {
+            tokenize(current.getBeerName()).forEach(token -> names.add(token, current, this::addTrigrams));
+            if (current.getUpc() != null) {
+                upcs.add(normalize(current.getUpc()), current, null);
+            }
+        }
+        if (previous != null) {
+            tokenize(previous.getBeerName()).forEach(token -> names.remove(token, previous, this::removeTrigrams));
+            if (previous.getUpc() != null) {
+                upcs.remove(normalize(previous.getUpc()), previous, null);
+            }
+        }
+    }
+
+    /**
+     * Beers matching any term of {@code query} in their name, or its whole text as upc prefix, best match
+     * first. Exact tokens rank above prefixes. A term that is no token prefix at all, and is not a number,
+     * is matched fuzzily instead.
+     *
+     * @param lookup the current beers of the candidate ids, without those that are gone
+     */
+    Page<BeerDTO> search(String query, Pageable pageable, Function<Collection<UUID>, Map<UUID, BeerDTO>> lookup) {
+        String upc = normalize(query).trim();
+        List<String> terms = tokenize(query);
+
+        Set<UUID> candidates = new LinkedHashSet<>();
+        Set<String> fuzzyTerms = new HashSet<>();
+        for (String term : terms) {
+            if (names.hasPrefixed(term)) {
+                names.collectPrefixed(term, candidates);
+            } else if (term.length() >= 3 && term.chars().anyMatch(Character::isLetter)) {
+                fuzzyTerms.add(term);
+                for (String token : similarTokens(term)) {
+                    names.collect(token, candidates);
+                }
+            }
+        }
+        if (!upc.isEmpty()) {
+            upcs.collectPrefixed(upc, candidates);
+        }
+
+        Map<UUID, BeerDTO> current = candidates.isEmpty() ? Map.of() : lookup.apply(candidates);
+        List<Hit> hits = new ArrayList<>();
+        for (UUID id : candidates) {
+            BeerDTO beer = current.get(id);
+            double score = beer == null ? 0 : score(beer, terms, fuzzyTerms, upc);
+
+            if (score > 0) {
+                hits.add(new Hit(beer, score));
+            }
+        }
+        hits.sort(Hit.RANKING);
+
+        List<BeerDTO> beers = hits.stream().map(Hit::beer).toList();
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(beers, pageable, beers.size());
+        }
+
+        int from = (int) Math.min(pageable.getOffset(), beers.size());
+        int to = Math.min(from + pageable.getPageSize(), beers.size());
+
+        return new PageImpl<>(beers.subList(from, to), pageable, beers.size());
+    }
+
+    private static double score(BeerDTO beer, List<String> terms, Set<String> fuzzyTerms, String upc) {
+        double score = 0;
+
+        if (beer.getUpc() != null && !upc.isEmpty()) {
+            String beerUpc = normalize(beer.getUpc());
+            if (beerUpc.equals(upc)) {
+                score += 10;
+            } else if (beerUpc.startsWith(upc)) {
+                score += 5;
+            }
+        }
+
+        List<String> tokens = tokenize(beer.getBeerName());
+        for (String term : terms) {
+            double best = 0;
+
+            for (String token : tokens) {
+                if (token.equals(term)) {
+                    best = 3;
+                    break;
+                }
+                if (token.startsWith(term)) {
+                    best = Math.max(best, 2);
+                } else if (best < 1 && fuzzyTerms.contains(term)) {
+                    int distance = editDistance(term, token, maxEdits(term));
+                    if (distance <= maxEdits(term)) {
+                        best = Math.max(best, 1.0 / (1 + distance));
+                    }
+                }
+            }
+            score += best;
+        }
+
+        return score;
+    }
+
+    private List<String> similarTokens(String term) {
+        Set<String> candidates = new HashSet<>();
+
+        for (String trigram : trigrams(term)) {
+            Set<String> tokens = tokensByTrigram.get(trigram);
+            if (tokens != null) {
+                candidates.addAll(tokens);
+            }
+        }
+
+        int maxEdits = maxEdits(term);
+        List<String> similar = new ArrayList<>();
+        for (String token : candidates) {
+            if (editDistance(term, token, maxEdits) <= maxEdits) {
+                similar.add(token);
+            }
+        }
+
+        return similar;
+    }
+
+    private void addTrigrams(String token) {
+        for (String trigram : trigrams(token)) {
+            tokensByTrigram.compute(trigram, (key, tokens) -> {
+                Set<String> updated = tokens != null ? tokens : ConcurrentHashMap.newKeySet();
+                updated.add(token);
+                return updated;
+            });
+        }
+    }
+
+    private void removeTrigrams(String token) {
+        for (String trigram : trigrams(token)) {
+            tokensByTrigram.computeIfPresent(trigram, (key, tokens) -> {
+                tokens.remove(token);
+                return tokens.isEmpty() ? null : tokens;
+            });
+        }
+    }
+
+    private static int maxEdits(String term) {
+        return term.length() < 6 ? 1 : 2;
+    }
+
+    /**
+     * Levenshtein distance, or {@code max + 1} as soon as it is known to exceed {@code max}.
+     */
+    private static int editDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        return previous[b.length()];
+    }
+
+    /**
+     * Trigrams of the token padded with a boundary marker, so short tokens and word starts count too.
+     */
+    private static Set<String> trigrams(String token) {
+        String padded = "$" + token + "$";
+        Set<String> trigrams = new HashSet<>();
+
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+
+        return trigrams;
+    }
+
+    private static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(normalize(text))) {
+            if (!token.isEmpty() && !tokens.contains(token)) {
+                tokens.add(token);
+            }
+        }
+
+        return tokens;
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Term to beer id and version, all changes to one term are serialized by the map so the vocabulary
+     * never lists a term without postings for long.
+     */
+    private static class Postings {
+
+        private final Map<String, Map<UUID, Integer>> byTerm = new ConcurrentHashMap<>();
+        private final NavigableSet<String> vocabulary = new ConcurrentSkipListSet<>();
+
+        void add(String term, BeerDTO beer, Consumer<String> onNewTerm) {
+            int version = beer.getVersion() == null ? 0 : beer.getVersion();
+
+            byTerm.compute(term, (key, postings) -> {
+                if (postings == null) {
+                    postings = new ConcurrentHashMap<>();
+                    vocabulary.add(term);
+                    if (onNewTerm != null) {
+                        onNewTerm.accept(term);
+                    }
+                }
+                postings.merge(beer.getId(), version, Math::max);
+                return postings;
+            });
+        }
+
+        void remove(String term, BeerDTO beer, Consumer<String> onRemovedTerm) {
+            int version = beer.getVersion() == null ? 0 : beer.getVersion();
+
+            byTerm.computeIfPresent(term, (key, postings) -> {
+                postings.remove(beer.getId(), version);
+                if (!postings.isEmpty()) {
+                    return postings;
+                }
+
+                vocabulary.remove(term);
+                if (onRemovedTerm != null) {
+                    onRemovedTerm.accept(term);
+                }
+                return null;
+            });
+        }
+
+        void collect(String term, Set<UUID> ids) {
+            Map<UUID, Integer> postings = byTerm.get(term);
+
+            if (postings != null) {
+                for (UUID id : postings.keySet()) {
+                    if (ids.size() >= MAX_CANDIDATES) {
+                        return;
+                    }
+                    ids.add(id);
+                }
+            }
+        }
+
+        boolean hasPrefixed(String prefix) {
+            String first = vocabulary.ceiling(prefix);
+
+            return first != null && first.startsWith(prefix);
+        }
+
+        void collectPrefixed(String prefix, Set<UUID> ids) {
+            for (String term : vocabulary.subSet(prefix, true, prefix + Character.MAX_VALUE, false)) {
+                if (ids.size() >= MAX_CANDIDATES) {
+                    return;
+                }
+                collect(term, ids);
+            }
+        }
+    }
+}
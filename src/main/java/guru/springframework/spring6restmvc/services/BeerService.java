@@ -1,10 +1,20 @@
 package guru.springframework.spring6restmvc.services;
 
+import guru.springframework.spring6restmvc.model.BeerBatchResult;
+import guru.springframework.spring6restmvc.model.BeerChangeFeed;
 import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * Created by jt, Spring Framework Guru.
@@ -13,13 +23,85 @@ public interface BeerService {
 
     List<BeerDTO> listBeers();
 
+    /**
+     * A page of the matching beers, without their total: counting them would cost as much as listing them all.
+     *
+     * @param beerName  optional, case-insensitive name prefix
+     * @param beerStyle optional style filter
+     */
+    Slice<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Pageable pageable);
+
+    /**
+     * Up to {@code size} of the matching beers that follow {@code after} in name order. Where a page number
+     * passes over every beer before its page, the cursor seeks right past them, and writes before it neither
+     * repeat nor skip a beer of the next slice.
+     *
+     * @param after      cursor of the last beer of the previous slice, {@code null} for the first slice
+     * @param descending walk the names backwards
+     */
+    Slice<BeerDTO> listBeersAfter(String beerName, BeerStyle beerStyle, BeerCursor after, int size, boolean descending);
+
+    /**
+     * Ranked search over beer names and upcs, tolerating typos in the name terms.
+     */
+    Page<BeerDTO> searchBeers(String query, Pageable pageable);
+
+    /**
+     * Lazily walks the whole catalog without copying it.
+     */
+    Stream<BeerDTO> streamBeers();
+
+    /**
+     * Incremented by every write to the catalog.
+     */
+    long getModificationCount();
+
+    /**
+     * Up to {@code limit} inserts, updates and deletes recorded after sequence {@code since}, oldest first.
+     * Without {@code since} no changes are returned, only the sequence to follow the feed from.
+     *
+     * @throws ChangesExpiredException when {@code since} is no longer, or was never, in the change log
+     */
+    BeerChangeFeed getChanges(Long since, int limit);
+
+    /**
+     * Completes once a change after sequence {@code since} is recorded.
+     */
+    CompletableFuture<Void> awaitChange(long since);
+
     Optional<BeerDTO> getBeerById(UUID id);
 
+    /**
+     * The beers of those {@code ids} that exist, looked up as one batch.
+     */
+    Map<UUID, BeerDTO> getBeersByIds(Collection<UUID> ids);
+
     BeerDTO saveNewBeer(BeerDTO beer);
 
+    /**
+     * A non-null {@code beer.getVersion()} is the version the caller expects to replace, same for patch.
+     *
+     * @throws VersionConflictException when the stored beer has another version
+     */
     void updateBeerById(UUID beerId, BeerDTO beer);
 
+    /**
+     * Inserts or fully replaces each beer, matching existing beers by id, or by upc when no id is given.
+     *
+     * @return one result per input beer, in the same order
+     */
+    List<BeerBatchResult> upsertBeers(List<BeerDTO> beers);
+
     void deleteById(UUID beerId);
 
     void patchBeerById(UUID beerId, BeerDTO beer);
+
+    /**
+     * Adds {@code delta}, which may be negative, to the quantity on hand without a read-modify-write on the
+     * caller's side. Concurrent adjustments never overwrite each other.
+     *
+     * @return the adjusted beer, empty when there is no such beer
+     * @throws InsufficientInventoryException when the quantity on hand would drop below zero
+     */
+    Optional<BeerDTO> adjustInventory(UUID beerId, int delta);
 }
@@ -1,26 +1,73 @@
 package guru.springframework.spring6restmvc.services;
 
+import guru.springframework.spring6restmvc.model.BeerBatchResult;
+import guru.springframework.spring6restmvc.model.BeerChangeFeed;
 import guru.springframework.spring6restmvc.model.BeerDTO;
 import guru.springframework.spring6restmvc.model.BeerStyle;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * Created by jt, Spring Framework Guru.
  */
 @Slf4j
 @Service
-public class BeerServiceImpl implements BeerService {
-
-    private Map<UUID, BeerDTO> beerMap;
+@BackingService
+@Profile("!jdbc")
+@Timed(value = "beer.service", histogram = true)
+public class BeerServiceImpl implements BeerService, MeterBinder {
+
+    private static final Map<String, Comparator<BeerDTO>> SORTABLE_PROPERTIES = Map.of(
+            "beerName", Comparator.comparing(BeerDTO::getBeerName, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)),
+            "beerStyle", Comparator.comparing(BeerDTO::getBeerStyle, Comparator.nullsLast(Comparator.naturalOrder())),
+            "upc", Comparator.comparing(BeerDTO::getUpc, Comparator.nullsLast(Comparator.naturalOrder())),
+            "price", Comparator.comparing(BeerDTO::getPrice, Comparator.nullsLast(Comparator.naturalOrder())),
+            "quantityOnHand", Comparator.comparing(BeerDTO::getQuantityOnHand, Comparator.nullsLast(Comparator.naturalOrder())),
+            "createdDate", Comparator.comparing(BeerDTO::getCreatedDate, Comparator.nullsLast(Comparator.naturalOrder())),
+            "updateDate", Comparator.comparing(BeerDTO::getUpdateDate, Comparator.nullsLast(Comparator.naturalOrder())));
+
+    private final RecordStore<BeerDTO> beerStore;
+    private final BeerIndex beerIndex = new BeerIndex();
+    private final BeerSearchIndex beerSearchIndex = new BeerSearchIndex();
+    private final BeerChangeLog beerChangeLog = new BeerChangeLog(BeerChangeLog.DEFAULT_CAPACITY);
+
+    // null until the service is bound to a registry
+    private DistributionSummary pageSizes;
+    private DistributionSummary batchSizes;
+    private Map<BeerBatchResult.Status, Counter> batchResults = Map.of();
 
     public BeerServiceImpl() {
-        this.beerMap = new HashMap<>();
+        this(new VersionedStore<>());
+    }
+
+    @Autowired
+    public BeerServiceImpl(RecordStore<BeerDTO> beerStore) {
+        this.beerStore = beerStore;
+        beerStore.addListener(beerIndex);
+        beerStore.addListener(beerSearchIndex);
+        beerStore.addListener(beerChangeLog);
 
         BeerDTO beer1 = BeerDTO.builder()
                 .id(UUID.randomUUID())
@@ -58,71 +105,115 @@ public class BeerServiceImpl implements BeerService {
                 .updateDate(LocalDateTime.now())
                 .build();
 
-        beerMap.put(beer1.getId(), beer1);
-        beerMap.put(beer2.getId(), beer2);
-        beerMap.put(beer3.getId(), beer3);
+        beerStore.insert(beer1);
+        beerStore.insert(beer2);
+        beerStore.insert(beer3);
     }
 
     @Override
     public void patchBeerById(UUID beerId, BeerDTO beer) {
-        BeerDTO existing = beerMap.get(beerId);
+        beerStore.update(beerId, beer.getVersion(), existing -> {
+            BeerDTO.BeerDTOBuilder patched = existing.toBuilder()
+                    .updateDate(LocalDateTime.now());
 
-        if (StringUtils.hasText(beer.getBeerName())){
-            existing.setBeerName(beer.getBeerName());
-        }
+            if (StringUtils.hasText(beer.getBeerName())){
+                patched.beerName(beer.getBeerName());
+            }
 
-        if (beer.getBeerStyle() != null) {
-            existing.setBeerStyle(beer.getBeerStyle());
-        }
+            if (beer.getBeerStyle() != null) {
+                patched.beerStyle(beer.getBeerStyle());
+            }
 
-        if (beer.getPrice() != null) {
-            existing.setPrice(beer.getPrice());
-        }
+            if (beer.getPrice() != null) {
+                patched.price(beer.getPrice());
+            }
 
-        if (beer.getQuantityOnHand() != null){
-            existing.setQuantityOnHand(beer.getQuantityOnHand());
-        }
+            if (beer.getQuantityOnHand() != null){
+                patched.quantityOnHand(beer.getQuantityOnHand());
+            }
 
-        if (StringUtils.hasText(beer.getUpc())) {
-            existing.setUpc(beer.getUpc());
-        }
+            if (StringUtils.hasText(beer.getUpc())) {
+                patched.upc(beer.getUpc());
+            }
+
+            return patched.build();
+        });
     }
 
     @Override
     public void deleteById(UUID beerId) {
-        beerMap.remove(beerId);
+        beerStore.remove(beerId);
     }
 
     @Override
     public void updateBeerById(UUID beerId, BeerDTO beer) {
-        BeerDTO existing = beerMap.get(beerId);
-        existing.setBeerName(beer.getBeerName());
-        existing.setPrice(beer.getPrice());
-        existing.setUpc(beer.getUpc());
-        existing.setQuantityOnHand(beer.getQuantityOnHand());
+        beerStore.update(beerId, beer.getVersion(), existing -> existing.toBuilder()
+                .beerName(beer.getBeerName())
+                .price(beer.getPrice())
+                .upc(beer.getUpc())
+                .quantityOnHand(beer.getQuantityOnHand())
+                .updateDate(LocalDateTime.now())
+                .build());
     }
 
     @Override
     public List<BeerDTO> listBeers(){
-        return new ArrayList<>(beerMap.values());
+        return beerStore.values();
     }
 
     @Override
-    public Optional<BeerDTO> getBeerById(UUID id) {
+    public List<BeerBatchResult> upsertBeers(List<BeerDTO> beers) {
+        // one timestamp for the whole chunk
+        LocalDateTime now = LocalDateTime.now();
+        List<BeerBatchResult> results = new ArrayList<>(beers.size());
+
+        for (BeerDTO beer : beers) {
+            BeerBatchResult result = upsertBeer(beer, now);
+            results.add(result);
+
+            Counter counter = batchResults.get(result.getStatus());
+            if (counter != null) {
+                counter.increment();
+            }
+        }
 
-        log.debug("Get Beer by Id - in service. Id: " + id.toString());
+        if (batchSizes != null) {
+            batchSizes.record(beers.size());
+        }
 
-        return Optional.of(beerMap.get(id));
+        return results;
     }
 
-    @Override
-    public BeerDTO saveNewBeer(BeerDTO beer) {
+    private BeerBatchResult upsertBeer(BeerDTO beer, LocalDateTime now) {
+        if (beer == null) {
+            return BeerBatchResult.builder()
+                    .status(BeerBatchResult.Status.FAILED)
+                    .message("Empty item")
+                    .build();
+        }
 
-        BeerDTO savedBeer = BeerDTO.builder()
-                .id(UUID.randomUUID())
+        UUID existingId = beer.getId() != null ? beer.getId() : findIdByUpc(beer.getUpc());
+
+        if (existingId != null) {
+            Optional<BeerDTO> updated = beerStore.update(existingId, existing -> existing.toBuilder()
+                    .beerName(beer.getBeerName())
+                    .beerStyle(beer.getBeerStyle())
+                    .upc(beer.getUpc())
+                    .quantityOnHand(beer.getQuantityOnHand())
+                    .price(beer.getPrice())
+                    .updateDate(now)
+                    .build());
+
+            if (updated.isPresent()) {
+                return batchResult(updated.get(), BeerBatchResult.Status.UPDATED);
+            }
+        }
+
+        BeerDTO newBeer = BeerDTO.builder()
+                .id(beer.getId() != null ? beer.getId() : UUID.randomUUID())
                 .version(1)
-                .createdDate(LocalDateTime.now())
-                .updateDate(LocalDateTime.now())
+                .createdDate(now)
+                .updateDate(now)
                 .beerName(beer.getBeerName())
                 .beerStyle(beer.getBeerStyle())
                 .quantityOnHand(beer.getQuantityOnHand())
@@ -130,25 +221,260 @@ public class BeerServiceImpl implements BeerService {
                 .price(beer.getPrice())
                 .build();
 
-        beerMap.put(savedBeer.getId(), savedBeer);
+        try {
+            return batchResult(beerStore.insert(newBeer), BeerBatchResult.Status.CREATED);
+        } catch (IllegalStateException e) {
+            // another writer created the same id in the meantime
+            return BeerBatchResult.builder()
+                    .id(newBeer.getId())
+                    .upc(newBeer.getUpc())
+                    .status(BeerBatchResult.Status.FAILED)
+                    .message(e.getMessage())
+                    .build();
+        }
+    }
 
-        return savedBeer;
+    /**
+     * The oldest beer with this upc, when several share it.
+     */
+    private UUID findIdByUpc(String upc) {
+        return beerStore.getAll(beerIndex.findByUpc(upc)).values().stream()
+                .filter(beer -> upc.equals(beer.getUpc()))
+                .min(Comparator.comparing(BeerDTO::getCreatedDate, Comparator.nullsLast(Comparator.naturalOrder()))
+                        .thenComparing(BeerDTO::getId))
+                .map(BeerDTO::getId)
+                .orElse(null);
     }
-}
 
+    private static BeerBatchResult batchResult(BeerDTO beer, BeerBatchResult.Status status) {
+        return BeerBatchResult.builder()
+                .id(beer.getId())
+                .upc(beer.getUpc())
+                .status(status)
+                .build();
+    }
+
+    @Override
+    public Stream<BeerDTO> streamBeers() {
+        return beerStore.stream();
+    }
+
+    @Override
+    public Slice<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Pageable pageable) {
+        NavigableSet<BeerIndex.Entry> entries = beerIndex.select(beerStyle, beerName);
+        Sort sort = pageable.getSort();
+        Sort.Order byName = sort.getOrderFor("beerName");
+
+        if (sort.isSorted() && (byName == null || sort.stream().count() > 1)) {
+            // not an index order, sort the filtered beers in memory
+            List<BeerDTO> matches = new ArrayList<>(currentBeers(entries, 0, Long.MAX_VALUE));
+            matches.sort(comparatorFor(sort));
+
+            if (pageable.isUnpaged()) {
+                return recordPageSize(new SliceImpl<>(matches, pageable, false));
+            }
+
+            int from = (int) Math.min(pageable.getOffset(), matches.size());
+            int to = Math.min(from + pageable.getPageSize(), matches.size());
+
+            return recordPageSize(new SliceImpl<>(matches.subList(from, to), pageable, to < matches.size()));
+        }
+
+        NavigableSet<BeerIndex.Entry> ordered = byName != null && byName.isDescending() ? entries.descendingSet() : entries;
+
+        if (pageable.isUnpaged()) {
+            return recordPageSize(new SliceImpl<>(currentBeers(ordered, 0, Long.MAX_VALUE), pageable, false));
+        }
+
+        // one beyond the page tells whether there is a next one, no need to count them all
+        List<BeerDTO> content = currentBeers(ordered, pageable.getOffset(), pageable.getPageSize() + 1L);
+        boolean hasNext = content.size() > pageable.getPageSize();
+
+        return recordPageSize(new SliceImpl<>(hasNext ? content.subList(0, pageable.getPageSize()) : content,
+                pageable, hasNext));
+    }
+
+    @Override
+    public Slice<BeerDTO> listBeersAfter(String beerName, BeerStyle beerStyle, BeerCursor after, int size,
+                                         boolean descending) {
+        NavigableSet<BeerIndex.Entry> entries = beerIndex.select(beerStyle, beerName);
+
+        if (after != null) {
+            String name = BeerIndex.normalize(after.beerName());
+
+            entries = descending ? entries.headSet(BeerIndex.Entry.lowerBound(name, after.id()), false)
+                    : entries.tailSet(BeerIndex.Entry.upperBound(name, after.id()), false);
+        }
+
+        List<BeerDTO> content = currentBeers(descending ? entries.descendingSet() : entries, 0, size + 1L);
+        boolean hasNext = content.size() > size;
+
+        return recordPageSize(new SliceImpl<>(hasNext ? content.subList(0, size) : content,
+                PageRequest.of(0, size, Sort.by(descending ? Sort.Direction.DESC : Sort.Direction.ASC, "beerName")),
+                hasNext));
+    }
+
+    @Override
+    public Page<BeerDTO> searchBeers(String query, Pageable pageable) {
+        return beerSearchIndex.search(query, pageable, beerStore::getAll);
+    }
+
+    @Override
+    public Optional<BeerDTO> adjustInventory(UUID beerId, int delta) {
+        // checked against the snapshot the store swaps out, a concurrent adjustment makes the store retry
+        return beerStore.update(beerId, existing -> {
+            int onHand = existing.getQuantityOnHand() == null ? 0 : existing.getQuantityOnHand();
+
+            if (onHand + (long) delta < 0) {
+                throw new InsufficientInventoryException(beerId, onHand, delta);
+            }
+
+            return existing.toBuilder()
+                    .quantityOnHand(Math.addExact(onHand, delta))
+                    .updateDate(LocalDateTime.now())
+                    .build();
+        });
+    }
+
+    @Override
+    public BeerChangeFeed getChanges(Long since, int limit) {
+        return beerChangeLog.changesSince(since, limit);
+    }
 
+    @Override
+    public CompletableFuture<Void> awaitChange(long since) {
+        return beerChangeLog.awaitChange(since);
+    }
 
+    private Slice<BeerDTO> recordPageSize(Slice<BeerDTO> page) {
+        if (pageSizes != null) {
+            pageSizes.record(page.getNumberOfElements());
+        }
 
+        return page;
+    }
 
+    /**
+     * Resolves index entries to the current snapshots, skipping and evicting entries that were superseded.
+     */
+    private List<BeerDTO> currentBeers(NavigableSet<BeerIndex.Entry> entries, long offset, long limit) {
+        List<BeerDTO> beers = new ArrayList<>((int) Math.min(limit, 64));
+        long skipped = 0;
+
+        for (BeerIndex.Entry entry : entries) {
+            if (beers.size() >= limit) {
+                break;
+            }
+
+            BeerDTO beer = beerStore.get(entry.id()).orElse(null);
+
+            if (!BeerIndex.isCurrent(entry, beer)) {
+                beerIndex.evict(entry);
+            } else if (skipped < offset) {
+                skipped++;
+            } else {
+                beers.add(beer);
+            }
+        }
+
+        return beers;
+    }
 
+    private static Comparator<BeerDTO> comparatorFor(Sort sort) {
+        Comparator<BeerDTO> comparator = (a, b) -> 0;
 
+        for (Sort.Order order : sort) {
+            Comparator<BeerDTO> property = SORTABLE_PROPERTIES.get(order.getProperty());
+
+            if (property != null) {
+                comparator = comparator.thenComparing(order.isDescending() ? property.reversed() : property);
+            }
+        }
+
+        return comparator;
+    }
+
+    @Override
+    public long getModificationCount() {
+        return beerStore.getModificationCount();
+    }
 
+    @Override
+    public Optional<BeerDTO> getBeerById(UUID id) {
 
+        // parameterized, so nothing is built unless debug is on
+        log.debug("Get Beer by Id - in service. Id: {}", id);
 
+        return beerStore.get(id);
+    }
 
+    @Override
+    public Map<UUID, BeerDTO> getBeersByIds(Collection<UUID> ids) {
+        return beerStore.getAll(ids);
+    }
 
+    @Override
+    public BeerDTO saveNewBeer(BeerDTO beer) {
 
+        BeerDTO savedBeer = BeerDTO.builder()
+                .id(UUID.randomUUID())
+                .version(1)
+                .createdDate(LocalDateTime.now())
+                .updateDate(LocalDateTime.now())
+                .beerName(beer.getBeerName())
+                .beerStyle(beer.getBeerStyle())
+                .quantityOnHand(beer.getQuantityOnHand())
+                .upc(beer.getUpc())
+                .price(beer.getPrice())
+                .build();
 
+        return beerStore.insert(savedBeer);
+    }
 
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("beer.store.size", beerStore, RecordStore::size)
+                .description("Beers in the catalog")
+                .register(registry);
+        FunctionCounter.builder("beer.store.writes", beerStore, RecordStore::getModificationCount)
+                .description("Writes to the catalog")
+                .register(registry);
+
+        Gauge.builder("beer.index.size", beerIndex, BeerIndex::size)
+                .description("Entries in the name index, including superseded ones not evicted yet")
+                .tag("index", "name")
+                .register(registry);
+        Gauge.builder("beer.index.size", beerIndex, BeerIndex::upcSize)
+                .tag("index", "upc")
+                .register(registry);
+        for (BeerStyle style : BeerStyle.values()) {
+            Gauge.builder("beer.index.size", beerIndex, index -> index.size(style))
+                    .tag("index", style.name())
+                    .register(registry);
+        }
 
+        pageSizes = DistributionSummary.builder("beer.list.page.size")
+                .description("Beers returned per page")
+                .publishPercentileHistogram()
+                .register(registry);
+        batchSizes = DistributionSummary.builder("beer.batch.size")
+                .description("Beers per bulk import chunk")
+                .publishPercentileHistogram()
+                .register(registry);
+
+        Map<BeerBatchResult.Status, Counter> counters = new EnumMap<>(BeerBatchResult.Status.class);
+        for (BeerBatchResult.Status status : BeerBatchResult.Status.values()) {
+            counters.put(status, Counter.builder("beer.batch.results")
+                    .tag("status", status.name())
+                    .register(registry));
+        }
+        batchResults = counters;
+    }
 
+    /**
+     * Public so it is also reachable through the metrics proxy.
+     */
+    public RecordStore<BeerDTO> getBeerStore() {
+        return beerStore;
+    }
+}
@@ -0,0 +1,39 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.util.stream.IntStream;
+
+/**
+ * Picks the storage engine behind the beer service with {@code beer.store.engine}: {@code heap} keeps
+ * BeerDTOs on the heap, {@code off-heap} keeps them encoded in direct memory. With {@code beer.store.shards}
+ * above 1 the beers are spread over that many stores of the engine, see {@link ShardedRecordStore}.
+ */
+@Configuration
+@Profile("!jdbc")
+public class BeerStoreConfig {
+
+    @Bean
+    RecordStore<BeerDTO> beerStore(@Value("${beer.store.engine:heap}") String engine,
+                                   @Value("${beer.store.shards:1}") int shards) {
+        if (shards > 1) {
+            return new ShardedRecordStore<>(IntStream.range(0, shards)
+                    .mapToObj(shard -> engine(engine))
+                    .toList());
+        }
+
+        return engine(engine);
+    }
+
+    private static RecordStore<BeerDTO> engine(String engine) {
+        return switch (engine) {
+            case "heap" -> new VersionedStore<>();
+            case "off-heap" -> new OffHeapBeerStore();
+            default -> throw new IllegalArgumentException("Unknown beer.store.engine: " + engine);
+        };
+    }
+}
@@ -0,0 +1,183 @@
+package guru.springframework.spring6restmvc.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import guru.springframework.spring6restmvc.model.BeerBatchResult;
+import guru.springframework.spring6restmvc.model.BeerChangeFeed;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache of single beers in front of another {@link BeerService}. Lists are passed through.
+ *
+ * Writes invalidate the cached beer after the delegate applied them. Invalidating waits for a load of the
+ * same id that is in flight, so a single load that read the old beer cannot put it back afterwards. Batch
+ * lookups are served from the cache but do not fill it: Caffeine's bulk loads are not atomic per id and
+ * would put back what a concurrent write just invalidated.
+ */
+public class CachingBeerService implements BeerService {
+
+    private final BeerService delegate;
+    private final Cache<UUID, BeerDTO> cache;
+
+    public CachingBeerService(BeerService delegate, Cache<UUID, BeerDTO> cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    /**
+     * Rough heap footprint of a cached beer, for weight-bounded caches.
+     */
+    public static int weigh(UUID id, BeerDTO beer) {
+        return 256 + 2 * (length(beer.getBeerName()) + length(beer.getUpc()));
+    }
+
+    @Override
+    public Optional<BeerDTO> getBeerById(UUID id) {
+        return Optional.ofNullable(cache.get(id, key -> delegate.getBeerById(key).orElse(null)));
+    }
+
+    /**
+     * Only the ids missing from the cache go to the delegate, as one batch. What it finds is not cached.
+     */
+    @Override
+    public Map<UUID, BeerDTO> getBeersByIds(Collection<UUID> ids) {
+        return getAllPresentOrLoad(cache, ids, delegate::getBeersByIds);
+    }
+
+    @Override
+    public List<BeerDTO> listBeers() {
+        return delegate.listBeers();
+    }
+
+    @Override
+    public Slice<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Pageable pageable) {
+        return delegate.listBeers(beerName, beerStyle, pageable);
+    }
+
+    @Override
+    public Slice<BeerDTO> listBeersAfter(String beerName, BeerStyle beerStyle, BeerCursor after, int size,
+                                         boolean descending) {
+        return delegate.listBeersAfter(beerName, beerStyle, after, size, descending);
+    }
+
+    @Override
+    public Page<BeerDTO> searchBeers(String query, Pageable pageable) {
+        return delegate.searchBeers(query, pageable);
+    }
+
+    @Override
+    public BeerChangeFeed getChanges(Long since, int limit) {
+        return delegate.getChanges(since, limit);
+    }
+
+    @Override
+    public CompletableFuture<Void> awaitChange(long since) {
+        return delegate.awaitChange(since);
+    }
+
+    @Override
+    public Stream<BeerDTO> streamBeers() {
+        return delegate.streamBeers();
+    }
+
+    @Override
+    public long getModificationCount() {
+        return delegate.getModificationCount();
+    }
+
+    @Override
+    public BeerDTO saveNewBeer(BeerDTO beer) {
+        BeerDTO saved = delegate.saveNewBeer(beer);
+        cache.put(saved.getId(), saved);
+
+        return saved;
+    }
+
+    @Override
+    public void updateBeerById(UUID beerId, BeerDTO beer) {
+        try {
+            delegate.updateBeerById(beerId, beer);
+        } finally {
+            cache.invalidate(beerId);
+        }
+    }
+
+    @Override
+    public List<BeerBatchResult> upsertBeers(List<BeerDTO> beers) {
+        List<BeerBatchResult> results = delegate.upsertBeers(beers);
+
+        for (BeerBatchResult result : results) {
+            if (result.getId() != null) {
+                cache.invalidate(result.getId());
+            }
+        }
+
+        return results;
+    }
+
+    @Override
+    public void deleteById(UUID beerId) {
+        try {
+            delegate.deleteById(beerId);
+        } finally {
+            cache.invalidate(beerId);
+        }
+    }
+
+    @Override
+    public void patchBeerById(UUID beerId, BeerDTO beer) {
+        try {
+            delegate.patchBeerById(beerId, beer);
+        } finally {
+            cache.invalidate(beerId);
+        }
+    }
+
+    @Override
+    public Optional<BeerDTO> adjustInventory(UUID beerId, int delta) {
+        try {
+            return delegate.adjustInventory(beerId, delta);
+        } finally {
+            cache.invalidate(beerId);
+        }
+    }
+
+    /**
+     * The cached values of {@code ids}, plus what one call of {@code load} finds for the others.
+     */
+    static <V> Map<UUID, V> getAllPresentOrLoad(Cache<UUID, V> cache, Collection<UUID> ids,
+                                                Function<Collection<UUID>, Map<UUID, V>> load) {
+        Map<UUID, V> present = cache.getAllPresent(ids);
+        if (present.size() == ids.size()) {
+            return present;
+        }
+
+        Set<UUID> missing = new HashSet<>(ids);
+        missing.removeAll(present.keySet());
+
+        Map<UUID, V> found = new HashMap<>(present);
+        found.putAll(load.apply(Collections.unmodifiableSet(missing)));
+
+        return found;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
@@ -0,0 +1,93 @@
+package guru.springframework.spring6restmvc.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import guru.springframework.spring6restmvc.model.CustomerDTO;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache of single customers in front of another {@link CustomerService}, see
+ * {@link CachingBeerService}.
+ */
+public class CachingCustomerService implements CustomerService {
+
+    private final CustomerService delegate;
+    private final Cache<UUID, CustomerDTO> cache;
+
+    public CachingCustomerService(CustomerService delegate, Cache<UUID, CustomerDTO> cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    /**
+     * Rough heap footprint of a cached customer, for weight-bounded caches.
+     */
+    public static int weigh(UUID id, CustomerDTO customer) {
+        return 192 + 2 * (customer.getName() == null ? 0 : customer.getName().length());
+    }
+
+    @Override
+    public Optional<CustomerDTO> getCustomerById(UUID uuid) {
+        return Optional.ofNullable(cache.get(uuid, key -> delegate.getCustomerById(key).orElse(null)));
+    }
+
+    @Override
+    public Map<UUID, CustomerDTO> getCustomersByIds(Collection<UUID> ids) {
+        return CachingBeerService.getAllPresentOrLoad(cache, ids, delegate::getCustomersByIds);
+    }
+
+    @Override
+    public long getModificationCount() {
+        return delegate.getModificationCount();
+    }
+
+    @Override
+    public List<CustomerDTO> getAllCustomers() {
+        return delegate.getAllCustomers();
+    }
+
+    @Override
+    public Stream<CustomerDTO> streamAllCustomers() {
+        return delegate.streamAllCustomers();
+    }
+
+    @Override
+    public CustomerDTO saveNewCustomer(CustomerDTO customer) {
+        CustomerDTO saved = delegate.saveNewCustomer(customer);
+        cache.put(saved.getId(), saved);
+
+        return saved;
+    }
+
+    @Override
+    public void updateCustomerById(UUID customerId, CustomerDTO customer) {
+        try {
+            delegate.updateCustomerById(customerId, customer);
+        } finally {
+            cache.invalidate(customerId);
+        }
+    }
+
+    @Override
+    public void deleteCustomerById(UUID customerId) {
+        try {
+            delegate.deleteCustomerById(customerId);
+        } finally {
+            cache.invalidate(customerId);
+        }
+    }
+
+    @Override
+    public void patchCustomerById(UUID customerId, CustomerDTO customer) {
+        try {
+            delegate.patchCustomerById(customerId, customer);
+        } finally {
+            cache.invalidate(customerId);
+        }
+    }
+}
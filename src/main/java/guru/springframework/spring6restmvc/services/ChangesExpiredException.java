@@ -0,0 +1,12 @@
+package guru.springframework.spring6restmvc.services;
+
+/**
+ * Thrown when changes are asked for from a sequence the bounded change log no longer holds, or never held.
+ * The caller has to reload the full list and follow the feed from its current sequence.
+ */
+public class ChangesExpiredException extends RuntimeException {
+
+    public ChangesExpiredException(long since, long oldestAvailable, long lastSequence) {
+        super("Changes since " + since + " are not available, the log holds " + oldestAvailable + " to " + lastSequence);
+    }
+}
@@ -0,0 +1,66 @@
+package guru.springframework.spring6restmvc.services;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The {@link RecordStore.CommitHook}s of a store, and the striped locks that keep the writes of one id
+ * from interleaving between the hooks and the publication.
+ *
+ * A hook may wait for a disk flush, so the locks are striped by id instead of one per store: writers of
+ * other ids keep going, and the ones of the same stripe join the next flush. They are
+ * {@link ReentrantLock}s, which a virtual thread can wait on without pinning its carrier.
+ */
+final class CommitHooks<V> {
+
+    private static final int STRIPES = 256;
+
+    private final List<RecordStore.CommitHook<? super V>> hooks = new CopyOnWriteArrayList<>();
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    CommitHooks() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    void add(RecordStore.CommitHook<? super V> hook) {
+        hooks.add(hook);
+    }
+
+    boolean isEmpty() {
+        return hooks.isEmpty();
+    }
+
+    /**
+     * Locks the stripe of {@code id}, to be unlocked once the write is published.
+     */
+    ReentrantLock lock(UUID id) {
+        ReentrantLock lock = locks[(id.hashCode() & Integer.MAX_VALUE) % STRIPES];
+        lock.lock();
+
+        return lock;
+    }
+
+    /**
+     * {@link #lock(UUID)} when there are hooks, otherwise {@code null}: without hooks there is nothing to
+     * keep in order with the publication.
+     */
+    ReentrantLock lockIfHooked(UUID id) {
+        return hooks.isEmpty() ? null : lock(id);
+    }
+
+    void beforeCommit(V previous, V next) {
+        for (RecordStore.CommitHook<? super V> hook : hooks) {
+            hook.beforeCommit(previous, next);
+        }
+    }
+
+    static void unlock(ReentrantLock lock) {
+        if (lock != null) {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package guru.springframework.spring6restmvc.services;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Maps ids to {@code nodes} nodes by consistent hashing.
+ *
+ * Every node is placed on a ring of 64 bit hashes at {@code virtualNodes} points derived from its index
+ * alone, and an id belongs to the node of the first point at or after its own hash. Adding a node only
+ * inserts its points, so only the ids falling right before them, about one in {@code nodes + 1}, change
+ * owner; the virtual nodes keep the share of each node close to even.
+ */
+final class ConsistentHashRing {
+
+    static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final int nodes;
+    private final int virtualNodes;
+    private final long[] points;
+    private final int[] owners;
+
+    ConsistentHashRing(int nodes, int virtualNodes) {
+        if (nodes < 1 || virtualNodes < 1) {
+            throw new IllegalArgumentException("Nodes and virtual nodes must be positive");
+        }
+
+        this.nodes = nodes;
+        this.virtualNodes = virtualNodes;
+
+        long[][] placed = new long[nodes * virtualNodes][];
+        for (int node = 0; node < nodes; node++) {
+            for (int replica = 0; replica < virtualNodes; replica++) {
+                placed[node * virtualNodes + replica] = new long[]{point(node, replica), node};
+            }
+        }
+        Arrays.sort(placed, (a, b) -> Long.compare(a[0], b[0]));
+
+        this.points = new long[placed.length];
+        this.owners = new int[placed.length];
+        for (int i = 0; i < placed.length; i++) {
+            points[i] = placed[i][0];
+            owners[i] = (int) placed[i][1];
+        }
+    }
+
+    int nodes() {
+        return nodes;
+    }
+
+    /**
+     * The same ring with one more node, numbered {@link #nodes()}.
+     */
+    ConsistentHashRing withNode() {
+        return new ConsistentHashRing(nodes + 1, virtualNodes);
+    }
+
+    int owner(UUID id) {
+        long hash = mix(id.getMostSignificantBits() ^ Long.rotateLeft(id.getLeastSignificantBits(), 32));
+        int i = Arrays.binarySearch(points, hash);
+        if (i < 0) {
+            i = -i - 1;
+        }
+
+        return owners[i == points.length ? 0 : i];
+    }
+
+    private static long point(int node, int replica) {
+        return mix(((long) node << 32 | replica) * 0x9E3779B97F4A7C15L);
+    }
+
+    // MurmurHash3 finalizer, random UUIDs are uniform already but time based or hand made ones are not
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93FE1A85B53L;
+        h ^= h >>> 33;
+
+        return h;
+    }
+}
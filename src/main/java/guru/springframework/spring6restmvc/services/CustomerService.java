@@ -2,21 +2,44 @@ package guru.springframework.spring6restmvc.services;
 
 import guru.springframework.spring6restmvc.model.CustomerDTO;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * Created by jt, Spring Framework Guru.
  */
 public interface CustomerService {
 
+    /**
+     * Incremented by every write to the customers.
+     */
+    long getModificationCount();
+
     Optional<CustomerDTO> getCustomerById(UUID uuid);
 
+    /**
+     * The customers of those {@code ids} that exist, looked up as one batch.
+     */
+    Map<UUID, CustomerDTO> getCustomersByIds(Collection<UUID> ids);
+
     List<CustomerDTO> getAllCustomers();
 
+    /**
+     * Lazily walks all customers without copying them.
+     */
+    Stream<CustomerDTO> streamAllCustomers();
+
     CustomerDTO saveNewCustomer(CustomerDTO customer);
 
+    /**
+     * A non-null {@code customer.getVersion()} is the version the caller expects to replace, same for patch.
+     *
+     * @throws VersionConflictException when the stored customer has another version
+     */
     void updateCustomerById(UUID customerId, CustomerDTO customer);
 
     void deleteCustomerById(UUID customerId);
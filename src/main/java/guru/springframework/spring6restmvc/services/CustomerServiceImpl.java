@@ -1,19 +1,27 @@
 package guru.springframework.spring6restmvc.services;
 
 import guru.springframework.spring6restmvc.model.CustomerDTO;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * Created by jt, Spring Framework Guru.
  */
 @Service
-public class CustomerServiceImpl implements CustomerService {
+@BackingService
+@Timed(value = "customer.service", histogram = true)
+public class CustomerServiceImpl implements CustomerService, MeterBinder {
 
-    private Map<UUID, CustomerDTO> customerMap;
+    private final VersionedStore<CustomerDTO> customerStore = new VersionedStore<>();
 
     public CustomerServiceImpl() {
         CustomerDTO customer1 = CustomerDTO.builder()
@@ -40,30 +48,37 @@ public class CustomerServiceImpl implements CustomerService {
                 .updateDate(LocalDateTime.now())
                 .build();
 
-        customerMap = new HashMap<>();
-        customerMap.put(customer1.getId(), customer1);
-        customerMap.put(customer2.getId(), customer2);
-        customerMap.put(customer3.getId(), customer3);
+        customerStore.insert(customer1);
+        customerStore.insert(customer2);
+        customerStore.insert(customer3);
     }
 
     @Override
     public void patchCustomerById(UUID customerId, CustomerDTO customer) {
-        CustomerDTO existing = customerMap.get(customerId);
-
         if (StringUtils.hasText(customer.getName())) {
-            existing.setName(customer.getName());
+            customerStore.update(customerId, customer.getVersion(), existing -> existing.toBuilder()
+                    .name(customer.getName())
+                    .updateDate(LocalDateTime.now())
+                    .build());
         }
     }
 
     @Override
     public void deleteCustomerById(UUID customerId) {
-        customerMap.remove(customerId);
+        customerStore.remove(customerId);
     }
 
     @Override
     public void updateCustomerById(UUID customerId, CustomerDTO customer) {
-        CustomerDTO existing = customerMap.get(customerId);
-        existing.setName(customer.getName());
+        customerStore.update(customerId, customer.getVersion(), existing -> existing.toBuilder()
+                .name(customer.getName())
+                .updateDate(LocalDateTime.now())
+                .build());
+    }
+
+    @Override
+    public Map<UUID, CustomerDTO> getCustomersByIds(Collection<UUID> ids) {
+        return customerStore.getAll(ids);
     }
 
     @Override
@@ -77,29 +92,43 @@ public class CustomerServiceImpl implements CustomerService {
                 .name(customer.getName())
                 .build();
 
-        customerMap.put(savedCustomer.getId(), savedCustomer);
+        return customerStore.insert(savedCustomer);
+    }
 
-        return savedCustomer;
+    @Override
+    public long getModificationCount() {
+        return customerStore.getModificationCount();
     }
 
     @Override
     public Optional<CustomerDTO> getCustomerById(UUID uuid) {
-        return Optional.of(customerMap.get(uuid));
+        return customerStore.get(uuid);
     }
 
     @Override
     public List<CustomerDTO> getAllCustomers() {
-        return new ArrayList<>(customerMap.values());
+        return customerStore.values();
     }
-}
-
-
-
-
-
-
-
-
 
+    @Override
+    public Stream<CustomerDTO> streamAllCustomers() {
+        return customerStore.stream();
+    }
 
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("customer.store.size", customerStore, RecordStore::size)
+                .description("Customers in the store")
+                .register(registry);
+        FunctionCounter.builder("customer.store.writes", customerStore, RecordStore::getModificationCount)
+                .description("Writes to the customer store")
+                .register(registry);
+    }
 
+    /**
+     * Public so it is also reachable through the metrics proxy.
+     */
+    public RecordStore<CustomerDTO> getCustomerStore() {
+        return customerStore;
+    }
+}
@@ -0,0 +1,122 @@
+package guru.springframework.spring6restmvc.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces concurrent inserts into batches written by one thread.
+ *
+ * The writer takes whatever queued up while the previous batch was being written, up to {@code maxBatchSize}
+ * items, so a lone insert goes out at once and a burst shares statements and commits. When a batch fails as a
+ * whole, its items are retried one by one, so only the offending items fail.
+ */
+final class InsertBatcher<T> implements AutoCloseable {
+
+    private record Pending<T>(T item, CompletableFuture<T> inserted) {
+    }
+
+    private final int maxBatchSize;
+    private final Consumer<List<T>> batchWriter;
+    private final Consumer<T> singleWriter;
+    private final BlockingQueue<Pending<T>> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+
+    private volatile boolean closed;
+
+    /**
+     * @param batchWriter  writes all items or none of them
+     * @param singleWriter writes one item
+     */
+    InsertBatcher(String name, int maxBatchSize, Consumer<List<T>> batchWriter, Consumer<T> singleWriter) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+
+        this.maxBatchSize = maxBatchSize;
+        this.batchWriter = batchWriter;
+        this.singleWriter = singleWriter;
+        this.writer = new Thread(this::run, name + "-insert-batcher");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return completed with {@code item} once it is written, or with the exception writing it failed with
+     */
+    CompletableFuture<T> insert(T item) {
+        CompletableFuture<T> inserted = new CompletableFuture<>();
+
+        if (closed) {
+            inserted.completeExceptionally(new IllegalStateException("Insert batcher is closed"));
+        } else {
+            queue.add(new Pending<>(item, inserted));
+        }
+
+        return inserted;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        queue.add(new Pending<>(null, null));
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // inserts that raced with close
+        Pending<T> pending;
+        while ((pending = queue.poll()) != null) {
+            if (pending.inserted() != null) {
+                pending.inserted().completeExceptionally(new IllegalStateException("Insert batcher is closed"));
+            }
+        }
+    }
+
+    private void run() {
+        List<Pending<T>> batch = new ArrayList<>(maxBatchSize);
+        boolean closing = false;
+
+        while (!closing) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, maxBatchSize - 1);
+
+            // the close marker has no future, everything queued before it is still written
+            closing = batch.removeIf(pending -> pending.inserted() == null);
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Pending<T>> batch) {
+        if (batch.size() > 1) {
+            try {
+                batchWriter.accept(batch.stream().map(Pending::item).toList());
+                batch.forEach(pending -> pending.inserted().complete(pending.item()));
+                return;
+            } catch (RuntimeException e) {
+                // fall through and find the items to blame
+            }
+        }
+
+        for (Pending<T> pending : batch) {
+            try {
+                singleWriter.accept(pending.item());
+                pending.inserted().complete(pending.item());
+            } catch (RuntimeException e) {
+                pending.inserted().completeExceptionally(e);
+            }
+        }
+    }
+}
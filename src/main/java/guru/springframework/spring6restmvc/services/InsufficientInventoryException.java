@@ -0,0 +1,13 @@
+package guru.springframework.spring6restmvc.services;
+
+import java.util.UUID;
+
+/**
+ * Thrown when an inventory adjustment would take the quantity on hand below zero. Nothing is changed.
+ */
+public class InsufficientInventoryException extends RuntimeException {
+
+    public InsufficientInventoryException(UUID id, int quantityOnHand, int delta) {
+        super("Cannot adjust " + id + " by " + delta + ", only " + quantityOnHand + " on hand");
+    }
+}
@@ -0,0 +1,806 @@
+package guru.springframework.spring6restmvc.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import guru.springframework.spring6restmvc.model.BeerBatchResult;
+import guru.springframework.spring6restmvc.model.BeerChangeFeed;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link BeerService} over the {@code beer} table of {@code db/beer-schema.sql}, in place of
+ * {@link BeerServiceImpl} with the {@code jdbc} profile.
+ *
+ * New beers saved at the same time are inserted as one JDBC batch in one transaction, see {@link InsertBatcher}.
+ * Updates, patches, deletes and inventory adjustments only write a row back while its version column is still
+ * the one they read, and retry otherwise; a version the caller expects is checked against that column too.
+ *
+ * {@link #listBeersAfter} seeks past the cursor on the (beer_name_key, id) index instead of skipping rows with
+ * OFFSET. Pages sorted by name do the same past the last row of the previous page, as long as that page was read
+ * since the last write; other sorts, and jumps to a page nobody read the page before of, fall back to OFFSET.
+ * Neither counts the matching rows, one row beyond the page tells whether there is a next one.
+ *
+ * Search and the change feed are kept in memory like in {@link BeerServiceImpl}. The search index is loaded
+ * from the table in the background once the application is ready, or by the first search if that comes
+ * earlier, so a large table does not hold up startup. Both assume this service is the only writer of the table.
+ */
+@Slf4j
+@Service
+@BackingService
+@Profile("jdbc")
+@Timed(value = "beer.service", histogram = true)
+public class JdbcBeerService implements BeerService, AutoCloseable {
+
+    static final int DEFAULT_BATCH_SIZE = 100;
+
+    private static final int MAX_PAGE_BOUNDARIES = 10_000;
+
+    private static final String COLUMNS = "id, version, beer_name, beer_style, upc, quantity_on_hand, price, "
+            + "created_date, update_date";
+    private static final String SELECT = "SELECT " + COLUMNS + " FROM beer";
+    private static final String INSERT = "INSERT INTO beer (" + COLUMNS + ", beer_name_key) VALUES (:id, :version, "
+            + ":beerName, :beerStyle, :upc, :quantityOnHand, :price, :createdDate, :updateDate, :beerNameKey)";
+    private static final String UPDATE = "UPDATE beer SET version = :version, beer_name = :beerName, "
+            + "beer_name_key = :beerNameKey, beer_style = :beerStyle, upc = :upc, quantity_on_hand = :quantityOnHand, "
+            + "price = :price, update_date = :updateDate WHERE id = :id AND version = :expectedVersion";
+
+    private static final Map<String, String> SORTABLE_COLUMNS = Map.of(
+            "beerName", "beer_name_key",
+            "beerStyle", "beer_style",
+            "upc", "upc",
+            "price", "price",
+            "quantityOnHand", "quantity_on_hand",
+            "createdDate", "created_date",
+            "updateDate", "update_date");
+
+    private static final RowMapper<BeerDTO> BEER_ROW_MAPPER = (rs, rowNum) -> {
+        String beerStyle = rs.getString("beer_style");
+
+        return BeerDTO.builder()
+                .id(rs.getObject("id", UUID.class))
+                .version(rs.getInt("version"))
+                .beerName(rs.getString("beer_name"))
+                .beerStyle(beerStyle == null ? null : BeerStyle.valueOf(beerStyle))
+                .upc(rs.getString("upc"))
+                .quantityOnHand(rs.getObject("quantity_on_hand", Integer.class))
+                .price(rs.getBigDecimal("price"))
+                .createdDate(rs.getObject("created_date", LocalDateTime.class))
+                .updateDate(rs.getObject("update_date", LocalDateTime.class))
+                .build();
+    };
+
+    /**
+     * A page of a name ordered listing, as of a modification count.
+     */
+    private record PageKey(String namePrefix, BeerStyle beerStyle, boolean descending, int pageSize, int pageNumber,
+                           long modificationCount) {
+    }
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate transactions;
+    private final InsertBatcher<BeerDTO> inserts;
+    private final BeerSearchIndex beerSearchIndex = new BeerSearchIndex();
+    private final BeerChangeLog beerChangeLog = new BeerChangeLog(BeerChangeLog.DEFAULT_CAPACITY);
+    private final AtomicLong modificationCount = new AtomicLong();
+    private final Cache<PageKey, BeerCursor> pageBoundaries = Caffeine.newBuilder()
+            .maximumSize(MAX_PAGE_BOUNDARIES)
+            .build();
+
+    // writes reach the search index from the moment its load starts, see loadSearchIndex
+    private volatile boolean searchIndexing;
+    private volatile boolean searchIndexLoaded;
+
+    @Autowired
+    public JdbcBeerService(NamedParameterJdbcTemplate jdbc, PlatformTransactionManager transactionManager,
+                           @Value("${beer.jdbc.batch-size:" + DEFAULT_BATCH_SIZE + "}") int batchSize) {
+        this.jdbc = jdbc;
+        this.transactions = new TransactionTemplate(transactionManager);
+        this.inserts = new InsertBatcher<>("beer", batchSize, this::insertBatch, this::insertOne);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        Thread.ofVirtual().name("beer-search-index-loader").start(this::loadSearchIndex);
+    }
+
+    @Override
+    public List<BeerDTO> listBeers() {
+        return jdbc.query(SELECT, Map.of(), BEER_ROW_MAPPER);
+    }
+
+    @Override
+    public Slice<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Pageable pageable) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String where = where(beerName, beerStyle, params);
+
+        Sort sort = pageable.getSort();
+        Sort.Order byName = sort.getOrderFor("beerName");
+
+        if (sort.isSorted() && (byName == null || sort.stream().count() > 1)) {
+            String sql = SELECT + where + " ORDER BY " + orderBy(sort);
+
+            return pageable.isUnpaged() ? new SliceImpl<>(jdbc.query(sql, params, BEER_ROW_MAPPER))
+                    : slice(jdbc.query(sql + limit(pageable, params), params, BEER_ROW_MAPPER), pageable);
+        }
+
+        boolean descending = byName != null && byName.isDescending();
+
+        if (pageable.isUnpaged()) {
+            return new SliceImpl<>(jdbc.query(SELECT + where + nameOrder(descending), params, BEER_ROW_MAPPER));
+        }
+
+        // read before the page, a write in between only makes the boundary of this page expire early
+        long readAt = modificationCount.get();
+        String namePrefix = StringUtils.hasLength(beerName) ? nameKey(beerName) : "";
+        BeerCursor previous = pageable.getPageNumber() == 0 ? null : pageBoundaries.getIfPresent(new PageKey(namePrefix,
+                beerStyle, descending, pageable.getPageSize(), pageable.getPageNumber() - 1, readAt));
+
+        Slice<BeerDTO> page;
+        if (previous != null) {
+            page = seek(where, params, previous, pageable.getPageSize(), descending);
+        } else {
+            page = slice(jdbc.query(SELECT + where + nameOrder(descending) + limit(pageable, params), params,
+                    BEER_ROW_MAPPER), pageable);
+        }
+
+        if (page.hasContent()) {
+            BeerDTO last = page.getContent().get(page.getNumberOfElements() - 1);
+            pageBoundaries.put(new PageKey(namePrefix, beerStyle, descending, pageable.getPageSize(),
+                    pageable.getPageNumber(), readAt), BeerCursor.after(last));
+        }
+
+        return new SliceImpl<>(page.getContent(), pageable, page.hasNext());
+    }
+
+    @Override
+    public Slice<BeerDTO> listBeersAfter(String beerName, BeerStyle beerStyle, BeerCursor after, int size,
+                                         boolean descending) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+
+        return seek(where(beerName, beerStyle, params), params, after, size, descending);
+    }
+
+    @Override
+    public Page<BeerDTO> searchBeers(String query, Pageable pageable) {
+        loadSearchIndex();
+
+        return beerSearchIndex.search(query, pageable, this::getBeersByIds);
+    }
+
+    /**
+     * Holds a connection until the stream is closed.
+     */
+    @Override
+    public Stream<BeerDTO> streamBeers() {
+        return jdbc.queryForStream(SELECT, Map.of(), BEER_ROW_MAPPER);
+    }
+
+    @Override
+    public long getModificationCount() {
+        return modificationCount.get();
+    }
+
+    @Override
+    public BeerChangeFeed getChanges(Long since, int limit) {
+        return beerChangeLog.changesSince(since, limit);
+    }
+
+    @Override
+    public CompletableFuture<Void> awaitChange(long since) {
+        return beerChangeLog.awaitChange(since);
+    }
+
+    @Override
+    public Optional<BeerDTO> getBeerById(UUID id) {
+        log.debug("Get Beer by Id - in service. Id: {}", id);
+
+        return jdbc.query(SELECT + " WHERE id = :id", Map.of("id", id), BEER_ROW_MAPPER).stream().findFirst();
+    }
+
+    @Override
+    public Map<UUID, BeerDTO> getBeersByIds(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<UUID, BeerDTO> found = HashMap.newHashMap(ids.size());
+        jdbc.query(SELECT + " WHERE id IN (:ids)", Map.of("ids", ids), rs -> {
+            BeerDTO beer = BEER_ROW_MAPPER.mapRow(rs, 0);
+            found.put(beer.getId(), beer);
+        });
+
+        return found;
+    }
+
+    /**
+     * @throws DuplicateKeyException when another beer has the same upc
+     */
+    @Override
+    public BeerDTO saveNewBeer(BeerDTO beer) {
+        LocalDateTime now = now();
+
+        BeerDTO savedBeer = BeerDTO.builder()
+                .id(UUID.randomUUID())
+                .version(1)
+                .createdDate(now)
+                .updateDate(now)
+                .beerName(beer.getBeerName())
+                .beerStyle(beer.getBeerStyle())
+                .quantityOnHand(beer.getQuantityOnHand())
+                .upc(beer.getUpc())
+                .price(beer.getPrice())
+                .build();
+
+        try {
+            return inserts.insert(savedBeer).join();
+        } catch (CompletionException e) {
+            // rethrown on the calling thread, as if it had inserted the beer itself
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void updateBeerById(UUID beerId, BeerDTO beer) {
+        update(beerId, beer.getVersion(), existing -> existing.toBuilder()
+                .beerName(beer.getBeerName())
+                .price(beer.getPrice())
+                .upc(beer.getUpc())
+                .quantityOnHand(beer.getQuantityOnHand())
+                .updateDate(now())
+                .build());
+    }
+
+    @Override
+    public void patchBeerById(UUID beerId, BeerDTO beer) {
+        update(beerId, beer.getVersion(), existing -> {
+            BeerDTO.BeerDTOBuilder patched = existing.toBuilder()
+                    .updateDate(now());
+
+            if (StringUtils.hasText(beer.getBeerName())) {
+                patched.beerName(beer.getBeerName());
+            }
+
+            if (beer.getBeerStyle() != null) {
+                patched.beerStyle(beer.getBeerStyle());
+            }
+
+            if (beer.getPrice() != null) {
+                patched.price(beer.getPrice());
+            }
+
+            if (beer.getQuantityOnHand() != null) {
+                patched.quantityOnHand(beer.getQuantityOnHand());
+            }
+
+            if (StringUtils.hasText(beer.getUpc())) {
+                patched.upc(beer.getUpc());
+            }
+
+            return patched.build();
+        });
+    }
+
+    @Override
+    public Optional<BeerDTO> adjustInventory(UUID beerId, int delta) {
+        // checked against the row as read, a concurrent adjustment fails the version check and we read again
+        return update(beerId, null, existing -> {
+            int onHand = existing.getQuantityOnHand() == null ? 0 : existing.getQuantityOnHand();
+
+            if (onHand + (long) delta < 0) {
+                throw new InsufficientInventoryException(beerId, onHand, delta);
+            }
+
+            return existing.toBuilder()
+                    .quantityOnHand(Math.addExact(onHand, delta))
+                    .updateDate(now())
+                    .build();
+        });
+    }
+
+    @Override
+    public void deleteById(UUID beerId) {
+        for (;;) {
+            BeerDTO current = getBeerById(beerId).orElse(null);
+
+            if (current == null) {
+                return;
+            }
+            if (jdbc.update("DELETE FROM beer WHERE id = :id AND version = :version",
+                    Map.of("id", beerId, "version", current.getVersion())) == 1) {
+                fireWrite(current, null);
+                return;
+            }
+        }
+    }
+
+    /**
+     * The rows of a chunk that exist already are read with one query and written back as one JDBC batch in one
+     * transaction, each under the version read; the new beers of the chunk are inserted as another. Items the
+     * batches cannot take go row by row after them: a row another writer changed since it was read, and every item
+     * of a batch that failed, so only the item at fault fails. An item for a beer an earlier item of the chunk wrote,
+     * by id or upc, waits for that one and updates what it wrote, as if the items had come one at a time.
+     */
+    @Override
+    public List<BeerBatchResult> upsertBeers(List<BeerDTO> beers) {
+        // one timestamp for the whole chunk
+        LocalDateTime now = now();
+        List<UUID> ids = existingIds(beers);
+        int[] earlier = earlierItems(beers, ids);
+        Map<UUID, BeerDTO> current = getBeersByIds(ids.stream().filter(Objects::nonNull).collect(Collectors.toSet()));
+
+        List<Integer> positions = new ArrayList<>();
+        List<BeerDTO> reads = new ArrayList<>();
+        List<BeerDTO> updates = new ArrayList<>();
+        for (int i = 0; i < beers.size(); i++) {
+            BeerDTO read = earlier[i] >= 0 || ids.get(i) == null ? null : current.get(ids.get(i));
+
+            if (read != null) {
+                BeerDTO next = upsert(beers.get(i), now).apply(read);
+                next.setVersion(read.getVersion() + 1);
+
+                positions.add(i);
+                reads.add(read);
+                updates.add(next);
+            }
+        }
+
+        boolean[] written = updateBatch(reads, updates, now);
+        List<CompletableFuture<BeerBatchResult>> pending = new ArrayList<>(Collections.nCopies(beers.size(), null));
+        for (int k = 0; k < updates.size(); k++) {
+            if (written[k]) {
+                fireWrite(reads.get(k), updates.get(k));
+                pending.set(positions.get(k),
+                        CompletableFuture.completedFuture(batchResult(updates.get(k), BeerBatchResult.Status.UPDATED)));
+            }
+        }
+
+        List<Integer> insertPositions = new ArrayList<>();
+        List<BeerDTO> inserts = new ArrayList<>();
+        for (int i = 0; i < beers.size(); i++) {
+            boolean exists = ids.get(i) != null && current.containsKey(ids.get(i));
+
+            if (beers.get(i) != null && earlier[i] < 0 && !exists) {
+                insertPositions.add(i);
+                inserts.add(newBeer(beers.get(i), now));
+            }
+        }
+        if (insertChunk(inserts)) {
+            for (int k = 0; k < inserts.size(); k++) {
+                pending.set(insertPositions.get(k),
+                        CompletableFuture.completedFuture(batchResult(inserts.get(k), BeerBatchResult.Status.CREATED)));
+            }
+        }
+        for (int i = 0; i < beers.size(); i++) {
+            if (pending.get(i) == null && earlier[i] < 0) {
+                pending.set(i, upsertBeer(beers.get(i), ids.get(i), now));
+            }
+        }
+
+        List<BeerBatchResult> results = new ArrayList<>(Collections.nCopies(beers.size(), null));
+        for (int i = 0; i < beers.size(); i++) {
+            if (earlier[i] < 0) {
+                results.set(i, pending.get(i).join());
+            }
+        }
+        // in order, an item may wait for one that waited itself
+        for (int i = 0; i < beers.size(); i++) {
+            if (earlier[i] >= 0) {
+                UUID id = ids.get(i) != null ? ids.get(i) : results.get(earlier[i]).getId();
+                results.set(i, upsertBeer(beers.get(i), id, now).join());
+            }
+        }
+
+        return results;
+    }
+
+    @Override
+    public void close() {
+        inserts.close();
+    }
+
+    /**
+     * @param existingId id of the beer to update, or {@code null} to insert it right away
+     */
+    private CompletableFuture<BeerBatchResult> upsertBeer(BeerDTO beer, UUID existingId, LocalDateTime now) {
+        if (beer == null) {
+            return CompletableFuture.completedFuture(BeerBatchResult.builder()
+                    .status(BeerBatchResult.Status.FAILED)
+                    .message("Empty item")
+                    .build());
+        }
+
+        if (existingId != null) {
+            try {
+                Optional<BeerDTO> updated = update(existingId, null, upsert(beer, now));
+
+                if (updated.isPresent()) {
+                    return CompletableFuture.completedFuture(batchResult(updated.get(), BeerBatchResult.Status.UPDATED));
+                }
+            } catch (DataAccessException e) {
+                return CompletableFuture.completedFuture(failedResult(existingId, beer.getUpc(), e));
+            }
+        }
+
+        BeerDTO newBeer = newBeer(beer, now);
+
+        return inserts.insert(newBeer).handle((inserted, e) -> e == null
+                ? batchResult(inserted, BeerBatchResult.Status.CREATED)
+                : failedResult(newBeer.getId(), newBeer.getUpc(), e));
+    }
+
+    private static BeerDTO newBeer(BeerDTO beer, LocalDateTime now) {
+        return BeerDTO.builder()
+                .id(beer.getId() != null ? beer.getId() : UUID.randomUUID())
+                .version(1)
+                .createdDate(now)
+                .updateDate(now)
+                .beerName(beer.getBeerName())
+                .beerStyle(beer.getBeerStyle())
+                .quantityOnHand(beer.getQuantityOnHand())
+                .upc(beer.getUpc())
+                .price(beer.getPrice())
+                .build();
+    }
+
+    private static UnaryOperator<BeerDTO> upsert(BeerDTO beer, LocalDateTime now) {
+        return existing -> existing.toBuilder()
+                .beerName(beer.getBeerName())
+                .beerStyle(beer.getBeerStyle())
+                .upc(beer.getUpc())
+                .quantityOnHand(beer.getQuantityOnHand())
+                .price(beer.getPrice())
+                .updateDate(now)
+                .build();
+    }
+
+    /**
+     * The id each item names, or else the id of the beer with its upc, in one query for the whole chunk;
+     * {@code null} for empty items and beers that are new.
+     */
+    private List<UUID> existingIds(List<BeerDTO> beers) {
+        List<String> upcs = beers.stream()
+                .filter(beer -> beer != null && beer.getId() == null && beer.getUpc() != null)
+                .map(BeerDTO::getUpc)
+                .distinct()
+                .toList();
+
+        Map<String, UUID> idsByUpc = HashMap.newHashMap(upcs.size());
+        if (!upcs.isEmpty()) {
+            jdbc.query("SELECT id, upc FROM beer WHERE upc IN (:upcs)", Map.of("upcs", upcs), rs -> {
+                idsByUpc.put(rs.getString("upc"), rs.getObject("id", UUID.class));
+            });
+        }
+
+        List<UUID> ids = new ArrayList<>(beers.size());
+        for (BeerDTO beer : beers) {
+            ids.add(beer == null ? null : beer.getId() != null ? beer.getId() : idsByUpc.get(beer.getUpc()));
+        }
+
+        return ids;
+    }
+
+    /**
+     * For every item the first earlier item of the chunk for the same beer, by id or upc, or -1.
+     */
+    private static int[] earlierItems(List<BeerDTO> beers, List<UUID> ids) {
+        int[] earlier = new int[beers.size()];
+        // ids and upcs side by side, a UUID never equals a String
+        Map<Object, Integer> first = HashMap.newHashMap(beers.size() * 2);
+
+        for (int i = 0; i < beers.size(); i++) {
+            BeerDTO beer = beers.get(i);
+            Integer byId = beer == null || ids.get(i) == null ? null : first.putIfAbsent(ids.get(i), i);
+            Integer byUpc = beer == null || beer.getUpc() == null ? null : first.putIfAbsent(beer.getUpc(), i);
+
+            earlier[i] = byId != null ? byId : byUpc != null ? byUpc : -1;
+        }
+
+        return earlier;
+    }
+
+    /**
+     * Writes {@code updates} back under the versions of {@code reads}.
+     *
+     * @return per update whether it was written
+     */
+    private boolean[] updateBatch(List<BeerDTO> reads, List<BeerDTO> updates, LocalDateTime now) {
+        boolean[] written = new boolean[updates.size()];
+        if (updates.isEmpty()) {
+            return written;
+        }
+
+        SqlParameterSource[] batch = new SqlParameterSource[updates.size()];
+        for (int k = 0; k < batch.length; k++) {
+            batch[k] = parameters(updates.get(k)).addValue("expectedVersion", reads.get(k).getVersion());
+        }
+
+        int[] counts;
+        try {
+            // one commit for the whole batch
+            counts = transactions.execute(status -> jdbc.batchUpdate(UPDATE, batch));
+        } catch (DataAccessException e) {
+            // rolled back, nothing was written
+            return written;
+        }
+
+        List<UUID> unknown = new ArrayList<>();
+        for (int k = 0; k < counts.length; k++) {
+            written[k] = counts[k] == 1;
+
+            if (counts[k] == Statement.SUCCESS_NO_INFO) {
+                unknown.add(updates.get(k).getId());
+            }
+        }
+
+        if (!unknown.isEmpty()) {
+            // the driver ran the statement but did not say whether the version guard matched: if it did, the row
+            // has the version and timestamp this chunk wrote, another write only has both in the same microsecond
+            Map<UUID, BeerDTO> reread = getBeersByIds(unknown);
+            for (int k = 0; k < counts.length; k++) {
+                BeerDTO row = counts[k] == Statement.SUCCESS_NO_INFO ? reread.get(updates.get(k).getId()) : null;
+
+                written[k] = written[k] || row != null && row.getVersion().equals(updates.get(k).getVersion())
+                        && now.equals(row.getUpdateDate());
+            }
+        }
+
+        return written;
+    }
+
+    private static BeerBatchResult batchResult(BeerDTO beer, BeerBatchResult.Status status) {
+        return BeerBatchResult.builder()
+                .id(beer.getId())
+                .upc(beer.getUpc())
+                .status(status)
+                .build();
+    }
+
+    private static BeerBatchResult failedResult(UUID id, String upc, Throwable e) {
+        return BeerBatchResult.builder()
+                .id(id)
+                .upc(upc)
+                .status(BeerBatchResult.Status.FAILED)
+                .message(e instanceof DuplicateKeyException ? "Duplicate id or upc" : e.getMessage())
+                .build();
+    }
+
+    /**
+     * Reads the row, applies {@code change} and writes the result back under the version read.
+     *
+     * @throws VersionConflictException when the row has another version than {@code expectedVersion}
+     */
+    private Optional<BeerDTO> update(UUID id, Integer expectedVersion, UnaryOperator<BeerDTO> change) {
+        for (;;) {
+            BeerDTO current = getBeerById(id).orElse(null);
+
+            if (current == null) {
+                return Optional.empty();
+            }
+            if (expectedVersion != null && !expectedVersion.equals(current.getVersion())) {
+                throw new VersionConflictException(id, expectedVersion, current.getVersion());
+            }
+
+            BeerDTO next = change.apply(current);
+            next.setVersion(current.getVersion() + 1);
+
+            if (jdbc.update(UPDATE, parameters(next).addValue("expectedVersion", current.getVersion())) == 1) {
+                fireWrite(current, next);
+                return Optional.of(next);
+            }
+            // another writer got there first, or the beer is gone
+        }
+    }
+
+    private void insertBatch(List<BeerDTO> beers) {
+        SqlParameterSource[] batch = beers.stream()
+                .map(JdbcBeerService::parameters)
+                .toArray(SqlParameterSource[]::new);
+
+        // one commit for the whole batch
+        transactions.executeWithoutResult(status -> jdbc.batchUpdate(INSERT, batch));
+
+        for (BeerDTO beer : beers) {
+            fireWrite(null, beer);
+        }
+    }
+
+    /**
+     * {@link #insertBatch} on the calling thread.
+     *
+     * @return whether the beers were inserted, all or none of them are
+     */
+    private boolean insertChunk(List<BeerDTO> beers) {
+        if (beers.isEmpty()) {
+            return true;
+        }
+
+        try {
+            insertBatch(beers);
+            return true;
+        } catch (DataAccessException e) {
+            return false;
+        }
+    }
+
+    private void insertOne(BeerDTO beer) {
+        jdbc.update(INSERT, parameters(beer));
+        fireWrite(null, beer);
+    }
+
+    private void fireWrite(BeerDTO previous, BeerDTO current) {
+        if (searchIndexing) {
+            beerSearchIndex.onWrite(previous, current);
+        }
+        beerChangeLog.onWrite(previous, current);
+
+        // after the indexes: whoever reads the new count finds the write in them too
+        modificationCount.incrementAndGet();
+    }
+
+    /**
+     * Indexes every row once. Writes are indexed from before the scan starts: a row the scan reads in an older
+     * version than a concurrent write indexed leaves at most a stale posting behind, and searches only score
+     * the current beers of their candidates.
+     */
+    private void loadSearchIndex() {
+        if (searchIndexLoaded) {
+            return;
+        }
+
+        synchronized (beerSearchIndex) {
+            if (searchIndexLoaded) {
+                return;
+            }
+
+            searchIndexing = true;
+            jdbc.query(SELECT, Map.of(), rs -> {
+                beerSearchIndex.onWrite(null, BEER_ROW_MAPPER.mapRow(rs, 0));
+            });
+            searchIndexLoaded = true;
+            log.debug("Loaded the beer search index");
+        }
+    }
+
+    /**
+     * Up to {@code size} rows after {@code after} in name order, all of them from the start without a cursor.
+     */
+    private Slice<BeerDTO> seek(String where, MapSqlParameterSource params, BeerCursor after, int size,
+                                boolean descending) {
+        StringBuilder sql = new StringBuilder(SELECT).append(where);
+
+        if (after != null) {
+            String past = descending ? " < " : " > ";
+            sql.append(" AND (beer_name_key").append(past).append(":afterName OR (beer_name_key = :afterName AND id")
+                    .append(past).append(":afterId))");
+            params.addValue("afterName", nameKey(after.beerName()))
+                    .addValue("afterId", after.id());
+        }
+        sql.append(nameOrder(descending)).append(" LIMIT :limit");
+        params.addValue("limit", size + 1);
+
+        return slice(jdbc.query(sql.toString(), params, BEER_ROW_MAPPER),
+                PageRequest.of(0, size, Sort.by(descending ? Sort.Direction.DESC : Sort.Direction.ASC, "beerName")));
+    }
+
+    /**
+     * {@code content} read with one row beyond the page, which only tells whether there is a next one.
+     */
+    private static Slice<BeerDTO> slice(List<BeerDTO> content, Pageable pageable) {
+        boolean hasNext = content.size() > pageable.getPageSize();
+
+        return new SliceImpl<>(hasNext ? content.subList(0, pageable.getPageSize()) : content, pageable, hasNext);
+    }
+
+    private static String where(String beerName, BeerStyle beerStyle, MapSqlParameterSource params) {
+        StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+
+        if (StringUtils.hasLength(beerName)) {
+            where.append(" AND beer_name_key LIKE :namePrefix ESCAPE '\\'");
+            params.addValue("namePrefix", escapeLike(nameKey(beerName)) + "%");
+        }
+        if (beerStyle != null) {
+            where.append(" AND beer_style = :beerStyle");
+            params.addValue("beerStyle", beerStyle.name());
+        }
+
+        return where.toString();
+    }
+
+    private static String nameOrder(boolean descending) {
+        String direction = descending ? " DESC" : " ASC";
+
+        return " ORDER BY beer_name_key" + direction + ", id" + direction;
+    }
+
+    private static MapSqlParameterSource parameters(BeerDTO beer) {
+        return new MapSqlParameterSource()
+                .addValue("id", beer.getId())
+                .addValue("version", beer.getVersion())
+                .addValue("beerName", beer.getBeerName())
+                .addValue("beerNameKey", nameKey(beer.getBeerName()))
+                .addValue("beerStyle", beer.getBeerStyle() == null ? null : beer.getBeerStyle().name())
+                .addValue("upc", beer.getUpc())
+                .addValue("quantityOnHand", beer.getQuantityOnHand())
+                .addValue("price", beer.getPrice())
+                .addValue("createdDate", beer.getCreatedDate())
+                .addValue("updateDate", beer.getUpdateDate());
+    }
+
+    private static String orderBy(Sort sort) {
+        StringBuilder orderBy = new StringBuilder();
+
+        for (Sort.Order order : sort) {
+            String column = SORTABLE_COLUMNS.get(order.getProperty());
+
+            // unknown properties are ignored, like the in-memory service does
+            if (column != null) {
+                orderBy.append(column).append(order.isDescending() ? " DESC" : " ASC").append(", ");
+            }
+        }
+
+        return orderBy.append("id").toString();
+    }
+
+    /**
+     * The page and one row beyond it, see {@link #slice}.
+     */
+    private static String limit(Pageable pageable, MapSqlParameterSource params) {
+        params.addValue("limit", pageable.getPageSize() + 1)
+                .addValue("offset", pageable.getOffset());
+
+        return " LIMIT :limit OFFSET :offset";
+    }
+
+    /**
+     * Same key as {@link BeerIndex}, lower case and {@code ""} for no name.
+     */
+    private static String nameKey(String beerName) {
+        return beerName == null ? "" : beerName.toLowerCase(Locale.ROOT);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    // the TIMESTAMP(6) columns keep microseconds, so do the DTOs handed out before a read
+    private static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+}
@@ -0,0 +1,600 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * {@link RecordStore} keeping beers outside the Java heap in a compact binary layout, for catalogs big
+ * enough that millions of BeerDTO object graphs dominate garbage collection. A BeerDTO only exists while
+ * somebody reads it. The indexes {@link BeerServiceImpl} keeps over the store are on the heap either way,
+ * and outweigh the store itself; StoreFootprintBenchmark measures both.
+ *
+ * Records are appended to direct buffer chunks. An update appends a new record and leaves the old one
+ * behind as garbage, which is compacted away once it outweighs the live records. The id index is an
+ * open addressing table over primitive arrays, so it adds no objects per beer either.
+ *
+ * Writers take a {@link StampedLock} write lock. Reads are optimistic and only fall back to the read
+ * lock when a write got in the way. {@link CommitHook}s run before a writer takes the write lock, under a
+ * lock of the id only, so a hook waiting for the disk does not hold up writers of other beers.
+ *
+ * Prices are kept as long cents and come back with scale 2.
+ */
+public class OffHeapBeerStore implements RecordStore<BeerDTO> {
+
+    private static final int CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final long EMPTY = -1;
+    private static final long REMOVED = -2;
+    private static final BeerStyle[] STYLES = BeerStyle.values();
+
+    // record layout, all offsets relative to the start of the record
+    private static final int LENGTH = 0;
+    private static final int ID_MSB = 4;
+    private static final int ID_LSB = 12;
+    private static final int VERSION = 20;
+    private static final int STYLE = 24;
+    private static final int QUANTITY = 25;
+    private static final int PRICE_CENTS = 29;
+    private static final int CREATED_SECONDS = 37;
+    private static final int CREATED_NANOS = 45;
+    private static final int UPDATED_SECONDS = 49;
+    private static final int UPDATED_NANOS = 57;
+    private static final int STRINGS = 61;
+
+    private static final int NULL_INT = Integer.MIN_VALUE;
+    private static final long NULL_LONG = Long.MIN_VALUE;
+
+    private final StampedLock lock = new StampedLock();
+    private final List<WriteListener<? super BeerDTO>> listeners = new CopyOnWriteArrayList<>();
+    private final CommitHooks<BeerDTO> commitHooks = new CommitHooks<>();
+    private final AtomicLong modificationCount = new AtomicLong();
+
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+    private int tailPosition = CHUNK_SIZE;
+    private long liveBytes;
+    private long garbageBytes;
+
+    private long[] idMsbs = new long[16];
+    private long[] idLsbs = new long[16];
+    private long[] addresses = emptyAddresses(16);
+    private volatile int size;
+    private int removed;
+
+    @Override
+    public void addListener(WriteListener<? super BeerDTO> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void addCommitHook(CommitHook<? super BeerDTO> hook) {
+        commitHooks.add(hook);
+    }
+
+    @Override
+    public Optional<BeerDTO> get(UUID id) {
+        long stamp = lock.tryOptimisticRead();
+        BeerDTO beer = null;
+
+        try {
+            beer = find(id);
+        } catch (RuntimeException e) {
+            // read a half written table or chunk, retry under the lock
+            stamp = 0;
+        }
+
+        if (stamp != 0 && lock.validate(stamp)) {
+            return Optional.ofNullable(beer);
+        }
+
+        stamp = lock.readLock();
+        try {
+            return Optional.ofNullable(find(id));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * The whole batch is read under one stamp, so a batch costs one validation instead of one per id.
+     */
+    @Override
+    public Map<UUID, BeerDTO> getAll(Collection<UUID> ids) {
+        long stamp = lock.tryOptimisticRead();
+        Map<UUID, BeerDTO> found = HashMap.newHashMap(ids.size());
+
+        try {
+            findAll(ids, found);
+        } catch (RuntimeException e) {
+            stamp = 0;
+        }
+
+        if (stamp != 0 && lock.validate(stamp)) {
+            return found;
+        }
+
+        found.clear();
+        stamp = lock.readLock();
+        try {
+            findAll(ids, found);
+            return found;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void findAll(Collection<UUID> ids, Map<UUID, BeerDTO> found) {
+        for (UUID id : ids) {
+            BeerDTO beer = find(id);
+
+            if (beer != null) {
+                found.put(id, beer);
+            }
+        }
+    }
+
+    @Override
+    public Stream<BeerDTO> stream() {
+        long[] ids;
+        long stamp = lock.readLock();
+        try {
+            ids = new long[size * 2];
+            int next = 0;
+            for (int slot = 0; slot < addresses.length; slot++) {
+                if (addresses[slot] >= 0) {
+                    ids[next++] = idMsbs[slot];
+                    ids[next++] = idLsbs[slot];
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+
+        return IntStream.range(0, ids.length / 2)
+                .mapToObj(i -> get(new UUID(ids[2 * i], ids[2 * i + 1])))
+                .flatMap(Optional::stream);
+    }
+
+    @Override
+    public List<BeerDTO> values() {
+        return stream().toList();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long getModificationCount() {
+        return modificationCount.get();
+    }
+
+    /**
+     * Heap-free bytes currently held, live records plus garbage awaiting compaction.
+     */
+    public long getStorageBytes() {
+        return liveBytes + garbageBytes;
+    }
+
+    @Override
+    public BeerDTO insert(BeerDTO value) {
+        ReentrantLock commit = commitHooks.lockIfHooked(value.getId());
+        try {
+            if (commit != null) {
+                if (get(value.getId()).isPresent()) {
+                    throw new IllegalStateException("Duplicate id: " + value.getId());
+                }
+                commitHooks.beforeCommit(null, value);
+            }
+
+            BeerDTO stored;
+            long stamp = lock.writeLock();
+            try {
+                if (indexOf(value.getId().getMostSignificantBits(), value.getId().getLeastSignificantBits()) >= 0) {
+                    throw new IllegalStateException("Duplicate id: " + value.getId());
+                }
+
+                compactIfWorthwhile();
+                long address = append(value);
+                putIndex(value.getId(), address);
+                stored = decode(address);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+
+            fireWrite(null, stored);
+            return stored;
+        } finally {
+            CommitHooks.unlock(commit);
+        }
+    }
+
+    @Override
+    public Optional<BeerDTO> update(UUID id, UnaryOperator<BeerDTO> change) {
+        return update(id, null, change);
+    }
+
+    @Override
+    public Optional<BeerDTO> update(UUID id, Integer expectedVersion, UnaryOperator<BeerDTO> change) {
+        ReentrantLock commit = commitHooks.lockIfHooked(id);
+        try {
+            BeerDTO current = null;
+            BeerDTO next = null;
+
+            if (commit != null) {
+                // no other writer of this id until the commit lock is released, the beer stays as read here
+                current = get(id).orElse(null);
+                if (current == null) {
+                    return Optional.empty();
+                }
+                next = changed(current, expectedVersion, change);
+                commitHooks.beforeCommit(current, next);
+            }
+
+            BeerDTO stored;
+            long stamp = lock.writeLock();
+            try {
+                compactIfWorthwhile();
+
+                int slot = indexOf(id.getMostSignificantBits(), id.getLeastSignificantBits());
+                if (slot < 0) {
+                    return Optional.empty();
+                }
+
+                if (next == null) {
+                    current = decode(addresses[slot]);
+                    next = changed(current, expectedVersion, change);
+                }
+
+                long previous = addresses[slot];
+                long address = append(next);
+                addresses[slot] = address;
+                discard(previous);
+                stored = decode(address);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+
+            fireWrite(current, stored);
+            return Optional.of(stored);
+        } finally {
+            CommitHooks.unlock(commit);
+        }
+    }
+
+    @Override
+    public Optional<BeerDTO> remove(UUID id) {
+        ReentrantLock commit = commitHooks.lockIfHooked(id);
+        try {
+            if (commit != null) {
+                Optional<BeerDTO> existing = get(id);
+                if (existing.isEmpty()) {
+                    return Optional.empty();
+                }
+                commitHooks.beforeCommit(existing.get(), null);
+            }
+
+            BeerDTO current;
+            long stamp = lock.writeLock();
+            try {
+                int slot = indexOf(id.getMostSignificantBits(), id.getLeastSignificantBits());
+                if (slot < 0) {
+                    return Optional.empty();
+                }
+
+                current = decode(addresses[slot]);
+                discard(addresses[slot]);
+                addresses[slot] = REMOVED;
+                size--;
+                removed++;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+
+            fireWrite(current, null);
+            return Optional.of(current);
+        } finally {
+            CommitHooks.unlock(commit);
+        }
+    }
+
+    @Override
+    public void clear() {
+        stream().map(BeerDTO::getId).toList().forEach(this::remove);
+    }
+
+    private static BeerDTO changed(BeerDTO current, Integer expectedVersion, UnaryOperator<BeerDTO> change) {
+        if (expectedVersion != null && !expectedVersion.equals(current.getVersion())) {
+            throw new VersionConflictException(current.getId(), expectedVersion, current.getVersion());
+        }
+
+        BeerDTO next = change.apply(current);
+        next.setVersion(current.getVersion() == null ? 1 : current.getVersion() + 1);
+
+        return next;
+    }
+
+    private void fireWrite(BeerDTO previous, BeerDTO current) {
+        for (WriteListener<? super BeerDTO> listener : listeners) {
+            listener.onWrite(previous, current);
+        }
+
+        // after the listeners: whoever reads the new count finds the write in the indexes too
+        modificationCount.incrementAndGet();
+    }
+
+    private BeerDTO find(UUID id) {
+        int slot = indexOf(id.getMostSignificantBits(), id.getLeastSignificantBits());
+
+        return slot < 0 ? null : decode(addresses[slot]);
+    }
+
+    // -- id index
+
+    private int indexOf(long msb, long lsb) {
+        long[] addresses = this.addresses;
+        int mask = addresses.length - 1;
+        int slot = hash(msb, lsb) & mask;
+
+        // bounded, so a torn optimistic read cannot spin forever
+        for (int probes = 0; probes < addresses.length; probes++) {
+            long address = addresses[slot];
+
+            if (address == EMPTY) {
+                return -1;
+            }
+            if (address != REMOVED && idMsbs[slot] == msb && idLsbs[slot] == lsb) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    private void putIndex(UUID id, long address) {
+        if ((size + removed + 1) * 2 > addresses.length) {
+            rehash(Math.max(16, Integer.highestOneBit(Math.max(1, size + 1) * 4)));
+        }
+
+        int mask = addresses.length - 1;
+        int slot = hash(id.getMostSignificantBits(), id.getLeastSignificantBits()) & mask;
+
+        while (addresses[slot] >= 0) {
+            slot = (slot + 1) & mask;
+        }
+        if (addresses[slot] == REMOVED) {
+            removed--;
+        }
+
+        idMsbs[slot] = id.getMostSignificantBits();
+        idLsbs[slot] = id.getLeastSignificantBits();
+        addresses[slot] = address;
+        size++;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldMsbs = idMsbs;
+        long[] oldLsbs = idLsbs;
+        long[] oldAddresses = addresses;
+        long[] newMsbs = new long[capacity];
+        long[] newLsbs = new long[capacity];
+        long[] newAddresses = emptyAddresses(capacity);
+        int mask = capacity - 1;
+
+        for (int i = 0; i < oldAddresses.length; i++) {
+            if (oldAddresses[i] >= 0) {
+                int slot = hash(oldMsbs[i], oldLsbs[i]) & mask;
+                while (newAddresses[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                newMsbs[slot] = oldMsbs[i];
+                newLsbs[slot] = oldLsbs[i];
+                newAddresses[slot] = oldAddresses[i];
+            }
+        }
+
+        idMsbs = newMsbs;
+        idLsbs = newLsbs;
+        addresses = newAddresses;
+        removed = 0;
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = msb ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+
+        return (int) h;
+    }
+
+    private static long[] emptyAddresses(int capacity) {
+        long[] addresses = new long[capacity];
+        Arrays.fill(addresses, EMPTY);
+
+        return addresses;
+    }
+
+    // -- record storage
+
+    private long append(BeerDTO beer) {
+        byte[] name = encodeString(beer.getBeerName());
+        byte[] upc = encodeString(beer.getUpc());
+        int length = STRINGS + 2 + (name == null ? 0 : name.length) + 2 + (upc == null ? 0 : upc.length);
+
+        if (tailPosition + length > CHUNK_SIZE) {
+            chunks = Arrays.copyOf(chunks, chunks.length + 1);
+            chunks[chunks.length - 1] = ByteBuffer.allocateDirect(CHUNK_SIZE);
+            tailPosition = 0;
+        }
+
+        ByteBuffer chunk = chunks[chunks.length - 1];
+        int p = tailPosition;
+
+        chunk.putInt(p + LENGTH, length);
+        chunk.putLong(p + ID_MSB, beer.getId().getMostSignificantBits());
+        chunk.putLong(p + ID_LSB, beer.getId().getLeastSignificantBits());
+        chunk.putInt(p + VERSION, beer.getVersion() == null ? NULL_INT : beer.getVersion());
+        chunk.put(p + STYLE, (byte) (beer.getBeerStyle() == null ? 0 : beer.getBeerStyle().ordinal() + 1));
+        chunk.putInt(p + QUANTITY, beer.getQuantityOnHand() == null ? NULL_INT : beer.getQuantityOnHand());
+        chunk.putLong(p + PRICE_CENTS, toCents(beer.getPrice()));
+        putDateTime(chunk, p + CREATED_SECONDS, p + CREATED_NANOS, beer.getCreatedDate());
+        putDateTime(chunk, p + UPDATED_SECONDS, p + UPDATED_NANOS, beer.getUpdateDate());
+
+        int next = putString(chunk, p + STRINGS, name);
+        putString(chunk, next, upc);
+
+        tailPosition += length;
+        liveBytes += length;
+
+        return ((long) (chunks.length - 1) << 32) | p;
+    }
+
+    private BeerDTO decode(long address) {
+        ByteBuffer chunk = chunks[(int) (address >>> 32)];
+        int p = (int) address;
+
+        int version = chunk.getInt(p + VERSION);
+        int style = chunk.get(p + STYLE);
+        int quantity = chunk.getInt(p + QUANTITY);
+        long cents = chunk.getLong(p + PRICE_CENTS);
+
+        int nameLength = chunk.getShort(p + STRINGS);
+        int upcAt = p + STRINGS + 2 + Math.max(nameLength, 0);
+
+        return BeerDTO.builder()
+                .id(new UUID(chunk.getLong(p + ID_MSB), chunk.getLong(p + ID_LSB)))
+                .version(version == NULL_INT ? null : version)
+                .beerStyle(style == 0 ? null : STYLES[style - 1])
+                .quantityOnHand(quantity == NULL_INT ? null : quantity)
+                .price(cents == NULL_LONG ? null : BigDecimal.valueOf(cents, 2))
+                .createdDate(getDateTime(chunk, p + CREATED_SECONDS, p + CREATED_NANOS))
+                .updateDate(getDateTime(chunk, p + UPDATED_SECONDS, p + UPDATED_NANOS))
+                .beerName(getString(chunk, p + STRINGS))
+                .upc(getString(chunk, upcAt))
+                .build();
+    }
+
+    private void discard(long address) {
+        int length = chunks[(int) (address >>> 32)].getInt((int) address + LENGTH);
+
+        liveBytes -= length;
+        garbageBytes += length;
+    }
+
+    /**
+     * Copies the live records into fresh chunks once garbage outweighs them. Readers still holding the old
+     * chunk array fail validation and retry.
+     */
+    private void compactIfWorthwhile() {
+        if (garbageBytes < CHUNK_SIZE || garbageBytes < liveBytes) {
+            return;
+        }
+
+        ByteBuffer[] oldChunks = chunks;
+        long[] oldAddresses = addresses.clone();
+        chunks = new ByteBuffer[0];
+        tailPosition = CHUNK_SIZE;
+        liveBytes = 0;
+        garbageBytes = 0;
+
+        long[] compacted = addresses.clone();
+        for (int slot = 0; slot < oldAddresses.length; slot++) {
+            if (oldAddresses[slot] >= 0) {
+                ByteBuffer chunk = oldChunks[(int) (oldAddresses[slot] >>> 32)];
+                int p = (int) oldAddresses[slot];
+                int length = chunk.getInt(p + LENGTH);
+
+                if (tailPosition + length > CHUNK_SIZE) {
+                    chunks = Arrays.copyOf(chunks, chunks.length + 1);
+                    chunks[chunks.length - 1] = ByteBuffer.allocateDirect(CHUNK_SIZE);
+                    tailPosition = 0;
+                }
+
+                chunks[chunks.length - 1].put(tailPosition, chunk, p, length);
+                compacted[slot] = ((long) (chunks.length - 1) << 32) | tailPosition;
+                tailPosition += length;
+                liveBytes += length;
+            }
+        }
+
+        addresses = compacted;
+    }
+
+    private static long toCents(BigDecimal price) {
+        return price == null ? NULL_LONG : price.setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    private static void putDateTime(ByteBuffer chunk, int secondsAt, int nanosAt, LocalDateTime dateTime) {
+        chunk.putLong(secondsAt, dateTime == null ? NULL_LONG : dateTime.toEpochSecond(ZoneOffset.UTC));
+        chunk.putInt(nanosAt, dateTime == null ? 0 : dateTime.getNano());
+    }
+
+    private static LocalDateTime getDateTime(ByteBuffer chunk, int secondsAt, int nanosAt) {
+        long seconds = chunk.getLong(secondsAt);
+
+        return seconds == NULL_LONG ? null : LocalDateTime.ofEpochSecond(seconds, chunk.getInt(nanosAt), ZoneOffset.UTC);
+    }
+
+    private static byte[] encodeString(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Value too long for the off-heap store: " + bytes.length + " bytes");
+        }
+
+        return bytes;
+    }
+
+    /**
+     * @return the offset right after the string
+     */
+    private static int putString(ByteBuffer chunk, int at, byte[] bytes) {
+        if (bytes == null) {
+            chunk.putShort(at, (short) -1);
+            return at + 2;
+        }
+
+        chunk.putShort(at, (short) bytes.length);
+        chunk.put(at + 2, bytes);
+
+        return at + 2 + bytes.length;
+    }
+
+    private static String getString(ByteBuffer chunk, int at) {
+        int length = chunk.getShort(at);
+
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        chunk.get(at + 2, bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
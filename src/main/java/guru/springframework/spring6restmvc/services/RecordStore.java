@@ -0,0 +1,101 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.Versioned;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Storage engine behind the services. Values handed out are snapshots, writes replace them as a whole
+ * and bump their version.
+ */
+public interface RecordStore<V extends Versioned> {
+
+    /**
+     * Notified after every successful write, on the writing thread.
+     */
+    interface WriteListener<V> {
+
+        /**
+         * @param previous the replaced snapshot, {@code null} on insert
+         * @param current  the published snapshot, {@code null} on remove
+         */
+        void onWrite(V previous, V current);
+    }
+
+    /**
+     * Called before a write is published, on the writing thread, with no other write of the same id in
+     * between. Throwing aborts the write: nothing is published and no listener is notified.
+     */
+    interface CommitHook<V> {
+
+        /**
+         * @param previous the snapshot about to be replaced, {@code null} on insert
+         * @param next     the snapshot about to be published, {@code null} on remove
+         */
+        void beforeCommit(V previous, V next);
+    }
+
+    void addListener(WriteListener<? super V> listener);
+
+    /**
+     * To be added before the store takes writes.
+     */
+    void addCommitHook(CommitHook<? super V> hook);
+
+    Optional<V> get(UUID id);
+
+    /**
+     * Snapshots of those {@code ids} that exist, looked up together.
+     */
+    Map<UUID, V> getAll(Collection<UUID> ids);
+
+    /**
+     * Weakly consistent, reflects some of the writes made while it is consumed.
+     */
+    Stream<V> stream();
+
+    List<V> values();
+
+    int size();
+
+    /**
+     * Bumped once per successful write, a cheap way to tell whether anything changed since a previous read.
+     * The bump comes after the {@link WriteListener}s ran, so a read that starts after seeing it also sees what
+     * the listeners indexed.
+     */
+    long getModificationCount();
+
+    /**
+     * Publishes a brand new value. The caller must not touch the instance afterwards.
+     *
+     * @throws IllegalStateException when the id is taken
+     */
+    V insert(V value);
+
+    /**
+     * Applies {@code change} to the current snapshot and stores the result. {@code change} must return
+     * a new instance and may be invoked more than once.
+     */
+    Optional<V> update(UUID id, UnaryOperator<V> change);
+
+    /**
+     * Same as {@link #update(UUID, UnaryOperator)}, but only when the stored version equals
+     * {@code expectedVersion}; a {@code null} expected version matches anything.
+     *
+     * @throws VersionConflictException when the stored version differs
+     */
+    Optional<V> update(UUID id, Integer expectedVersion, UnaryOperator<V> change);
+
+    Optional<V> remove(UUID id);
+
+    /**
+     * Removes everything, one id at a time so listeners see each removal.
+     */
+    void clear();
+}
@@ -0,0 +1,61 @@
+package guru.springframework.spring6restmvc.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.CustomerDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Puts {@link CachingBeerService} and {@link CachingCustomerService} in front of the {@link BackingService}s
+ * when {@code service.cache.enabled=true}, in memory or JDBC alike. Eviction is Caffeine's W-TinyLFU, bounded by
+ * the estimated weight of the cached items; hit, miss and eviction counts are published as {@code cache.*} metrics.
+ */
+@Configuration
+@ConditionalOnProperty(name = "service.cache.enabled", havingValue = "true")
+public class ServiceCacheConfig {
+
+    @Value("${service.cache.maximum-weight:64MB}")
+    private DataSize maximumWeight;
+
+    @Value("${service.cache.expire-after-write:5m}")
+    private Duration expireAfterWrite;
+
+    @Bean
+    @Primary
+    BeerService cachingBeerService(@BackingService BeerService beerService, MeterRegistry meterRegistry) {
+        Cache<UUID, BeerDTO> cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight.toBytes())
+                .weigher(CachingBeerService::weigh)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "beers");
+
+        return new CachingBeerService(beerService, cache);
+    }
+
+    @Bean
+    @Primary
+    CustomerService cachingCustomerService(@BackingService CustomerService customerService, MeterRegistry meterRegistry) {
+        Cache<UUID, CustomerDTO> cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight.toBytes())
+                .weigher(CachingCustomerService::weigh)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "customers");
+
+        return new CachingCustomerService(customerService, cache);
+    }
+}
@@ -0,0 +1,307 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.Versioned;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * {@link RecordStore} partitioned over several shard stores by a {@link ConsistentHashRing} on the id.
+ *
+ * A write only touches the shard owning its id, so writers of different shards never contend, which is
+ * what lifts the single write lock of an {@link OffHeapBeerStore} or the single heap of one store.
+ * {@link #values()} gathers the shards in parallel, {@link #getAll(Collection)} asks each shard once for
+ * the ids it owns.
+ *
+ * {@link #addShard(RecordStore)} moves the ids the new shard takes over, about 1/N of them, while writes
+ * to every shard wait. Listeners and commit hooks do not see those moves, only the writes made through this
+ * store.
+ * Readers do not wait: they retry when the shards changed under them.
+ */
+public class ShardedRecordStore<V extends Versioned> implements RecordStore<V> {
+
+    private static final class Shard<V extends Versioned> {
+
+        final RecordStore<V> store;
+        final StampedLock lock = new StampedLock();
+        // set by addShard while it moves values in or out, under the write lock so no other write interleaves
+        volatile boolean moving;
+
+        Shard(RecordStore<V> store) {
+            this.store = store;
+        }
+    }
+
+    private record Routing<V extends Versioned>(ConsistentHashRing ring, List<Shard<V>> shards) {
+
+        Shard<V> shardOf(UUID id) {
+            return shards.get(ring.owner(id));
+        }
+    }
+
+    private final List<WriteListener<? super V>> listeners = new CopyOnWriteArrayList<>();
+    private final List<CommitHook<? super V>> commitHooks = new CopyOnWriteArrayList<>();
+    private final Executor executor;
+
+    private volatile Routing<V> routing;
+
+    public ShardedRecordStore(List<? extends RecordStore<V>> shards) {
+        this(shards, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param shards   empty stores, one per shard
+     * @param executor runs the per shard parts of {@link #values()}
+     */
+    public ShardedRecordStore(List<? extends RecordStore<V>> shards, Executor executor) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+
+        this.executor = executor;
+
+        List<Shard<V>> placed = new ArrayList<>(shards.size());
+        for (RecordStore<V> store : shards) {
+            placed.add(shard(store));
+        }
+        this.routing = new Routing<>(new ConsistentHashRing(placed.size(), ConsistentHashRing.DEFAULT_VIRTUAL_NODES),
+                List.copyOf(placed));
+    }
+
+    @Override
+    public void addListener(WriteListener<? super V> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public synchronized void addCommitHook(CommitHook<? super V> hook) {
+        commitHooks.add(hook);
+
+        for (Shard<V> shard : routing.shards()) {
+            addCommitHook(shard, hook);
+        }
+    }
+
+    public int getShardCount() {
+        return routing.shards().size();
+    }
+
+    /**
+     * Adds an empty shard and moves over the values it now owns.
+     */
+    public synchronized void addShard(RecordStore<V> store) {
+        if (store.size() > 0) {
+            throw new IllegalArgumentException("A new shard must be empty");
+        }
+
+        Routing<V> current = routing;
+        Shard<V> added = shard(store);
+        for (CommitHook<? super V> hook : commitHooks) {
+            addCommitHook(added, hook);
+        }
+        List<Shard<V>> shards = new ArrayList<>(current.shards());
+        shards.add(added);
+        Routing<V> next = new Routing<>(current.ring().withNode(), List.copyOf(shards));
+
+        // the new shard too: writers retrying after the switch below must wait for the removals to finish
+        long[] stamps = new long[next.shards().size()];
+        for (int i = 0; i < stamps.length; i++) {
+            Shard<V> shard = next.shards().get(i);
+            stamps[i] = shard.lock.writeLock();
+            shard.moving = true;
+        }
+        try {
+            List<V> moved = new ArrayList<>();
+            for (Shard<V> shard : current.shards()) {
+                shard.store.stream()
+                        .filter(value -> next.shardOf(value.getId()) == added)
+                        .forEach(moved::add);
+            }
+
+            // copied before the switch and removed after it, so readers find every value in either routing
+            moved.forEach(store::insert);
+            routing = next;
+            for (V value : moved) {
+                current.shardOf(value.getId()).store.remove(value.getId());
+            }
+        } finally {
+            for (int i = 0; i < stamps.length; i++) {
+                Shard<V> shard = next.shards().get(i);
+                shard.moving = false;
+                shard.lock.unlockWrite(stamps[i]);
+            }
+        }
+    }
+
+    @Override
+    public Optional<V> get(UUID id) {
+        return read(routing -> routing.shardOf(id).store.get(id));
+    }
+
+    @Override
+    public Map<UUID, V> getAll(Collection<UUID> ids) {
+        return read(routing -> {
+            Map<Shard<V>, List<UUID>> idsByShard = new HashMap<>();
+            for (UUID id : ids) {
+                idsByShard.computeIfAbsent(routing.shardOf(id), shard -> new ArrayList<>()).add(id);
+            }
+
+            if (idsByShard.size() == 1) {
+                Map.Entry<Shard<V>, List<UUID>> only = idsByShard.entrySet().iterator().next();
+                return only.getKey().store.getAll(only.getValue());
+            }
+
+            Map<UUID, V> found = HashMap.newHashMap(ids.size());
+            idsByShard.forEach((shard, shardIds) -> found.putAll(shard.store.getAll(shardIds)));
+
+            return found;
+        });
+    }
+
+    /**
+     * Weakly consistent like the shards, may also repeat a value moved to a shard added meanwhile.
+     */
+    @Override
+    public Stream<V> stream() {
+        return routing.shards().stream().flatMap(shard -> shard.store.stream());
+    }
+
+    @Override
+    public List<V> values() {
+        return read(routing -> {
+            List<Shard<V>> shards = routing.shards();
+            if (shards.size() == 1) {
+                return shards.get(0).store.values();
+            }
+
+            List<CompletableFuture<List<V>>> parts = shards.stream()
+                    .map(shard -> CompletableFuture.supplyAsync(() -> shard.store.values(), executor))
+                    .toList();
+
+            List<V> values = new ArrayList<>();
+            for (CompletableFuture<List<V>> part : parts) {
+                values.addAll(part.join());
+            }
+
+            return values;
+        });
+    }
+
+    @Override
+    public int size() {
+        return read(routing -> routing.shards().stream().mapToInt(shard -> shard.store.size()).sum());
+    }
+
+    /**
+     * The sum over the shards, every one of them only ever grows.
+     */
+    @Override
+    public long getModificationCount() {
+        return routing.shards().stream().mapToLong(shard -> shard.store.getModificationCount()).sum();
+    }
+
+    @Override
+    public V insert(V value) {
+        return write(value.getId(), store -> store.insert(value));
+    }
+
+    @Override
+    public Optional<V> update(UUID id, UnaryOperator<V> change) {
+        return write(id, store -> store.update(id, change));
+    }
+
+    @Override
+    public Optional<V> update(UUID id, Integer expectedVersion, UnaryOperator<V> change) {
+        return write(id, store -> store.update(id, expectedVersion, change));
+    }
+
+    @Override
+    public Optional<V> remove(UUID id) {
+        return write(id, store -> store.remove(id));
+    }
+
+    @Override
+    public void clear() {
+        for (Shard<V> shard : routing.shards()) {
+            long stamp = shard.lock.readLock();
+            try {
+                shard.store.clear();
+            } finally {
+                shard.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    private Shard<V> shard(RecordStore<V> store) {
+        Shard<V> shard = new Shard<>(store);
+        store.addListener((previous, current) -> {
+            // the copies and removals of a move are not writes of this store
+            if (!shard.moving) {
+                fireWrite(previous, current);
+            }
+        });
+
+        return shard;
+    }
+
+    private static <V extends Versioned> void addCommitHook(Shard<V> shard, CommitHook<? super V> hook) {
+        shard.store.addCommitHook((previous, next) -> {
+            if (!shard.moving) {
+                hook.beforeCommit(previous, next);
+            }
+        });
+    }
+
+    /**
+     * Runs {@code read} against the current routing, again when a shard was added meanwhile.
+     */
+    private <R> R read(Function<Routing<V>, R> read) {
+        for (;;) {
+            Routing<V> current = routing;
+            R result = read.apply(current);
+
+            if (current == routing) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Runs {@code write} on the shard owning {@code id}, holding off a concurrent {@link #addShard}.
+     */
+    private <R> R write(UUID id, Function<RecordStore<V>, R> write) {
+        for (;;) {
+            Routing<V> current = routing;
+            Shard<V> shard = current.shardOf(id);
+            long stamp = shard.lock.readLock();
+
+            try {
+                // a shard was added while we waited, the id may have moved
+                if (current == routing) {
+                    return write.apply(shard.store);
+                }
+            } finally {
+                shard.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    private void fireWrite(V previous, V current) {
+        for (WriteListener<? super V> listener : listeners) {
+            listener.onWrite(previous, current);
+        }
+    }
+}
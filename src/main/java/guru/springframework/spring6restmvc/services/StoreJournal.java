@@ -0,0 +1,264 @@
+package guru.springframework.spring6restmvc.services;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import guru.springframework.spring6restmvc.model.Versioned;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Makes a {@link RecordStore} durable: every write is appended to a {@link WriteAheadLog} before the store
+ * publishes it, and the whole store is periodically written to a snapshot so recovery only replays the log
+ * written since. With sync commit the write is published once its record is on disk; a write whose record
+ * cannot be appended fails without being published.
+ *
+ * A snapshot is taken without stopping writers. It starts a new log segment first and is replayed
+ * together with the segment before it and every one after, so a write appended before the switch but
+ * published after the snapshot read its id is never lost. Replay keeps the highest version of each id,
+ * so records older than the snapshot change nothing.
+ */
+@Slf4j
+public class StoreJournal<V extends Versioned> implements RecordStore.CommitHook<V>, Closeable {
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    private final Path directory;
+    private final String name;
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+    private final boolean syncCommit;
+    private final Duration flushInterval;
+    private final Duration snapshotInterval;
+
+    private RecordStore<V> store;
+    private WriteAheadLog writeAheadLog;
+    private ScheduledExecutorService snapshotter;
+
+    /**
+     * @param syncCommit make writers wait until their record is on disk, otherwise they only wait for the copy
+     *                   into the log and a crash can lose up to one flush interval of writes
+     */
+    public StoreJournal(Path directory, String name, Class<V> type, ObjectMapper objectMapper,
+                        boolean syncCommit, Duration flushInterval, Duration snapshotInterval) {
+        this.directory = directory;
+        this.name = name;
+        this.reader = objectMapper.readerFor(type);
+        this.writer = objectMapper.writerFor(type);
+        this.syncCommit = syncCommit;
+        this.flushInterval = flushInterval;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Replaces the contents of {@code store} with the recovered state, if there is any, and journals every
+     * write from then on. On a first start the current contents are kept and become the first snapshot.
+     */
+    public void open(RecordStore<V> store) throws IOException {
+        this.store = store;
+
+        Optional<Map<UUID, V>> recovered = recover();
+        if (recovered.isPresent()) {
+            store.clear();
+            recovered.get().values().forEach(store::insert);
+            log.info("Recovered {} {} from {}", recovered.get().size(), name, directory);
+        }
+
+        this.writeAheadLog = new WriteAheadLog(directory, name, SEGMENT_SIZE, flushInterval);
+        snapshot();
+        store.addCommitHook(this);
+
+        snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = snapshotInterval.toMillis();
+        snapshotter.scheduleWithFixedDelay(this::scheduledSnapshot, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @throws UncheckedIOException     when the value cannot be serialized, which aborts the write
+     * @throws IllegalArgumentException when the record is larger than a log segment, which aborts the write
+     */
+    @Override
+    public void beforeCommit(V previous, V next) {
+        byte[] payload;
+        try {
+            payload = writer.writeValueAsBytes(next != null ? next : previous);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        CompletableFuture<Void> commit = writeAheadLog.append(next != null ? PUT : DELETE, payload);
+
+        if (syncCommit) {
+            commit.join();
+        }
+    }
+
+    /**
+     * Writes the current store to a new snapshot and drops the log segments and snapshots it replaces.
+     */
+    public synchronized void snapshot() throws IOException {
+        long segment = writeAheadLog.roll();
+        Path snapshot = snapshotPath(segment);
+        Path partial = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+
+        try (OutputStream out = Files.newOutputStream(partial);
+             SequenceWriter values = writer.withRootValueSeparator("\n").writeValues(out)) {
+            Iterator<V> iterator = store.stream().iterator();
+            while (iterator.hasNext()) {
+                values.write(iterator.next());
+            }
+        }
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(partial, snapshot, StandardCopyOption.ATOMIC_MOVE);
+
+        for (long older : snapshots()) {
+            if (older < segment) {
+                Files.deleteIfExists(snapshotPath(older));
+            }
+        }
+        writeAheadLog.truncateBefore(segment - 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+        }
+        if (writeAheadLog != null) {
+            writeAheadLog.close();
+        }
+    }
+
+    private void scheduledSnapshot() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Snapshot of {} failed, the log keeps growing until the next one succeeds", name, e);
+        }
+    }
+
+    private Optional<Map<UUID, V>> recover() throws IOException {
+        List<Long> snapshots = snapshots();
+        List<Long> segments = WriteAheadLog.segments(directory, name);
+
+        if (snapshots.isEmpty() && segments.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Map<UUID, V> state = new HashMap<>();
+        Map<UUID, Integer> deleted = new HashMap<>();
+        long firstSegment = 0;
+
+        if (!snapshots.isEmpty()) {
+            firstSegment = snapshots.get(snapshots.size() - 1);
+
+            try (MappingIterator<V> values = reader.readValues(snapshotPath(firstSegment).toFile())) {
+                while (values.hasNextValue()) {
+                    V value = values.nextValue();
+                    state.put(value.getId(), value);
+                }
+            }
+        }
+
+        for (long segment : segments) {
+            // the segment before the snapshot's may hold writes published after the snapshot read them
+            if (segment >= firstSegment - 1) {
+                WriteAheadLog.read(WriteAheadLog.segmentPath(directory, name, segment),
+                        (type, payload) -> replay(state, deleted, type, payload));
+            }
+        }
+
+        return Optional.of(state);
+    }
+
+    private void replay(Map<UUID, V> state, Map<UUID, Integer> deleted, byte type, byte[] payload) {
+        V value;
+        try {
+            value = reader.readValue(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        int version = versionOf(value);
+        V existing = state.get(value.getId());
+
+        if (existing != null && versionOf(existing) >= version) {
+            // a later version was appended first
+            if (type == DELETE && versionOf(existing) == version) {
+                state.remove(value.getId());
+                deleted.merge(value.getId(), version, Math::max);
+            }
+            return;
+        }
+
+        if (type == DELETE) {
+            state.remove(value.getId());
+            deleted.merge(value.getId(), version, Math::max);
+            return;
+        }
+
+        Integer deletedVersion = deleted.get(value.getId());
+        // version 1 is a fresh insert, which may legitimately reuse a deleted id
+        if (deletedVersion != null && version <= deletedVersion && version != 1) {
+            return;
+        }
+
+        deleted.remove(value.getId());
+        state.put(value.getId(), value);
+    }
+
+    private List<Long> snapshots() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(file -> file.startsWith(name + "-") && file.endsWith(SNAPSHOT_SUFFIX))
+                    .map(file -> Long.parseLong(file.substring(name.length() + 1, file.length() - SNAPSHOT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path snapshotPath(long segment) {
+        return directory.resolve(String.format("%s-%020d%s", name, segment, SNAPSHOT_SUFFIX));
+    }
+
+    private static int versionOf(Versioned value) {
+        return value.getVersion() == null ? 0 : value.getVersion();
+    }
+}
@@ -0,0 +1,56 @@
+package guru.springframework.spring6restmvc.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.CustomerDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Journals the beer and customer stores to disk when {@code store.journal.enabled=true}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "store.journal.enabled", havingValue = "true")
+public class StoreJournalConfig {
+
+    @Value("${store.journal.directory:data}")
+    private Path directory;
+
+    @Value("${store.journal.sync-commit:true}")
+    private boolean syncCommit;
+
+    @Value("${store.journal.flush-interval:2ms}")
+    private Duration flushInterval;
+
+    @Value("${store.journal.snapshot-interval:10m}")
+    private Duration snapshotInterval;
+
+    /**
+     * Not with the {@code jdbc} profile, the database keeps the beers then.
+     */
+    @Bean(destroyMethod = "close")
+    @Profile("!jdbc")
+    StoreJournal<BeerDTO> beerJournal(BeerServiceImpl beerService, ObjectMapper objectMapper) throws IOException {
+        StoreJournal<BeerDTO> journal = new StoreJournal<>(directory, "beers", BeerDTO.class, objectMapper,
+                syncCommit, flushInterval, snapshotInterval);
+        journal.open(beerService.getBeerStore());
+
+        return journal;
+    }
+
+    @Bean(destroyMethod = "close")
+    StoreJournal<CustomerDTO> customerJournal(CustomerServiceImpl customerService, ObjectMapper objectMapper) throws IOException {
+        StoreJournal<CustomerDTO> journal = new StoreJournal<>(directory, "customers", CustomerDTO.class, objectMapper,
+                syncCommit, flushInterval, snapshotInterval);
+        journal.open(customerService.getCustomerStore());
+
+        return journal;
+    }
+}
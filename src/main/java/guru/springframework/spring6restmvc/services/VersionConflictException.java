@@ -0,0 +1,17 @@
+package guru.springframework.spring6restmvc.services;
+
+import java.util.UUID;
+
+/**
+ * Thrown when a conditional write expected a different version than the one stored.
+ */
+public class VersionConflictException extends RuntimeException {
+
+    public VersionConflictException(String message) {
+        super(message);
+    }
+
+    public VersionConflictException(UUID id, Integer expectedVersion, Integer actualVersion) {
+        super("Version conflict on " + id + ": expected " + expectedVersion + ", found " + actualVersion);
+    }
+}
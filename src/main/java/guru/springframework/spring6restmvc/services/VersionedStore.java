@@ -0,0 +1,212 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.Versioned;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Default, on-heap {@link RecordStore}.
+ *
+ * Every id owns an {@link AtomicReference} cell holding the current snapshot. Stored values are never
+ * mutated: a write builds a new instance from the current one, bumps its version and swaps it in with
+ * compare-and-set, retrying when another writer got there first. Reads never block. Once there are
+ * {@link CommitHook}s, writers of one id take turns, so a hook sees the writes of an id in the order they
+ * are published.
+ */
+public class VersionedStore<V extends Versioned> implements RecordStore<V> {
+
+    private final ConcurrentMap<UUID, AtomicReference<V>> cells = new ConcurrentHashMap<>();
+    private final List<WriteListener<? super V>> listeners = new CopyOnWriteArrayList<>();
+    private final CommitHooks<V> commitHooks = new CommitHooks<>();
+    private final AtomicLong modificationCount = new AtomicLong();
+
+    @Override
+    public void addListener(WriteListener<? super V> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void addCommitHook(CommitHook<? super V> hook) {
+        commitHooks.add(hook);
+    }
+
+    @Override
+    public Optional<V> get(UUID id) {
+        AtomicReference<V> cell = cells.get(id);
+
+        return cell == null ? Optional.empty() : Optional.ofNullable(cell.get());
+    }
+
+    @Override
+    public Map<UUID, V> getAll(Collection<UUID> ids) {
+        Map<UUID, V> found = HashMap.newHashMap(ids.size());
+
+        for (UUID id : ids) {
+            AtomicReference<V> cell = cells.get(id);
+            V value = cell == null ? null : cell.get();
+
+            if (value != null) {
+                found.put(id, value);
+            }
+        }
+
+        return found;
+    }
+
+    @Override
+    public Stream<V> stream() {
+        return cells.values().stream()
+                .map(AtomicReference::get)
+                .filter(Objects::nonNull);
+    }
+
+    @Override
+    public List<V> values() {
+        return stream().toList();
+    }
+
+    @Override
+    public int size() {
+        return cells.size();
+    }
+
+    @Override
+    public long getModificationCount() {
+        return modificationCount.get();
+    }
+
+    @Override
+    public V insert(V value) {
+        AtomicReference<V> fresh = new AtomicReference<>(value);
+        ReentrantLock lock = commitHooks.lockIfHooked(value.getId());
+
+        try {
+            if (lock != null) {
+                if (get(value.getId()).isPresent()) {
+                    throw new IllegalStateException("Duplicate id: " + value.getId());
+                }
+                commitHooks.beforeCommit(null, value);
+            }
+
+            for (;;) {
+                AtomicReference<V> existing = cells.putIfAbsent(value.getId(), fresh);
+
+                if (existing == null) {
+                    fireWrite(null, value);
+                    return value;
+                }
+                if (existing.get() != null) {
+                    throw new IllegalStateException("Duplicate id: " + value.getId());
+                }
+                // the previous owner of this id is being removed, take over its slot
+                if (cells.replace(value.getId(), existing, fresh)) {
+                    fireWrite(null, value);
+                    return value;
+                }
+            }
+        } finally {
+            CommitHooks.unlock(lock);
+        }
+    }
+
+    @Override
+    public Optional<V> update(UUID id, UnaryOperator<V> change) {
+        return update(id, null, change);
+    }
+
+    @Override
+    public Optional<V> update(UUID id, Integer expectedVersion, UnaryOperator<V> change) {
+        ReentrantLock lock = commitHooks.lockIfHooked(id);
+        try {
+            AtomicReference<V> cell = cells.get(id);
+
+            if (cell == null) {
+                return Optional.empty();
+            }
+
+            for (;;) {
+                V current = cell.get();
+
+                if (current == null) {
+                    return Optional.empty();
+                }
+                if (expectedVersion != null && !expectedVersion.equals(current.getVersion())) {
+                    throw new VersionConflictException(id, expectedVersion, current.getVersion());
+                }
+
+                V next = change.apply(current);
+                next.setVersion(nextVersion(current));
+                // with hooks no other writer of this id gets in between, the swap below cannot fail
+                commitHooks.beforeCommit(current, next);
+
+                if (cell.compareAndSet(current, next)) {
+                    fireWrite(current, next);
+                    return Optional.of(next);
+                }
+            }
+        } finally {
+            CommitHooks.unlock(lock);
+        }
+    }
+
+    @Override
+    public Optional<V> remove(UUID id) {
+        ReentrantLock lock = commitHooks.lockIfHooked(id);
+        try {
+            AtomicReference<V> cell = cells.get(id);
+
+            if (cell == null) {
+                return Optional.empty();
+            }
+
+            for (;;) {
+                V current = cell.get();
+
+                if (current == null) {
+                    return Optional.empty();
+                }
+                commitHooks.beforeCommit(current, null);
+
+                if (cell.compareAndSet(current, null)) {
+                    cells.remove(id, cell);
+                    fireWrite(current, null);
+                    return Optional.of(current);
+                }
+            }
+        } finally {
+            CommitHooks.unlock(lock);
+        }
+    }
+
+    @Override
+    public void clear() {
+        cells.keySet().forEach(this::remove);
+    }
+
+    private void fireWrite(V previous, V current) {
+        for (WriteListener<? super V> listener : listeners) {
+            listener.onWrite(previous, current);
+        }
+
+        // after the listeners: whoever reads the new count finds the write in the indexes too
+        modificationCount.incrementAndGet();
+    }
+
+    private static Integer nextVersion(Versioned current) {
+        return current.getVersion() == null ? 1 : current.getVersion() + 1;
+    }
+}
@@ -0,0 +1,227 @@
+package guru.springframework.spring6restmvc.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of checksummed records in fixed size, memory-mapped segment files.
+ *
+ * Appends only copy the record into the mapped segment. A background thread forces the segment to disk
+ * every flush interval and completes the future handed out to every append since the previous flush,
+ * so one fsync commits a whole group of writes.
+ *
+ * Record layout: {@code int payloadLength, int crc32c(type, payload), byte type, payload}. Segments are
+ * zero-filled, a zero length marks the end and a checksum mismatch a torn write.
+ */
+class WriteAheadLog implements Closeable {
+
+    static final int HEADER_SIZE = 9;
+
+    private static final String SUFFIX = ".wal";
+
+    private final Path directory;
+    private final String name;
+    private final int segmentSize;
+    private final ScheduledExecutorService flusher;
+
+    private long segment;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private boolean dirty;
+    private CompletableFuture<Void> pendingCommit = new CompletableFuture<>();
+
+    WriteAheadLog(Path directory, String name, int segmentSize, Duration flushInterval) throws IOException {
+        this.directory = directory;
+        this.name = name;
+        this.segmentSize = segmentSize;
+
+        Files.createDirectories(directory);
+        List<Long> existing = segments(directory, name);
+        openSegment(existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1);
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-wal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = flushInterval.toNanos();
+        flusher.scheduleWithFixedDelay(this::flush, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return completed once the record is on disk
+     */
+    CompletableFuture<Void> append(byte type, byte[] payload) {
+        int recordSize = HEADER_SIZE + payload.length;
+
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Record of " + recordSize + " bytes does not fit a segment");
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(payload);
+
+        synchronized (this) {
+            if (buffer.remaining() < recordSize) {
+                rollSegment();
+            }
+
+            buffer.putInt(payload.length)
+                    .putInt((int) crc.getValue())
+                    .put(type)
+                    .put(payload);
+            dirty = true;
+
+            return pendingCommit;
+        }
+    }
+
+    /**
+     * Starts a new segment, everything appended from now on goes to it.
+     *
+     * @return the number of the new segment
+     */
+    synchronized long roll() {
+        if (buffer.position() > 0) {
+            rollSegment();
+        }
+
+        return segment;
+    }
+
+    /**
+     * Deletes the segments numbered below {@code segment}.
+     */
+    void truncateBefore(long segment) throws IOException {
+        for (long number : segments(directory, name)) {
+            if (number < segment) {
+                Files.deleteIfExists(segmentPath(directory, name, number));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+        synchronized (this) {
+            channel.close();
+        }
+    }
+
+    private void flush() {
+        CompletableFuture<Void> commit;
+        MappedByteBuffer toForce;
+
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            commit = pendingCommit;
+            toForce = buffer;
+            pendingCommit = new CompletableFuture<>();
+            dirty = false;
+        }
+
+        try {
+            toForce.force();
+            commit.complete(null);
+        } catch (RuntimeException e) {
+            commit.completeExceptionally(e);
+        }
+    }
+
+    private void rollSegment() {
+        // the next flush only forces the new segment, but the pending group may have records in this one
+        buffer.force();
+
+        try {
+            channel.close();
+            openSegment(segment + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void openSegment(long number) throws IOException {
+        segment = number;
+        channel = FileChannel.open(segmentPath(directory, name, number),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+
+    /**
+     * Feeds every intact record of a segment to {@code consumer}, stopping at the end marker or the first
+     * damaged record.
+     */
+    static void read(Path segmentFile, BiConsumer<Byte, byte[]> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            while (buffer.remaining() >= HEADER_SIZE) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                byte type = buffer.get();
+
+                if (length <= 0 || length > buffer.remaining()) {
+                    return;
+                }
+
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+
+                CRC32C crc = new CRC32C();
+                crc.update(type);
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    return;
+                }
+
+                consumer.accept(type, payload);
+            }
+        }
+    }
+
+    /**
+     * Existing segment numbers, ascending.
+     */
+    static List<Long> segments(Path directory, String name) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(file -> file.startsWith(name + "-") && file.endsWith(SUFFIX))
+                    .map(file -> Long.parseLong(file.substring(name.length() + 1, file.length() - SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    static Path segmentPath(Path directory, String name, long number) {
+        return directory.resolve(String.format("%s-%020d%s", name, number, SUFFIX));
+    }
+}
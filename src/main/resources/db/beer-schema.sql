@@ -0,0 +1,17 @@
+CREATE TABLE IF NOT EXISTS beer (
+    id               UUID           PRIMARY KEY,
+    version          INT            NOT NULL,
+    beer_name        VARCHAR(255),
+    -- lower-cased name, '' for none: the case-insensitive sort and prefix filter key
+    beer_name_key    VARCHAR(255)   NOT NULL,
+    beer_style       VARCHAR(30),
+    upc              VARCHAR(255),
+    quantity_on_hand INT,
+    price            DECIMAL(19, 2),
+    created_date     TIMESTAMP(6),
+    update_date      TIMESTAMP(6)
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS beer_upc ON beer (upc);
+CREATE INDEX IF NOT EXISTS beer_by_name ON beer (beer_name_key, id);
+CREATE INDEX IF NOT EXISTS beer_by_style_name ON beer (beer_style, beer_name_key, id);
@@ -0,0 +1,160 @@
+package guru.springframework.spring6restmvc;
+
+import guru.springframework.spring6restmvc.services.BeerService;
+import guru.springframework.spring6restmvc.services.BeerServiceImpl;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Injects a fixed latency into every beer service call and drives get by id with the same concurrent load
+ * twice: once with the call made on the request thread, the default, and once with
+ * {@code service.async.beers=true} handing it to a virtual thread of the async service. The request thread
+ * pool is kept small, so the run shows what blocking costs once concurrent requests outnumber request threads.
+ *
+ * Timed against the wall clock, so not part of the default build: {@code mvn -Pbenchmark -DskipTests verify}
+ * runs it with the other load tests. Throughput and p99 latency of both runs are published through the
+ * {@link LoadReport}.
+ */
+@Tag("load")
+class AsyncServiceLoadTest {
+
+    static final int REQUEST_THREADS = 10;
+    static final int CLIENTS = 100;
+    static final int REQUESTS_PER_CLIENT = 5;
+    static final Duration STORE_LATENCY = Duration.ofMillis(100);
+
+    record LoadResult(String mode, double throughput, double p99Millis) {
+
+        void addTo(Map<String, Double> values) {
+            values.put(mode + "RequestsPerSecond", throughput);
+            values.put(mode + "P99Millis", p99Millis);
+        }
+    }
+
+    @Test
+    void testAsyncEndpointSustainsMoreThroughput(TestReporter reporter) throws Exception {
+        LoadResult blocking = runLoad(false);
+        LoadResult async = runLoad(true);
+
+        Map<String, Double> values = new LinkedHashMap<>();
+        blocking.addTo(values);
+        async.addTo(values);
+        LoadReport.publish(reporter, "async-service", values);
+
+        // blocking caps out near REQUEST_THREADS / STORE_LATENCY, async near CLIENTS / STORE_LATENCY or
+        // whatever the CPU allows, so only ask for a clear margin
+        assertThat(async.throughput()).as("%s vs %s", async, blocking)
+                .isGreaterThan(blocking.throughput() * 1.5);
+        assertThat(async.p99Millis()).as("%s vs %s", async, blocking)
+                .isLessThan(blocking.p99Millis());
+    }
+
+    LoadResult runLoad(boolean async) throws Exception {
+        // command line arguments, so they win over application.properties
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Spring6RestMvcApplication.class,
+                StoreLatencyConfig.class)
+                .run("--server.port=0",
+                        "--service.async.beers=" + async,
+                        "--logging.level.guru.springframework=info",
+                        "--spring.threads.virtual.enabled=false",
+                        "--server.tomcat.threads.max=" + REQUEST_THREADS)) {
+
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            String beerId = context.getBean(BeerServiceImpl.class).listBeers().get(0).getId().toString();
+            URI target = URI.create("http://localhost:" + port + "/api/v1/beer/" + beerId);
+
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .build();
+
+            // warm up connections and the JIT
+            drive(client, target, CLIENTS, 1);
+
+            long start = System.nanoTime();
+            long[] latencies = drive(client, target, CLIENTS, REQUESTS_PER_CLIENT);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Arrays.sort(latencies);
+            long p99 = latencies[(int) Math.ceil(latencies.length * 0.99) - 1];
+
+            return new LoadResult(async ? "async" : "blocking", latencies.length / seconds, p99 / 1e6);
+        }
+    }
+
+    long[] drive(HttpClient client, URI target, int clients, int requestsPerClient) throws Exception {
+        long[] latencies = new long[clients * requestsPerClient];
+        AtomicInteger failures = new AtomicInteger();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int clientIndex = c;
+
+                executor.submit(() -> {
+                    for (int r = 0; r < requestsPerClient; r++) {
+                        HttpRequest request = HttpRequest.newBuilder(target).GET().build();
+
+                        long sent = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                failures.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                        latencies[clientIndex * requestsPerClient + r] = System.nanoTime() - sent;
+                    }
+                });
+            }
+        }
+
+        assertThat(failures.get()).isZero();
+
+        return latencies;
+    }
+
+    @TestConfiguration
+    static class StoreLatencyConfig {
+
+        /**
+         * Stands in for a slow store, every call waits before it reaches the in-memory service.
+         */
+        @Bean
+        @Primary
+        BeerService slowBeerService(BeerServiceImpl beerService) {
+            return (BeerService) Proxy.newProxyInstance(BeerService.class.getClassLoader(), new Class<?>[]{BeerService.class},
+                    (proxy, method, args) -> {
+                        Thread.sleep(STORE_LATENCY);
+                        try {
+                            return method.invoke(beerService, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package guru.springframework.spring6restmvc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Imports the same number of new beers twice, over HTTP against a running application: once as single
+ * POST /api/v1/beer requests from concurrent clients, once as one NDJSON stream to POST /api/v1/beer/batch.
+ * Run for the in-memory store and for the {@code jdbc} profile against an in-memory H2 database.
+ *
+ * Timed against the wall clock, so not part of the default build: {@code mvn -Pbenchmark -DskipTests verify}
+ * runs it with the other load tests. Beers a second of both imports are published through the {@link LoadReport}.
+ */
+@Tag("load")
+class BulkImportLoadTest {
+
+    static final int BEERS = 20_000;
+    static final int CLIENTS = 16;
+
+    final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    /**
+     * An order of magnitude for the in-memory store. With {@code jdbc} both imports pay the database's insert of
+     * every row, and concurrent single POSTs already share insert batches, see {@code InsertBatcher}: only the
+     * per-request cost is left to save, so the margin asked for is smaller.
+     */
+    @ParameterizedTest
+    @CsvSource({"default, 10", "jdbc, 5"})
+    void testBatchImportIsFaster(String profile, int factor, TestReporter reporter) throws Exception {
+        // command line arguments, so they win over application.properties
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Spring6RestMvcApplication.class)
+                .profiles(profile)
+                .run("--server.port=0",
+                        "--logging.level.guru.springframework=info",
+                        "--spring.datasource.url=jdbc:h2:mem:bulk-import;DB_CLOSE_DELAY=-1")) {
+
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            URI single = URI.create("http://localhost:" + port + "/api/v1/beer");
+            URI batch = URI.create("http://localhost:" + port + "/api/v1/beer/batch");
+
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .build();
+
+            // warm up connections and the JIT, on beers of their own
+            postOneByOne(client, single, beers("warm-single", BEERS / 10));
+            postBatch(client, batch, beers("warm-batch", BEERS / 10));
+
+            long start = System.nanoTime();
+            postOneByOne(client, single, beers("single", BEERS));
+            double singleRate = BEERS / ((System.nanoTime() - start) / 1e9);
+
+            start = System.nanoTime();
+            postBatch(client, batch, beers("batch", BEERS));
+            double batchRate = BEERS / ((System.nanoTime() - start) / 1e9);
+
+            Map<String, Double> rates = new LinkedHashMap<>();
+            rates.put("singleBeersPerSecond", singleRate);
+            rates.put("batchBeersPerSecond", batchRate);
+            LoadReport.publish(reporter, "bulk-import-" + profile, rates);
+
+            assertThat(batchRate).as("batch %.0f vs single %.0f beers/s", batchRate, singleRate)
+                    .isGreaterThan(singleRate * factor);
+        }
+    }
+
+    List<String> beers(String prefix, int count) {
+        List<String> beers = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            try {
+                beers.add(objectMapper.writeValueAsString(BeerDTO.builder()
+                        .beerName(prefix + " beer " + i)
+                        .beerStyle(BeerStyle.values()[i % BeerStyle.values().length])
+                        .upc(prefix + "-" + i)
+                        .quantityOnHand(i % 500)
+                        .price(BigDecimal.valueOf(500 + i % 2000, 2))
+                        .build()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return beers;
+    }
+
+    void postOneByOne(HttpClient client, URI target, List<String> beers) {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < CLIENTS; c++) {
+                executor.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < beers.size(); i = next.getAndIncrement()) {
+                        HttpRequest request = HttpRequest.newBuilder(target)
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString(beers.get(i)))
+                                .build();
+                        try {
+                            if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != 201) {
+                                failures.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                });
+            }
+        }
+
+        assertThat(failures.get()).isZero();
+    }
+
+    void postBatch(HttpClient client, URI target, List<String> beers) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(target)
+                .header("Content-Type", "application/x-ndjson")
+                .header("Accept", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(String.join("\n", beers) + "\n"))
+                .build();
+
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).doesNotContain("FAILED");
+    }
+}
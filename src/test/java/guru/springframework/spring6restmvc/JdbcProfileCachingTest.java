@@ -0,0 +1,40 @@
+package guru.springframework.spring6restmvc;
+
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.services.BeerService;
+import guru.springframework.spring6restmvc.services.BeerServiceImpl;
+import guru.springframework.spring6restmvc.services.CachingBeerService;
+import guru.springframework.spring6restmvc.services.JdbcBeerService;
+import guru.springframework.spring6restmvc.services.RecordStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "service.cache.enabled=true",
+        "spring.datasource.url=jdbc:h2:mem:jdbc-profile-caching;DB_CLOSE_DELAY=-1"})
+@ActiveProfiles("jdbc")
+class JdbcProfileCachingTest {
+
+    @Autowired
+    ApplicationContext context;
+
+    @Autowired
+    BeerService beerService;
+
+    @Test
+    void testCacheWrapsTheJdbcService() {
+        assertThat(beerService).isInstanceOf(CachingBeerService.class);
+        assertThat(context.getBeansOfType(BeerServiceImpl.class)).isEmpty();
+        assertThat(context.getBeansOfType(RecordStore.class)).isEmpty();
+
+        BeerDTO saved = beerService.saveNewBeer(BeerDTO.builder().beerName("Cached Lager").upc("jdbc-1").build());
+
+        assertThat(context.getBean(JdbcBeerService.class).getBeerById(saved.getId())).isPresent();
+        assertThat(beerService.getBeerById(saved.getId())).isPresent();
+    }
+}
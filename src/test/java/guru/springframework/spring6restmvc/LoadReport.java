@@ -0,0 +1,37 @@
+package guru.springframework.spring6restmvc;
+
+import org.junit.jupiter.api.TestReporter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Publishes what a load test measured, through the {@link TestReporter} and as JSON to
+ * {@code target/load-<name>.json}, next to the JMH results, so a passing run still reports its numbers.
+ */
+final class LoadReport {
+
+    private LoadReport() {
+    }
+
+    /**
+     * @param values measured values by name, in the order they are to be written
+     */
+    static void publish(TestReporter reporter, String name, Map<String, Double> values) throws IOException {
+        values.forEach((key, value) -> reporter.publishEntry(name + "." + key, format(value)));
+
+        Path result = Path.of("target", "load-" + name + ".json");
+        Files.createDirectories(result.getParent());
+        Files.writeString(result, values.entrySet().stream()
+                .map(entry -> "\"" + entry.getKey() + "\":" + format(entry.getValue()))
+                .collect(Collectors.joining(",", "{", "}\n")));
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+}
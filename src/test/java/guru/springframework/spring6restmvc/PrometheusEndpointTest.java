@@ -0,0 +1,39 @@
+package guru.springframework.spring6restmvc;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class PrometheusEndpointTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void testServiceAndStoreMetricsAreScraped() throws Exception {
+        mockMvc.perform(get("/api/v1/beer"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/v1/customer"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("beer_service_seconds_count{class=\"guru.springframework.spring6restmvc.services.BeerServiceImpl\"")))
+                .andExpect(content().string(containsString("customer_service_seconds_count{")))
+                .andExpect(content().string(containsString("beer_store_size 3.0")))
+                .andExpect(content().string(containsString("beer_index_size{index=\"name\"}")))
+                .andExpect(content().string(containsString("beer_list_page_size_count")))
+                .andExpect(content().string(containsString("customer_store_writes_total")));
+    }
+}
@@ -0,0 +1,157 @@
+package guru.springframework.spring6restmvc;
+
+import guru.springframework.spring6restmvc.controller.CustomerController;
+import jakarta.servlet.Filter;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Boots the application once on platform threads and once on virtual threads and drives both with the
+ * same concurrent load. A filter adds a fixed delay to every API call to stand in for blocking I/O, and
+ * the platform pool is kept small, so the run shows what happens once concurrent requests outnumber
+ * request threads.
+ *
+ * Timed against the wall clock, so not part of the default build: {@code mvn -Pbenchmark -DskipTests verify}
+ * runs it with the other load tests. Throughput and p99 latency of both runs are published through the
+ * {@link LoadReport}.
+ */
+@Tag("load")
+class VirtualThreadLoadTest {
+
+    static final int PLATFORM_THREADS = 10;
+    static final int CLIENTS = 100;
+    static final int REQUESTS_PER_CLIENT = 5;
+    static final Duration IO_LATENCY = Duration.ofMillis(100);
+
+    record LoadResult(String mode, double throughput, double p99Millis) {
+
+        void addTo(Map<String, Double> values) {
+            values.put(mode + "RequestsPerSecond", throughput);
+            values.put(mode + "P99Millis", p99Millis);
+        }
+    }
+
+    @Test
+    void testVirtualThreadsServeMoreConcurrentRequests(TestReporter reporter) throws Exception {
+        LoadResult platform = runLoad(false);
+        LoadResult virtual = runLoad(true);
+
+        Map<String, Double> values = new LinkedHashMap<>();
+        platform.addTo(values);
+        virtual.addTo(values);
+        LoadReport.publish(reporter, "virtual-threads", values);
+
+        // platform threads cap out near PLATFORM_THREADS / IO_LATENCY, virtual threads near CLIENTS / IO_LATENCY
+        // or whatever the CPU allows, so only ask for a clear margin
+        assertThat(virtual.throughput()).as("%s vs %s", virtual, platform)
+                .isGreaterThan(platform.throughput() * 1.5);
+        assertThat(virtual.p99Millis()).as("%s vs %s", virtual, platform)
+                .isLessThan(platform.p99Millis());
+    }
+
+    LoadResult runLoad(boolean virtualThreads) throws Exception {
+        // command line arguments, so they win over application.properties
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Spring6RestMvcApplication.class, IoLatencyConfig.class)
+                .run("--server.port=0",
+                        "--logging.level.guru.springframework=info",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--server.tomcat.threads.max=" + PLATFORM_THREADS)) {
+
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            URI[] targets = {
+                    URI.create("http://localhost:" + port + "/api/v1/beer"),
+                    URI.create("http://localhost:" + port + CustomerController.CUSTOMERS_URI)
+            };
+
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .build();
+
+            // warm up connections and the JIT
+            drive(client, targets, CLIENTS, 1);
+
+            long start = System.nanoTime();
+            long[] latencies = drive(client, targets, CLIENTS, REQUESTS_PER_CLIENT);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Arrays.sort(latencies);
+            long p99 = latencies[(int) Math.ceil(latencies.length * 0.99) - 1];
+
+            return new LoadResult(virtualThreads ? "virtual" : "platform", latencies.length / seconds, p99 / 1e6);
+        }
+    }
+
+    long[] drive(HttpClient client, URI[] targets, int clients, int requestsPerClient) throws Exception {
+        long[] latencies = new long[clients * requestsPerClient];
+        AtomicInteger failures = new AtomicInteger();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int clientIndex = c;
+
+                executor.submit(() -> {
+                    for (int r = 0; r < requestsPerClient; r++) {
+                        int slot = clientIndex * requestsPerClient + r;
+                        HttpRequest request = HttpRequest.newBuilder(targets[slot % targets.length]).GET().build();
+
+                        long sent = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                failures.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                        latencies[slot] = System.nanoTime() - sent;
+                    }
+                });
+            }
+        }
+
+        assertThat(failures.get()).isZero();
+
+        return latencies;
+    }
+
+    @TestConfiguration
+    static class IoLatencyConfig {
+
+        @Bean
+        FilterRegistrationBean<Filter> ioLatencyFilter() {
+            FilterRegistrationBean<Filter> registration = new FilterRegistrationBean<>((request, response, chain) -> {
+                try {
+                    Thread.sleep(IO_LATENCY);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                chain.doFilter(request, response);
+            });
+            registration.addUrlPatterns("/api/v1/*");
+
+            return registration;
+        }
+    }
+}
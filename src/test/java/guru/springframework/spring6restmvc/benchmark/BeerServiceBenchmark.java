@@ -0,0 +1,111 @@
+package guru.springframework.spring6restmvc.benchmark;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.services.BeerService;
+import guru.springframework.spring6restmvc.services.BeerServiceImpl;
+import guru.springframework.spring6restmvc.services.CachingBeerService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+@State(Scope.Benchmark)
+public class BeerServiceBenchmark {
+
+    private static final Pageable FIRST_PAGE = PageRequest.of(0, 25, Sort.by("beerName"));
+    private static final String[] SEARCH_TERMS = {"4217", "999", "100042", "42l7"};
+    private static final BeerDTO PATCH = BeerDTO.builder().quantityOnHand(10).build();
+
+    @Param({"1000", "100000"})
+    int catalogSize;
+
+    BeerServiceImpl beerService;
+    BeerService cachingBeerService;
+    UUID[] beerIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        beerService = new BeerServiceImpl();
+        beerIds = new UUID[catalogSize];
+
+        for (int i = 0; i < catalogSize; i++) {
+            beerIds[i] = beerService.saveNewBeer(BenchmarkData.beer(i)).getId();
+        }
+
+        cachingBeerService = new CachingBeerService(beerService, Caffeine.newBuilder()
+                .maximumWeight(64 * 1024 * 1024)
+                .weigher(CachingBeerService::weigh)
+                .build());
+    }
+
+    @Benchmark
+    public Optional<BeerDTO> getBeerById() {
+        return beerService.getBeerById(randomId());
+    }
+
+    @Benchmark
+    public Optional<BeerDTO> getBeerByIdCached() {
+        return cachingBeerService.getBeerById(randomId());
+    }
+
+    @Benchmark
+    public Slice<BeerDTO> listBeersFirstPage() {
+        return beerService.listBeers(null, null, FIRST_PAGE);
+    }
+
+    @Benchmark
+    public Slice<BeerDTO> listBeersByStyle() {
+        return beerService.listBeers(null, BeerStyle.IPA, FIRST_PAGE);
+    }
+
+    @Benchmark
+    public Page<BeerDTO> searchBeers() {
+        return beerService.searchBeers(SEARCH_TERMS[ThreadLocalRandom.current().nextInt(SEARCH_TERMS.length)], FIRST_PAGE);
+    }
+
+    @Benchmark
+    public List<BeerDTO> listAllBeers() {
+        return beerService.listBeers();
+    }
+
+    /**
+     * Deletes what it saved so the catalog keeps its size across iterations.
+     */
+    @Benchmark
+    public BeerDTO saveNewAndDeleteBeer() {
+        BeerDTO saved = beerService.saveNewBeer(BenchmarkData.beer(catalogSize));
+        beerService.deleteById(saved.getId());
+
+        return saved;
+    }
+
+    @Benchmark
+    public void patchBeerById() {
+        beerService.patchBeerById(randomId(), PATCH);
+    }
+
+    /**
+     * Every thread adjusts the same beer, restocking what it took so the quantity never runs out.
+     */
+    @Benchmark
+    @Threads(4)
+    public Optional<BeerDTO> adjustInventoryHotSku() {
+        UUID hotSku = beerIds[0];
+        beerService.adjustInventory(hotSku, 1);
+
+        return beerService.adjustInventory(hotSku, -1);
+    }
+
+    private UUID randomId() {
+        return beerIds[ThreadLocalRandom.current().nextInt(beerIds.length)];
+    }
+}
@@ -0,0 +1,44 @@
+package guru.springframework.spring6restmvc.benchmark;
+
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.model.CustomerDTO;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Deterministic test data shared by the benchmarks.
+ */
+final class BenchmarkData {
+
+    private static final BeerStyle[] STYLES = BeerStyle.values();
+
+    private BenchmarkData() {
+    }
+
+    static BeerDTO beer(int i) {
+        return BeerDTO.builder()
+                .id(UUID.randomUUID())
+                .version(1)
+                .beerName("Benchmark Beer " + i)
+                .beerStyle(STYLES[i % STYLES.length])
+                .upc(String.valueOf(100000 + i))
+                .quantityOnHand(i % 500)
+                .price(BigDecimal.valueOf(500 + i % 2000, 2))
+                .createdDate(LocalDateTime.now())
+                .updateDate(LocalDateTime.now())
+                .build();
+    }
+
+    static CustomerDTO customer(int i) {
+        return CustomerDTO.builder()
+                .id(UUID.randomUUID())
+                .version(1)
+                .name("Benchmark Customer " + i)
+                .createdDate(LocalDateTime.now())
+                .updateDate(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,62 @@
+package guru.springframework.spring6restmvc.benchmark;
+
+import guru.springframework.spring6restmvc.model.CustomerDTO;
+import guru.springframework.spring6restmvc.services.CustomerServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+@State(Scope.Benchmark)
+public class CustomerServiceBenchmark {
+
+    private static final CustomerDTO PATCH = CustomerDTO.builder().name("Patched Customer").build();
+
+    @Param({"1000", "100000"})
+    int customerCount;
+
+    CustomerServiceImpl customerService;
+    UUID[] customerIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        customerService = new CustomerServiceImpl();
+        customerIds = new UUID[customerCount];
+
+        for (int i = 0; i < customerCount; i++) {
+            customerIds[i] = customerService.saveNewCustomer(BenchmarkData.customer(i)).getId();
+        }
+    }
+
+    @Benchmark
+    public Optional<CustomerDTO> getCustomerById() {
+        return customerService.getCustomerById(randomId());
+    }
+
+    @Benchmark
+    public List<CustomerDTO> getAllCustomers() {
+        return customerService.getAllCustomers();
+    }
+
+    /**
+     * Deletes what it saved so the store keeps its size across iterations.
+     */
+    @Benchmark
+    public CustomerDTO saveNewAndDeleteCustomer() {
+        CustomerDTO saved = customerService.saveNewCustomer(BenchmarkData.customer(customerCount));
+        customerService.deleteCustomerById(saved.getId());
+
+        return saved;
+    }
+
+    @Benchmark
+    public void patchCustomerById() {
+        customerService.patchCustomerById(randomId(), PATCH);
+    }
+
+    private UUID randomId() {
+        return customerIds[ThreadLocalRandom.current().nextInt(customerIds.length)];
+    }
+}
@@ -0,0 +1,91 @@
+package guru.springframework.spring6restmvc.benchmark;
+
+import guru.springframework.spring6restmvc.model.BeerBatchResult;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.services.JdbcBeerService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A chunk of a bulk import against embedded H2, every item an update of an existing beer found by its upc:
+ * one {@link JdbcBeerService#upsertBeers} call, against the same updates made one {@code updateBeerById} at a
+ * time. Each thread updates beers of its own, so the updates do not conflict.
+ */
+public class JdbcBeerUpsertBenchmark {
+
+    static final int CHUNK_SIZE = 1000;
+    static final int MAX_THREADS = 64;
+
+    @State(Scope.Benchmark)
+    public static class Catalog {
+
+        EmbeddedDatabase database;
+        JdbcBeerService beerService;
+        AtomicInteger nextChunk = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            database = new EmbeddedDatabaseBuilder()
+                    .setType(EmbeddedDatabaseType.H2)
+                    .generateUniqueName(true)
+                    .addScript("db/beer-schema.sql")
+                    .build();
+            beerService = new JdbcBeerService(new NamedParameterJdbcTemplate(database),
+                    new DataSourceTransactionManager(database), 100);
+
+            for (int first = 0; first < CHUNK_SIZE * MAX_THREADS; first += CHUNK_SIZE) {
+                List<BeerDTO> beers = new ArrayList<>(CHUNK_SIZE);
+                for (int i = first; i < first + CHUNK_SIZE; i++) {
+                    beers.add(BenchmarkData.beer(i).toBuilder().id(null).build());
+                }
+                beerService.upsertBeers(beers);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            beerService.close();
+            database.shutdown();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Chunk {
+
+        List<BeerDTO> updates = new ArrayList<>(CHUNK_SIZE);
+        List<BeerDTO> stored = new ArrayList<>(CHUNK_SIZE);
+
+        @Setup(Level.Trial)
+        public void setUp(Catalog catalog) {
+            int first = catalog.nextChunk.getAndIncrement() * CHUNK_SIZE;
+
+            for (int i = first; i < first + CHUNK_SIZE; i++) {
+                BeerDTO beer = BenchmarkData.beer(i);
+                updates.add(beer.toBuilder().id(null).quantityOnHand(beer.getQuantityOnHand() + 1).build());
+            }
+            for (BeerBatchResult result : catalog.beerService.upsertBeers(updates)) {
+                stored.add(catalog.beerService.getBeerById(result.getId()).orElseThrow());
+            }
+        }
+    }
+
+    @Benchmark
+    public List<BeerBatchResult> upsertChunk(Catalog catalog, Chunk chunk) {
+        return catalog.beerService.upsertBeers(chunk.updates);
+    }
+
+    @Benchmark
+    public void updateOneByOne(Catalog catalog, Chunk chunk) {
+        for (BeerDTO beer : chunk.stored) {
+            catalog.beerService.updateBeerById(beer.getId(), beer.toBuilder().version(null).build());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package guru.springframework.spring6restmvc.benchmark;
+
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.services.JdbcBeerService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent saves against embedded H2, one insert and commit each with a batch size of 1, coalesced into
+ * shared batches otherwise.
+ */
+@State(Scope.Benchmark)
+public class JdbcBeerWriteBenchmark {
+
+    @Param({"1", "100"})
+    int batchSize;
+
+    EmbeddedDatabase database;
+    JdbcBeerService beerService;
+    AtomicInteger next = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("db/beer-schema.sql")
+                .build();
+        beerService = new JdbcBeerService(new NamedParameterJdbcTemplate(database),
+                new DataSourceTransactionManager(database), batchSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        beerService.close();
+        database.shutdown();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public BeerDTO saveNewBeer() {
+        // upcs are unique, every save needs one of its own
+        return beerService.saveNewBeer(BenchmarkData.beer(next.getAndIncrement()));
+    }
+}
@@ -0,0 +1,101 @@
+package guru.springframework.spring6restmvc.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import guru.springframework.spring6restmvc.controller.BinaryFormatsConfig;
+import guru.springframework.spring6restmvc.controller.FieldProjection;
+import guru.springframework.spring6restmvc.controller.ScalarCodecsModule;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.CustomerDTO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Jackson list serialization, configured the way Spring Boot and {@link BinaryFormatsConfig} configure the
+ * mappers of each format. The setup prints the payload size of each format.
+ *
+ * The single beer benchmarks are what a GET or PUT by id serializes or parses; compare their
+ * {@code gc.alloc.rate.norm} with and without {@link ScalarCodecsModule}.
+ */
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"25", "1000"})
+    int listSize;
+
+    @Param({"json", "cbor", "smile"})
+    String format;
+
+    @Param({"standard", "scalar"})
+    String codecs;
+
+    ObjectMapper objectMapper;
+    ObjectReader beerListReader;
+    ObjectReader beerReader;
+    List<BeerDTO> beers;
+    List<CustomerDTO> customers;
+    byte[] beerPayload;
+    byte[] singleBeerPayload;
+    FieldProjection.Projected projectedBeers;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        if ("scalar".equals(codecs)) {
+            builder.modulesToInstall(new ScalarCodecsModule());
+        }
+
+        objectMapper = switch (format) {
+            case "json" -> builder.build();
+            case "cbor" -> BinaryFormatsConfig.binaryMapper(builder, new CBORFactory());
+            case "smile" -> BinaryFormatsConfig.binaryMapper(builder, new SmileFactory());
+            default -> throw new IllegalArgumentException(format);
+        };
+        beerListReader = objectMapper.readerForListOf(BeerDTO.class);
+        beerReader = objectMapper.readerFor(BeerDTO.class);
+        beers = IntStream.range(0, listSize).mapToObj(BenchmarkData::beer).toList();
+        customers = IntStream.range(0, listSize).mapToObj(BenchmarkData::customer).toList();
+        beerPayload = objectMapper.writeValueAsBytes(beers);
+        singleBeerPayload = objectMapper.writeValueAsBytes(beers.get(0));
+        projectedBeers = FieldProjection.of("id,beerName,price").apply(beers);
+
+        System.out.printf("%n%s payload of %d beers: %d bytes, %d bytes with id, beerName and price%n", format,
+                listSize, beerPayload.length, objectMapper.writeValueAsBytes(projectedBeers).length);
+    }
+
+    @Benchmark
+    public byte[] writeBeerList() throws IOException {
+        return objectMapper.writeValueAsBytes(beers);
+    }
+
+    @Benchmark
+    public byte[] writeBeer() throws IOException {
+        return objectMapper.writeValueAsBytes(beers.get(0));
+    }
+
+    @Benchmark
+    public BeerDTO readBeer() throws IOException {
+        return beerReader.readValue(singleBeerPayload);
+    }
+
+    @Benchmark
+    public byte[] writeBeerListProjected() throws IOException {
+        return objectMapper.writeValueAsBytes(projectedBeers);
+    }
+
+    @Benchmark
+    public List<BeerDTO> readBeerList() throws IOException {
+        return beerListReader.readValue(beerPayload);
+    }
+
+    @Benchmark
+    public byte[] writeCustomerList() throws IOException {
+        return objectMapper.writeValueAsBytes(customers);
+    }
+}
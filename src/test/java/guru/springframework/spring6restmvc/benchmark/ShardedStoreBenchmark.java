@@ -0,0 +1,68 @@
+package guru.springframework.spring6restmvc.benchmark;
+
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.services.OffHeapBeerStore;
+import guru.springframework.spring6restmvc.services.RecordStore;
+import guru.springframework.spring6restmvc.services.ShardedRecordStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Write throughput of 8 threads over off-heap stores, whose single write lock is what sharding spreads.
+ * With one shard every write queues on the same lock, with more the score should grow close to linearly
+ * until the threads run out.
+ */
+@State(Scope.Benchmark)
+public class ShardedStoreBenchmark {
+
+    private static final int CATALOG_SIZE = 100_000;
+
+    @Param({"1", "2", "4", "8"})
+    int shards;
+
+    RecordStore<BeerDTO> beerStore;
+    UUID[] beerIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        beerStore = shards == 1 ? new OffHeapBeerStore()
+                : new ShardedRecordStore<>(IntStream.range(0, shards)
+                        .mapToObj(shard -> new OffHeapBeerStore())
+                        .toList());
+        beerIds = new UUID[CATALOG_SIZE];
+
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            beerIds[i] = beerStore.insert(BenchmarkData.beer(i)).getId();
+        }
+    }
+
+    /**
+     * Deletes what it saved so the catalog keeps its size across iterations.
+     */
+    @Benchmark
+    @Threads(8)
+    public BeerDTO insertAndRemove() {
+        BeerDTO beer = beerStore.insert(BenchmarkData.beer(CATALOG_SIZE));
+        beerStore.remove(beer.getId());
+
+        return beer;
+    }
+
+    @Benchmark
+    @Threads(8)
+    public BeerDTO update() {
+        UUID beerId = beerIds[ThreadLocalRandom.current().nextInt(beerIds.length)];
+
+        return beerStore.update(beerId, beer -> beer.toBuilder().quantityOnHand(beer.getQuantityOnHand() + 1).build())
+                .orElseThrow();
+    }
+
+    @Benchmark
+    public List<BeerDTO> values() {
+        return beerStore.values();
+    }
+}
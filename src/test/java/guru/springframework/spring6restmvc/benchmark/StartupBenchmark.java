@@ -0,0 +1,105 @@
+package guru.springframework.spring6restmvc.benchmark;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Time from launching the application to its first successful {@code GET /api/v1/beer}, the cold start a
+ * new instance pays before it can take traffic. Started by the {@code fast-start} Maven profile, once for the
+ * plain jar and once for the AOT processed, CDS archived one.
+ *
+ * The first argument names the run, the others are the JVM arguments to launch the application with. Runs
+ * come from {@code -Dstartup.runs=5}; with {@code -Dstartup.budget=<millis>} a median above it fails the
+ * build. Results are written as JSON to {@code target/startup-<name>.json}.
+ */
+public class StartupBenchmark {
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+    private static final String RESULT = "{\"name\":\"%s\",\"medianMillis\":%d,\"minMillis\":%d,\"runs\":[%s]}%n";
+
+    public static void main(String[] args) throws Exception {
+        String name = args[0];
+        List<String> jvmArguments = Arrays.asList(args).subList(1, args.length);
+        int runs = Integer.getInteger("startup.runs", 5);
+        long budget = Long.getLong("startup.budget", 0);
+
+        long[] millis = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            millis[run] = timeToFirstGet(jvmArguments);
+            System.out.printf("%s startup %d: %d ms%n", name, run + 1, millis[run]);
+        }
+
+        long[] sorted = millis.clone();
+        Arrays.sort(sorted);
+        long median = sorted[runs / 2];
+        System.out.printf("%s startup to first GET /api/v1/beer: median %d ms, min %d ms%n", name, median, sorted[0]);
+
+        Path result = Path.of("target", "startup-" + name + ".json");
+        Files.createDirectories(result.getParent());
+        String runMillis = Arrays.stream(millis).mapToObj(String::valueOf).collect(Collectors.joining(","));
+        Files.writeString(result, String.format(RESULT, name, median, sorted[0], runMillis));
+
+        if (budget > 0 && median > budget) {
+            System.err.printf("%s startup median of %d ms is over the budget of %d ms%n", name, median, budget);
+            System.exit(1);
+        }
+    }
+
+    private static long timeToFirstGet(List<String> jvmArguments) throws IOException, InterruptedException {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArguments);
+        command.add("--server.port=" + port);
+
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/beer")).build();
+
+        long start = System.nanoTime();
+        Process application = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            while (System.nanoTime() - start < TIMEOUT.toNanos()) {
+                try {
+                    if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                } catch (ConnectException e) {
+                    // not listening yet
+                }
+                if (!application.isAlive()) {
+                    throw new IllegalStateException("Application exited with " + application.exitValue());
+                }
+                Thread.sleep(5);
+            }
+
+            throw new IllegalStateException("No successful GET within " + TIMEOUT);
+        } finally {
+            application.destroy();
+            if (!application.waitFor(30, TimeUnit.SECONDS)) {
+                application.destroyForcibly();
+            }
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
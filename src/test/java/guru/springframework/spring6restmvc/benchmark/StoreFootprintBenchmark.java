@@ -0,0 +1,92 @@
+package guru.springframework.spring6restmvc.benchmark;
+
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.services.BeerServiceImpl;
+import guru.springframework.spring6restmvc.services.OffHeapBeerStore;
+import guru.springframework.spring6restmvc.services.RecordStore;
+import guru.springframework.spring6restmvc.services.VersionedStore;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Heap a catalog retains in each {@link RecordStore}, on its own and under {@link BeerServiceImpl} with the
+ * name, style, upc and search indexes, which stay on the heap whatever the store. The off-heap store's direct
+ * memory is reported next to it. Started by the {@code benchmark} Maven profile; the catalog size comes from
+ * {@code -Dfootprint.beers=1000000}. Results are written as JSON to {@code target/footprint.json}.
+ *
+ * Used heap is read after full collections, so it is what the catalog keeps alive, not what building it
+ * allocated.
+ */
+public class StoreFootprintBenchmark {
+
+    private static final String RESULT = "{\"name\":\"%s\",\"beers\":%d,\"heapBytes\":%d,\"directBytes\":%d}";
+
+    public static void main(String[] args) throws IOException {
+        int beers = Integer.getInteger("footprint.beers", 1_000_000);
+
+        List<String> results = new ArrayList<>();
+        results.add(measure("heap store", beers, () -> fill(new VersionedStore<>(), beers)));
+        results.add(measure("off-heap store", beers, () -> fill(new OffHeapBeerStore(), beers)));
+        results.add(measure("heap service", beers, () -> fill(new BeerServiceImpl(new VersionedStore<>()), beers)));
+        results.add(measure("off-heap service", beers, () -> fill(new BeerServiceImpl(new OffHeapBeerStore()), beers)));
+
+        Path result = Path.of("target", "footprint.json");
+        Files.createDirectories(result.getParent());
+        Files.writeString(result, "[" + String.join(",", results) + "]\n");
+    }
+
+    private static String measure(String name, int beers, Supplier<Object> catalog) {
+        long heapBefore = usedHeap();
+        long directBefore = usedDirect();
+
+        Object retained = catalog.get();
+        long heap = usedHeap() - heapBefore;
+        long direct = usedDirect() - directBefore;
+        Reference.reachabilityFence(retained);
+
+        System.out.printf("%-16s %,d beers: heap %,d bytes (%d per beer), direct %,d bytes (%d per beer)%n",
+                name, beers, heap, heap / beers, direct, direct / beers);
+
+        return String.format(RESULT, name, beers, heap, direct);
+    }
+
+    private static RecordStore<BeerDTO> fill(RecordStore<BeerDTO> store, int beers) {
+        for (int i = 0; i < beers; i++) {
+            store.insert(BenchmarkData.beer(i));
+        }
+
+        return store;
+    }
+
+    private static BeerServiceImpl fill(BeerServiceImpl beerService, int beers) {
+        for (int i = 0; i < beers; i++) {
+            beerService.saveNewBeer(BenchmarkData.beer(i));
+        }
+
+        return beerService;
+    }
+
+    private static long usedHeap() {
+        // a few rounds, so objects only reachable from finalizers and cleaners are gone too
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedDirect() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> "direct".equals(pool.getName()))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+}
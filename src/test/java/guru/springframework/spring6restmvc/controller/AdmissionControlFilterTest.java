@@ -0,0 +1,162 @@
+package guru.springframework.spring6restmvc.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControlFilterTest {
+
+    AtomicLong clock = new AtomicLong();
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    ConcurrencyLimit concurrencyLimit;
+    AdmissionControlFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        concurrencyLimit = new ConcurrencyLimit(2, 1, 4);
+        filter = new AdmissionControlFilter(new RateLimiter(1, 2, 100), new RateLimiter(10, 3, 100),
+                concurrencyLimit, clock::get, registry);
+    }
+
+    MockHttpServletResponse perform(String client, String uri) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setRemoteAddr(client);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain());
+
+        return response;
+    }
+
+    @Test
+    void testClientIsLimitedToItsBurst() throws Exception {
+        assertThat(perform("10.0.0.1", "/api/v1/beer").getStatus()).isEqualTo(200);
+        assertThat(perform("10.0.0.1", "/api/v1/beer").getStatus()).isEqualTo(200);
+
+        MockHttpServletResponse rejected = perform("10.0.0.1", "/api/v1/beer");
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(rejected.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(registry.get("http.server.admission.rejected").tag("reason", "rate-limit").counter().count())
+                .isEqualTo(1);
+
+        // one token a second
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertThat(perform("10.0.0.1", "/api/v1/beer").getStatus()).isEqualTo(200);
+        assertThat(perform("10.0.0.1", "/api/v1/beer").getStatus()).isEqualTo(429);
+    }
+
+    @Test
+    void testEndpointIsLimitedAcrossClients() throws Exception {
+        String beer = "/api/v1/beer/" + UUID.randomUUID();
+
+        assertThat(perform("10.0.0.1", beer).getStatus()).isEqualTo(200);
+        assertThat(perform("10.0.0.2", "/api/v1/beer/" + UUID.randomUUID()).getStatus()).isEqualTo(200);
+        assertThat(perform("10.0.0.3", beer).getStatus()).isEqualTo(200);
+        assertThat(perform("10.0.0.4", beer).getStatus()).isEqualTo(429);
+
+        assertThat(perform("10.0.0.4", "/api/v1/customer/" + UUID.randomUUID()).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void testEndpointReplacesIds() {
+        UUID beerId = UUID.randomUUID();
+
+        assertThat(AdmissionControlFilter.endpoint(new MockHttpServletRequest("POST",
+                "/api/v1/beer/" + beerId + "/inventory"))).isEqualTo("POST /api/v1/beer/{id}/inventory");
+        assertThat(AdmissionControlFilter.endpoint(new MockHttpServletRequest("GET", "/api/v1/beer/search")))
+                .isEqualTo("GET /api/v1/beer/search");
+    }
+
+    @Test
+    void testClientKeysStayBoundedWhileAllActive() {
+        RateLimiter limiter = new RateLimiter(1, 2, 100);
+
+        // none of the buckets is idle, the bound holds anyway
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(limiter.tryAcquire("10.0." + i / 256 + "." + i % 256, clock.get())).isZero();
+        }
+
+        assertThat(limiter.size()).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    void testAsyncRequestHoldsItsSlotUntilComplete() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/beer");
+        request.setAsyncSupported(true);
+
+        filter.doFilter(request, new MockHttpServletResponse(),
+                (req, res) -> ((HttpServletRequest) req).startAsync());
+        assertThat(concurrencyLimit.getInFlight()).isEqualTo(1);
+
+        // a synchronous request hands its slot back on return
+        perform("10.0.0.2", "/api/v1/beer");
+        assertThat(concurrencyLimit.getInFlight()).isEqualTo(1);
+
+        request.getAsyncContext().complete();
+        assertThat(concurrencyLimit.getInFlight()).isZero();
+    }
+
+    @Test
+    void testOverloadIsShed() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/customer");
+            request.setRemoteAddr("10.0.0." + i);
+            request.setAsyncSupported(true);
+            filter.doFilter(request, new MockHttpServletResponse(),
+                    (req, res) -> ((HttpServletRequest) req).startAsync());
+        }
+
+        MockHttpServletResponse rejected = perform("10.0.0.9", "/api/v1/beer");
+        assertThat(rejected.getStatus()).isEqualTo(503);
+        assertThat(rejected.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+    }
+
+    @Test
+    void testLimitFollowsLatency() {
+        ConcurrencyLimit limit = new ConcurrencyLimit(20, 5, 100);
+
+        // steady latency under full load raises the limit
+        for (int i = 0; i < 200; i++) {
+            fillAndDrain(limit, TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        int raised = limit.getLimit();
+        assertThat(raised).isGreaterThan(20);
+
+        // latency climbing well above the long-term average lowers it
+        for (int i = 0; i < 20; i++) {
+            fillAndDrain(limit, TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        assertThat(limit.getLimit()).isLessThan(raised);
+
+        // and keeps it down while latency stays up, the long-term average does not follow into the overload
+        for (int i = 0; i < 500; i++) {
+            fillAndDrain(limit, TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        assertThat(limit.getLimit()).isLessThan(raised / 2);
+
+        // latency back to normal raises it again
+        for (int i = 0; i < 200; i++) {
+            fillAndDrain(limit, TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertThat(limit.getLimit()).isGreaterThan(raised / 2);
+    }
+
+    private static void fillAndDrain(ConcurrencyLimit limit, long latency) {
+        while (limit.tryAcquire()) {
+        }
+        while (limit.getInFlight() > 0) {
+            limit.release(latency);
+        }
+    }
+}
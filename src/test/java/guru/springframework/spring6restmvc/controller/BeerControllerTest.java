@@ -1,27 +1,53 @@
 package guru.springframework.spring6restmvc.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.spring6restmvc.model.BeerBatchResult;
+import guru.springframework.spring6restmvc.model.BeerChange;
+import guru.springframework.spring6restmvc.model.BeerChangeFeed;
 import guru.springframework.spring6restmvc.model.BeerDTO;
 import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.services.BeerCursor;
 import guru.springframework.spring6restmvc.services.BeerService;
 import guru.springframework.spring6restmvc.services.BeerServiceImpl;
+import guru.springframework.spring6restmvc.services.ChangesExpiredException;
+import guru.springframework.spring6restmvc.services.InsufficientInventoryException;
+import guru.springframework.spring6restmvc.services.VersionConflictException;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.startsWith;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPInputStream;
 
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -29,6 +55,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 //@SpringBootTest
 @WebMvcTest(BeerController.class)
+@Import({BinaryFormatsConfig.class, ListResponseCache.class, IdempotentPosts.class})
 class BeerControllerTest {
 
     //@Autowired
@@ -37,6 +64,14 @@ class BeerControllerTest {
     MockMvc mockMvc;
     @Autowired
     ObjectMapper objectMapper;
+    @Autowired
+    MappingJackson2CborHttpMessageConverter cborConverter;
+    @Autowired
+    MappingJackson2SmileHttpMessageConverter smileConverter;
+    @Autowired
+    ListResponseCache listResponseCache;
+    @Autowired
+    IdempotentPosts idempotentPosts;
     @Captor
     ArgumentCaptor<UUID> uuidCaptor;
     @Captor
@@ -47,6 +82,22 @@ class BeerControllerTest {
 
     BeerServiceImpl beerServiceImpl = new BeerServiceImpl();
 
+    @BeforeEach
+    void setUp() {
+        // the mocked service never bumps its modification count, bodies of earlier tests would be served
+        listResponseCache.invalidateAll();
+        idempotentPosts.invalidateAll();
+    }
+
+    /**
+     * Performs the request, plus the async dispatch when the handler returned a future, as the changes feed does.
+     */
+    ResultActions perform(RequestBuilder request) throws Exception {
+        ResultActions actions = mockMvc.perform(request);
+        MvcResult result = actions.andReturn();
+
+        return result.getRequest().isAsyncStarted() ? mockMvc.perform(asyncDispatch(result)) : actions;
+    }
 
     @Test
     void getBeerByIdNotFound() throws Exception {
@@ -72,6 +123,7 @@ class BeerControllerTest {
 
         mockMvc.perform(get("/api/v1/beer/" + beerId)
                 .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncNotStarted())
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.id").value(beerId.toString()))
@@ -79,11 +131,130 @@ class BeerControllerTest {
         //System.out.println(beerController.getBeerById(UUID.randomUUID()));
     }
 
+    @Test
+    void getBeerByIdAsCbor() throws Exception {
+        BeerDTO testBeer = beerServiceImpl.listBeers().get(0);
+
+        given(beerService.getBeerById(testBeer.getId())).willReturn(Optional.of(testBeer));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/beer/" + testBeer.getId())
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+
+        assertThat(result.getResponse().getHeader(HttpHeaders.ETAG))
+                .isEqualTo("\"" + testBeer.getId() + "-" + testBeer.getVersion() + "-cbor\"")
+                .isNotEqualTo(ETags.of(testBeer, MediaType.APPLICATION_JSON));
+
+        byte[] cbor = result.getResponse().getContentAsByteArray();
+        assertThat(cborConverter.getObjectMapper().readValue(cbor, BeerDTO.class)).isEqualTo(testBeer);
+        assertThat(cbor.length).isLessThan(objectMapper.writeValueAsBytes(testBeer).length);
+    }
+
+    @Test
+    void testListBeersAsSmile() throws Exception {
+        List<BeerDTO> testBeers = beerServiceImpl.listBeers();
+
+        given(beerService.listBeers(any(), any(), any(Pageable.class))).willReturn(new PageImpl<>(testBeers));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/beer")
+                .accept(BinaryFormatsConfig.APPLICATION_SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BinaryFormatsConfig.APPLICATION_SMILE))
+                .andReturn();
+
+        assertThat(smileConverter.getObjectMapper().readValue(result.getResponse().getContentAsByteArray(), BeerDTO[].class))
+                .containsExactlyElementsOf(testBeers);
+    }
+
+    @Test
+    void testCreateBeerFromSmile() throws Exception {
+        BeerDTO testBeer = BeerDTO.builder().beerName("Smile Beer").price(new BigDecimal("3.50")).build();
+
+        given(beerService.saveNewBeer(any(BeerDTO.class))).willReturn(beerServiceImpl.listBeers().get(0));
+
+        mockMvc.perform(post("/api/v1/beer")
+                .contentType(BinaryFormatsConfig.APPLICATION_SMILE)
+                .content(smileConverter.getObjectMapper().writeValueAsBytes(testBeer)))
+                .andExpect(status().isCreated());
+
+        verify(beerService).saveNewBeer(testBeer);
+    }
+
+    @Test
+    void getBeerByIdNotModified() throws Exception {
+        UUID beerId = UUID.randomUUID();
+        BeerDTO testBeer = BeerDTO.builder().id(beerId).version(3).beerName("Test Beer").build();
+        String etag = "\"" + beerId + "-3\"";
+
+        given(beerService.getBeerById(beerId)).willReturn(Optional.of(testBeer));
+
+        mockMvc.perform(get("/api/v1/beer/" + beerId)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+
+        mockMvc.perform(get("/api/v1/beer/" + beerId)
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void testListBeersNotModified() throws Exception {
+        given(beerService.getModificationCount()).willReturn(42L);
+
+        mockMvc.perform(get("/api/v1/beer")
+                .header(HttpHeaders.IF_NONE_MATCH, ETags.of(42L, MediaType.APPLICATION_JSON, false))
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified());
+
+        verify(beerService, never()).listBeers(any(), any(), any(Pageable.class));
+    }
+
+    @Test
+    void testListBeersTagNamesTheRepresentation() throws Exception {
+        given(beerService.getModificationCount()).willReturn(42L);
+        given(beerService.listBeers(any(), any(), any(Pageable.class)))
+                .willReturn(new PageImpl<>(beerServiceImpl.listBeers()));
+
+        String json = mockMvc.perform(get("/api/v1/beer").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String gzip = mockMvc.perform(get("/api/v1/beer").accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertThat(json).isEqualTo(ETags.of(42L, MediaType.APPLICATION_JSON, false))
+                .isNotEqualTo(gzip)
+                .isNotEqualTo(ETags.of(42L, MediaType.APPLICATION_CBOR, false));
+
+        // a JSON tag does not validate the CBOR body, nor one for a client taking gzip
+        mockMvc.perform(get("/api/v1/beer")
+                .header(HttpHeaders.IF_NONE_MATCH, json)
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, ETags.of(42L, MediaType.APPLICATION_CBOR, false)));
+        mockMvc.perform(get("/api/v1/beer")
+                .header(HttpHeaders.IF_NONE_MATCH, json)
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/v1/beer")
+                .header(HttpHeaders.IF_NONE_MATCH, gzip)
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified());
+    }
+
     @Test
     void testListBeers() throws Exception {
         List<BeerDTO> testBeers = beerServiceImpl.listBeers();
 
-        given(beerService.listBeers()).willReturn(testBeers);
+        given(beerService.listBeers(any(), any(), any(Pageable.class))).willReturn(new PageImpl<>(testBeers));
 
         mockMvc.perform(get("/api/v1/beer")
                 .accept(MediaType.APPLICATION_JSON))
@@ -92,6 +263,257 @@ class BeerControllerTest {
                 .andExpect(jsonPath("$.length()", is(testBeers.size())));
     }
 
+    @Test
+    void testListBeersServedFromCacheUntilModified() throws Exception {
+        List<BeerDTO> testBeers = beerServiceImpl.listBeers();
+
+        given(beerService.getModificationCount()).willReturn(7L);
+        given(beerService.listBeers(any(), any(), any(Pageable.class))).willReturn(new PageImpl<>(testBeers));
+
+        byte[] first = mockMvc.perform(get("/api/v1/beer").queryParam("size", "10").queryParam("page", "0")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        // the same parameters in another order
+        byte[] second = mockMvc.perform(get("/api/v1/beer").queryParam("page", "0").queryParam("size", "10")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertThat(second).isEqualTo(first);
+        verify(beerService, times(1)).listBeers(any(), any(), any(Pageable.class));
+
+        // another format is another body
+        mockMvc.perform(get("/api/v1/beer").queryParam("size", "10").queryParam("page", "0")
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR));
+        verify(beerService, times(2)).listBeers(any(), any(), any(Pageable.class));
+
+        given(beerService.getModificationCount()).willReturn(8L);
+        given(beerService.listBeers(any(), any(), any(Pageable.class))).willReturn(new PageImpl<>(testBeers.subList(0, 1)));
+
+        mockMvc.perform(get("/api/v1/beer").queryParam("size", "10").queryParam("page", "0")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1)));
+    }
+
+    @Test
+    void testListBeersGzipped() throws Exception {
+        List<BeerDTO> testBeers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            testBeers.addAll(beerServiceImpl.listBeers());
+        }
+
+        given(beerService.listBeers(any(), any(), any(Pageable.class))).willReturn(new PageImpl<>(testBeers));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/beer")
+                .header(HttpHeaders.ACCEPT_ENCODING, "br;q=1.0, gzip;q=0.8")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn();
+
+        try (InputStream body = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            assertThat(objectMapper.readValue(body, BeerDTO[].class)).containsExactlyElementsOf(testBeers);
+        }
+    }
+
+    @Test
+    void testListBeersNotAcceptable() throws Exception {
+        mockMvc.perform(get("/api/v1/beer")
+                .accept(MediaType.APPLICATION_XML))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    void testListBeersProjectedFields() throws Exception {
+        List<BeerDTO> testBeers = beerServiceImpl.listBeers();
+
+        given(beerService.listBeers(any(), any(), any(Pageable.class))).willReturn(new PageImpl<>(testBeers));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/beer")
+                .queryParam("fields", "price,id,beerName")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(testBeers.size())))
+                .andExpect(jsonPath("$[0].beerName", is(testBeers.get(0).getBeerName())))
+                .andReturn();
+
+        List<Map<String, Object>> beers = objectMapper.readValue(result.getResponse().getContentAsByteArray(),
+                new TypeReference<>() {});
+        assertThat(beers).allSatisfy(beer -> assertThat(beer).containsOnlyKeys("id", "beerName", "price"));
+    }
+
+    @Test
+    void testGetBeerByIdProjectedAsCbor() throws Exception {
+        BeerDTO testBeer = beerServiceImpl.listBeers().get(0);
+
+        given(beerService.getBeerById(testBeer.getId())).willReturn(Optional.of(testBeer));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/beer/" + testBeer.getId())
+                .queryParam("fields", "id,updateDate")
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        Map<String, Object> beer = cborConverter.getObjectMapper().readValue(result.getResponse().getContentAsByteArray(),
+                new TypeReference<>() {});
+        assertThat(beer).containsOnlyKeys("id", "updateDate");
+    }
+
+    @Test
+    void testUnknownProjectedField() throws Exception {
+        given(beerService.listBeers(any(), any(), any(Pageable.class)))
+                .willReturn(new PageImpl<>(beerServiceImpl.listBeers()));
+
+        mockMvc.perform(get("/api/v1/beer")
+                .queryParam("fields", "id,color"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testListBeersQueryParams() throws Exception {
+        ArgumentCaptor<Pageable> pageableCaptor = ArgumentCaptor.forClass(Pageable.class);
+
+        given(beerService.listBeers(any(), any(), any(Pageable.class))).willReturn(new PageImpl<>(List.of()));
+
+        mockMvc.perform(get("/api/v1/beer")
+                .queryParam("beerName", "gal")
+                .queryParam("beerStyle", BeerStyle.IPA.name())
+                .queryParam("page", "2")
+                .queryParam("size", "10")
+                .queryParam("sort", "price,desc")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        verify(beerService).listBeers(eq("gal"), eq(BeerStyle.IPA), pageableCaptor.capture());
+
+        assertThat(pageableCaptor.getValue().getPageNumber()).isEqualTo(2);
+        assertThat(pageableCaptor.getValue().getPageSize()).isEqualTo(10);
+        assertThat(pageableCaptor.getValue().getSort()).isEqualTo(Sort.by(Sort.Direction.DESC, "price"));
+    }
+
+    @Test
+    void testListBeersAfterCursor() throws Exception {
+        UUID lastId = UUID.randomUUID();
+
+        given(beerService.listBeersAfter(any(), any(), any(), anyInt(), anyBoolean()))
+                .willReturn(new SliceImpl<>(beerServiceImpl.listBeers()));
+
+        mockMvc.perform(get("/api/v1/beer")
+                .queryParam("beerStyle", BeerStyle.IPA.name())
+                .queryParam("after", "Mango Bobs, Reloaded," + lastId)
+                .queryParam("size", "10")
+                .queryParam("sort", "beerName,desc")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(3)));
+
+        verify(beerService).listBeersAfter(null, BeerStyle.IPA, new BeerCursor("Mango Bobs, Reloaded", lastId), 10, true);
+        verify(beerService, never()).listBeers(any(), any(), any(Pageable.class));
+    }
+
+    @Test
+    void testListBeersAfterInvalidCursor() throws Exception {
+        mockMvc.perform(get("/api/v1/beer")
+                .queryParam("after", "Mango Bobs")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/v1/beer")
+                .queryParam("after", "Mango Bobs," + UUID.randomUUID())
+                .queryParam("sort", "price")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testSearchBeers() throws Exception {
+        BeerDTO testBeer = beerServiceImpl.listBeers().get(0);
+
+        given(beerService.searchBeers(eq("galaxy"), any(Pageable.class))).willReturn(new PageImpl<>(List.of(testBeer)));
+
+        mockMvc.perform(get("/api/v1/beer/search")
+                .queryParam("q", "galaxy")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1)))
+                .andExpect(jsonPath("$[0].id", is(testBeer.getId().toString())));
+    }
+
+    @Test
+    void testChangesLongPoll() throws Exception {
+        BeerDTO testBeer = beerServiceImpl.listBeers().get(0);
+        BeerChange change = BeerChange.builder().sequence(8).type(BeerChange.Type.UPDATE)
+                .beerId(testBeer.getId()).beer(testBeer).build();
+
+        given(beerService.getChanges(7L, BeerController.MAX_CHANGES))
+                .willReturn(BeerChangeFeed.builder().lastSequence(7).changes(List.of()).build())
+                .willReturn(BeerChangeFeed.builder().lastSequence(8).changes(List.of(change)).build());
+        given(beerService.awaitChange(7L)).willReturn(CompletableFuture.completedFuture(null));
+
+        perform(get("/api/v1/beer/changes")
+                .queryParam("since", "7")
+                .queryParam("wait", "10")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lastSequence", is(8)))
+                .andExpect(jsonPath("$.changes[0].type", is("UPDATE")))
+                .andExpect(jsonPath("$.changes[0].beerId", is(testBeer.getId().toString())));
+    }
+
+    @Test
+    void testChangesExpired() throws Exception {
+        given(beerService.getChanges(eq(1L), anyInt())).willThrow(new ChangesExpiredException(1, 5, 20));
+
+        perform(get("/api/v1/beer/changes")
+                .queryParam("since", "1"))
+                .andExpect(status().isGone());
+    }
+
+    @Test
+    void testStreamBeersAsJsonArray() throws Exception {
+        List<BeerDTO> testBeers = beerServiceImpl.listBeers();
+
+        given(beerService.streamBeers()).willReturn(testBeers.stream());
+
+        MvcResult result = mockMvc.perform(get("/api/v1/beer")
+                .queryParam("stream", "true")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()", is(testBeers.size())));
+    }
+
+    @Test
+    void testStreamBeersAsNdjson() throws Exception {
+        List<BeerDTO> testBeers = beerServiceImpl.listBeers();
+
+        given(beerService.streamBeers()).willReturn(testBeers.stream());
+
+        MvcResult result = mockMvc.perform(get("/api/v1/beer")
+                .queryParam("stream", "true")
+                .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(testBeers.size());
+        assertThat(objectMapper.readValue(lines[0], BeerDTO.class)).isEqualTo(testBeers.get(0));
+    }
+
     @Test
     void testCreateBeer() throws Exception {
         UUID beerId = UUID.randomUUID();
@@ -107,6 +529,136 @@ class BeerControllerTest {
                 .andExpect(header().exists("Location"));
     }
 
+    @Test
+    void testCreateBeerRetriedWithIdempotencyKey() throws Exception {
+        BeerDTO testBeer = BeerDTO.builder().id(UUID.randomUUID()).beerName("TestPost").beerStyle(BeerStyle.IPA).build();
+        String body = objectMapper.writeValueAsString(BeerDTO.builder().beerName("TestPost").build());
+
+        given(beerService.saveNewBeer(any(BeerDTO.class))).willReturn(testBeer);
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/api/v1/beer")
+                    .header(IdempotentPosts.IDEMPOTENCY_KEY, "create-test-post")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(body))
+                    .andExpect(status().isCreated())
+                    .andExpect(header().string("Location", "/api/v1/beer/" + testBeer.getId()));
+        }
+
+        verify(beerService, times(1)).saveNewBeer(any(BeerDTO.class));
+    }
+
+    @Test
+    void testCreateBeerIdempotencyKeyReusedForAnotherBeer() throws Exception {
+        given(beerService.saveNewBeer(any(BeerDTO.class)))
+                .willReturn(BeerDTO.builder().id(UUID.randomUUID()).beerName("First").build());
+
+        mockMvc.perform(post("/api/v1/beer")
+                .header(IdempotentPosts.IDEMPOTENCY_KEY, "reused")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(BeerDTO.builder().beerName("First").build())))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(post("/api/v1/beer")
+                .header(IdempotentPosts.IDEMPOTENCY_KEY, "reused")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(BeerDTO.builder().beerName("Second").build())))
+                .andExpect(status().isUnprocessableEntity());
+
+        verify(beerService, times(1)).saveNewBeer(any(BeerDTO.class));
+    }
+
+    @Test
+    void testBatchImportNdjson() throws Exception {
+        BeerDTO first = BeerDTO.builder().beerName("First").upc("111").build();
+        BeerDTO second = BeerDTO.builder().beerName("Second").upc("222").build();
+
+        given(beerService.upsertBeers(any())).willReturn(List.of(
+                BeerBatchResult.builder().id(UUID.randomUUID()).upc("111").status(BeerBatchResult.Status.CREATED).build(),
+                BeerBatchResult.builder().id(UUID.randomUUID()).upc("222").status(BeerBatchResult.Status.UPDATED).build()));
+
+        mockMvc.perform(post("/api/v1/beer/batch")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(objectMapper.writeValueAsString(first) + "\n" + objectMapper.writeValueAsString(second) + "\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(2)))
+                .andExpect(jsonPath("$[1].status", is("UPDATED")));
+
+        verify(beerService).upsertBeers(List.of(first, second));
+    }
+
+    @Test
+    void testBatchImportCborSequence() throws Exception {
+        BeerDTO first = BeerDTO.builder().beerName("First").upc("111").price(new BigDecimal("9.99")).build();
+        BeerDTO second = BeerDTO.builder().beerName("Second").upc("222").build();
+        ObjectMapper cborMapper = cborConverter.getObjectMapper();
+
+        given(beerService.upsertBeers(any())).willReturn(List.of(
+                BeerBatchResult.builder().upc("111").status(BeerBatchResult.Status.CREATED).build(),
+                BeerBatchResult.builder().upc("222").status(BeerBatchResult.Status.CREATED).build()));
+
+        byte[] body = concat(cborMapper.writeValueAsBytes(first), cborMapper.writeValueAsBytes(second));
+
+        MvcResult result = mockMvc.perform(post("/api/v1/beer/batch")
+                .accept(MediaType.APPLICATION_CBOR)
+                .contentType(MediaType.APPLICATION_CBOR)
+                .content(body))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+
+        verify(beerService).upsertBeers(List.of(first, second));
+        assertThat(cborMapper.readValue(result.getResponse().getContentAsByteArray(), BeerBatchResult[].class))
+                .extracting(BeerBatchResult::getUpc)
+                .containsExactly("111", "222");
+    }
+
+    @Test
+    void testBatchImportJsonArrayInChunks() throws Exception {
+        List<BeerDTO> beers = new ArrayList<>();
+        for (int i = 0; i < BeerController.BATCH_CHUNK_SIZE + 1; i++) {
+            beers.add(BeerDTO.builder().beerName("Beer " + i).build());
+        }
+
+        given(beerService.upsertBeers(any())).willAnswer(invocation -> {
+            List<BeerDTO> chunk = invocation.getArgument(0);
+            return chunk.stream().map(beer -> BeerBatchResult.builder().status(BeerBatchResult.Status.CREATED).build()).toList();
+        });
+
+        mockMvc.perform(post("/api/v1/beer/batch")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(beers)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(beers.size())));
+
+        verify(beerService, times(2)).upsertBeers(any());
+    }
+
+    @Test
+    void testBatchImportStopsAtMalformedItem() throws Exception {
+        BeerDTO first = BeerDTO.builder().beerName("First").upc("111").build();
+        BeerDTO second = BeerDTO.builder().beerName("Second").upc("222").build();
+
+        given(beerService.upsertBeers(any())).willReturn(List.of(
+                BeerBatchResult.builder().upc("111").status(BeerBatchResult.Status.CREATED).build(),
+                BeerBatchResult.builder().upc("222").status(BeerBatchResult.Status.UPDATED).build()));
+
+        mockMvc.perform(post("/api/v1/beer/batch")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(objectMapper.writeValueAsString(first) + "\n" + objectMapper.writeValueAsString(second)
+                        + "\n{\"beerName\": }\n" + objectMapper.writeValueAsString(first) + "\n"))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.length()", is(3)))
+                .andExpect(jsonPath("$[1].status", is("UPDATED")))
+                .andExpect(jsonPath("$[2].status", is("FAILED")))
+                .andExpect(jsonPath("$[2].message", startsWith("Malformed beer at index 2")));
+
+        verify(beerService).upsertBeers(List.of(first, second));
+    }
+
     @Test
     void testUpdateBeer() throws Exception {
         UUID beerId = UUID.randomUUID();
@@ -126,6 +678,112 @@ class BeerControllerTest {
         assertThat(beerCaptor.getValue()).isEqualTo(testBeer);
     }
 
+    @Test
+    void testUpdateBeerIfMatch() throws Exception {
+        UUID beerId = UUID.randomUUID();
+        BeerDTO testBeer = BeerDTO.builder().id(beerId).beerName("TestPut").build();
+
+        mockMvc.perform(put("/api/v1/beer/" + beerId)
+                .header(HttpHeaders.IF_MATCH, "\"" + beerId + "-4\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(testBeer)))
+                .andExpect(status().isNoContent());
+
+        verify(beerService).updateBeerById(eq(beerId), beerCaptor.capture());
+        assertThat(beerCaptor.getValue().getVersion()).isEqualTo(4);
+    }
+
+    @Test
+    void testUpdateBeerIfMatchOfAnotherFormat() throws Exception {
+        UUID beerId = UUID.randomUUID();
+        BeerDTO testBeer = BeerDTO.builder().id(beerId).beerName("TestPut").build();
+
+        mockMvc.perform(put("/api/v1/beer/" + beerId)
+                .header(HttpHeaders.IF_MATCH, "\"" + beerId + "-4-cbor\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(testBeer)))
+                .andExpect(status().isNoContent());
+
+        verify(beerService).updateBeerById(eq(beerId), beerCaptor.capture());
+        assertThat(beerCaptor.getValue().getVersion()).isEqualTo(4);
+    }
+
+    @Test
+    void testGetBeersByIds() throws Exception {
+        List<BeerDTO> testBeers = beerServiceImpl.listBeers();
+        UUID missing = UUID.randomUUID();
+
+        given(beerService.getBeersByIds(any())).willReturn(Map.of(
+                testBeers.get(0).getId(), testBeers.get(0),
+                testBeers.get(1).getId(), testBeers.get(1)));
+
+        mockMvc.perform(post("/api/v1/beer/lookup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(
+                        testBeers.get(1).getId(), missing, testBeers.get(0).getId(), testBeers.get(1).getId()))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.found.length()", is(2)))
+                .andExpect(jsonPath("$.found[0].id", is(testBeers.get(1).getId().toString())))
+                .andExpect(jsonPath("$.found[1].id", is(testBeers.get(0).getId().toString())))
+                .andExpect(jsonPath("$.missing", contains(missing.toString())));
+
+        verify(beerService, times(1)).getBeersByIds(any());
+    }
+
+    @Test
+    void testGetBeersByIdsRejectsEmptyBatch() throws Exception {
+        mockMvc.perform(post("/api/v1/beer/lookup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testAdjustInventory() throws Exception {
+        BeerDTO testBeer = beerServiceImpl.listBeers().get(0);
+        BeerDTO adjusted = testBeer.toBuilder().quantityOnHand(testBeer.getQuantityOnHand() - 5).version(2).build();
+
+        given(beerService.adjustInventory(testBeer.getId(), -5)).willReturn(Optional.of(adjusted));
+
+        mockMvc.perform(post("/api/v1/beer/" + testBeer.getId() + "/inventory")
+                .queryParam("delta", "-5")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, ETags.of(adjusted, MediaType.APPLICATION_JSON)))
+                .andExpect(jsonPath("$.quantityOnHand", is(adjusted.getQuantityOnHand())));
+    }
+
+    @Test
+    void testAdjustInventoryBelowZero() throws Exception {
+        UUID beerId = UUID.randomUUID();
+
+        given(beerService.adjustInventory(beerId, -5)).willThrow(new InsufficientInventoryException(beerId, 3, -5));
+
+        mockMvc.perform(post("/api/v1/beer/" + beerId + "/inventory")
+                .queryParam("delta", "-5"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void testPatchBeerVersionConflict() throws Exception {
+        UUID beerId = UUID.randomUUID();
+
+        doThrow(new VersionConflictException(beerId, 1, 2)).when(beerService).patchBeerById(eq(beerId), any(BeerDTO.class));
+
+        mockMvc.perform(patch("/api/v1/beer/" + beerId)
+                .header(HttpHeaders.IF_MATCH, "\"" + beerId + "-1\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("beerName", "Patched"))))
+                .andExpect(status().isPreconditionFailed());
+
+        mockMvc.perform(patch("/api/v1/beer/" + beerId)
+                .header(HttpHeaders.IF_MATCH, "W/\"" + beerId + "-2\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("beerName", "Patched"))))
+                .andExpect(status().isPreconditionFailed());
+    }
+
     @Test
     void testDeleteBeer() throws Exception {
         UUID beerId = UUID.randomUUID();
@@ -165,4 +823,11 @@ class BeerControllerTest {
         assertThat(beerMap.get("beerName")).isEqualTo(beerCaptor.getValue().getBeerName());
     }
 
-}
\ No newline at end of file
+
+    static byte[] concat(byte[] first, byte[] second) {
+        byte[] both = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, both, first.length, second.length);
+
+        return both;
+    }
+}
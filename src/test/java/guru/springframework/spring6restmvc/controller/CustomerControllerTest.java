@@ -4,14 +4,18 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import guru.springframework.spring6restmvc.model.CustomerDTO;
 import guru.springframework.spring6restmvc.services.CustomerService;
 import guru.springframework.spring6restmvc.services.CustomerServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.*;
 
@@ -19,11 +23,13 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(CustomerController.class)
+@Import({BinaryFormatsConfig.class, ListResponseCache.class, IdempotentPosts.class})
 public class CustomerControllerTest {
 
     @Autowired
@@ -37,9 +43,19 @@ public class CustomerControllerTest {
 
     @Autowired
     ObjectMapper objectMapper;
+    @Autowired
+    ListResponseCache listResponseCache;
+    @Autowired
+    IdempotentPosts idempotentPosts;
 
     CustomerServiceImpl customerServiceImpl = new CustomerServiceImpl();
 
+    @BeforeEach
+    void setUp() {
+        listResponseCache.invalidateAll();
+        idempotentPosts.invalidateAll();
+    }
+
     @Test
     void getCustomerByIdNotFound() throws Exception {
 
@@ -49,6 +65,37 @@ public class CustomerControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void testGetCustomersByIds() throws Exception {
+        CustomerDTO customer = customerServiceImpl.getAllCustomers().get(0);
+        UUID missing = UUID.randomUUID();
+
+        given(customerService.getCustomersByIds(any())).willReturn(Map.of(customer.getId(), customer));
+
+        mockMvc.perform(post(CustomerController.CUSTOMERS_URI + "/lookup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(customer.getId(), missing))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.found[0].name", is(customer.getName())))
+                .andExpect(jsonPath("$.missing[0]", is(missing.toString())));
+    }
+
+    @Test
+    void testGetCustomerByIdProjectedFields() throws Exception {
+        CustomerDTO customer = customerServiceImpl.getAllCustomers().get(0);
+
+        given(customerService.getCustomerById(customer.getId())).willReturn(Optional.of(customer));
+
+        mockMvc.perform(get(CustomerController.CUSTOMER_URI_ID, customer.getId())
+                .queryParam("fields", "name")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is(customer.getName())))
+                .andExpect(jsonPath("$.id").doesNotExist())
+                .andExpect(jsonPath("$.createdDate").doesNotExist());
+    }
+
     @Test
     void testGetAllCustomers() throws Exception {
         List<CustomerDTO> customers = customerServiceImpl.getAllCustomers();
@@ -62,6 +109,63 @@ public class CustomerControllerTest {
                 .andExpect(jsonPath("$.length()", is(customers.size())));
     }
 
+    @Test
+    void testGetAllCustomersCachedUntilModified() throws Exception {
+        List<CustomerDTO> customers = customerServiceImpl.getAllCustomers();
+
+        given(customerService.getModificationCount()).willReturn(3L);
+        given(customerService.getAllCustomers()).willReturn(customers);
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get(CustomerController.CUSTOMERS_URI)
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()", is(customers.size())));
+        }
+        verify(customerService, times(1)).getAllCustomers();
+
+        // any write bumps the count
+        given(customerService.getModificationCount()).willReturn(4L);
+        given(customerService.getAllCustomers()).willReturn(customers.subList(1, customers.size()));
+
+        mockMvc.perform(get(CustomerController.CUSTOMERS_URI)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(customers.size() - 1)));
+    }
+
+    @Test
+    void testGetCustomerByIdNotModified() throws Exception {
+        UUID customerId = UUID.randomUUID();
+        CustomerDTO customer = CustomerDTO.builder().id(customerId).version(2).name("TestEtag").build();
+
+        given(customerService.getCustomerById(customerId)).willReturn(Optional.of(customer));
+
+        mockMvc.perform(get(CustomerController.CUSTOMER_URI_ID, customerId)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + customerId + "-2\"")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void testStreamAllCustomers() throws Exception {
+        List<CustomerDTO> customers = customerServiceImpl.getAllCustomers();
+
+        given(customerService.streamAllCustomers()).willReturn(customers.stream());
+
+        MvcResult result = mockMvc.perform(get(CustomerController.CUSTOMERS_URI)
+                .queryParam("stream", "true")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()", is(customers.size())))
+                .andExpect(jsonPath("$[0].name", is(customers.get(0).getName())));
+    }
+
     @Test
     void testGetCustomerById() throws Exception {
         UUID customerId = UUID.randomUUID();
@@ -93,6 +197,25 @@ public class CustomerControllerTest {
 
     }
 
+    @Test
+    void testPostCustomerRetriedWithIdempotencyKey() throws Exception {
+        CustomerDTO customer = CustomerDTO.builder().id(UUID.randomUUID()).name("TestPost").build();
+        String body = objectMapper.writeValueAsString(CustomerDTO.builder().name("TestPost").build());
+
+        given(customerService.saveNewCustomer(any())).willReturn(customer);
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post(CustomerController.CUSTOMERS_URI)
+                    .header(IdempotentPosts.IDEMPOTENCY_KEY, "create-test-post")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(body))
+                    .andExpect(status().isCreated())
+                    .andExpect(header().string("Location", "/api/v1/customer/" + customer.getId()));
+        }
+
+        verify(customerService, times(1)).saveNewCustomer(any());
+    }
+
     @Test
     void testPutCustomer() throws Exception {
         UUID customerId = UUID.randomUUID();
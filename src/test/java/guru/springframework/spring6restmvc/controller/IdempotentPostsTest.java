@@ -0,0 +1,96 @@
+package guru.springframework.spring6restmvc.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotentPostsTest {
+
+    IdempotentPosts idempotentPosts = new IdempotentPosts(1000, Duration.ofMinutes(1));
+    AtomicInteger executions = new AtomicInteger();
+
+    CompletableFuture<ResponseEntity<Void>> created() {
+        executions.incrementAndGet();
+
+        return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.CREATED));
+    }
+
+    @Test
+    void testConcurrentDuplicatesShareOneExecution() throws Exception {
+        CompletableFuture<ResponseEntity<Void>> inFlight = new CompletableFuture<>();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<CompletableFuture<ResponseEntity<Void>>>> responses = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            responses.add(executor.submit(() -> {
+                start.await();
+
+                return idempotentPosts.execute("beer", "key", "body", () -> {
+                    executions.incrementAndGet();
+                    return inFlight;
+                });
+            }));
+        }
+        start.countDown();
+
+        List<CompletableFuture<ResponseEntity<Void>>> pending = new ArrayList<>();
+        for (Future<CompletableFuture<ResponseEntity<Void>>> response : responses) {
+            pending.add(response.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertThat(pending).noneMatch(CompletableFuture::isDone);
+
+        inFlight.complete(new ResponseEntity<>(HttpStatus.CREATED));
+
+        assertThat(pending).allMatch(response -> response.join().getStatusCode() == HttpStatus.CREATED);
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void testFailedExecutionIsRunAgain() {
+        CompletableFuture<ResponseEntity<Void>> failed = idempotentPosts.execute("beer", "key", "body",
+                () -> CompletableFuture.failedFuture(new IllegalStateException("store down")));
+        assertThat(failed).isCompletedExceptionally();
+
+        idempotentPosts.execute("beer", "key", "body", this::created).join();
+        idempotentPosts.execute("beer", "key", "body", this::created).join();
+
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void testKeysArePerResource() {
+        idempotentPosts.execute("beer", "key", "body", this::created).join();
+        idempotentPosts.execute("customer", "key", "body", this::created).join();
+        idempotentPosts.execute("beer", null, "body", this::created).join();
+
+        assertThat(executions).hasValue(3);
+    }
+
+    @Test
+    void testInvalidKeys() {
+        for (String key : new String[]{" ", "k".repeat(IdempotentPosts.MAX_KEY_LENGTH + 1)}) {
+            assertThatThrownBy(() -> idempotentPosts.execute("beer", key, "body", this::created))
+                    .isInstanceOf(ResponseStatusException.class);
+        }
+
+        assertThat(executions).hasValue(0);
+    }
+}
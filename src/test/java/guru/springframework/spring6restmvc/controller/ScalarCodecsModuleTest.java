@@ -0,0 +1,92 @@
+package guru.springframework.spring6restmvc.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ScalarCodecsModuleTest {
+
+    ObjectMapper standard = Jackson2ObjectMapperBuilder.json().build();
+    ObjectMapper fast = Jackson2ObjectMapperBuilder.json().modulesToInstall(new ScalarCodecsModule()).build();
+
+    @Test
+    void testWritesWhatStandardSerializersWrite() throws Exception {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 10_000; i++) {
+            BeerDTO beer = BeerDTO.builder()
+                    .id(new UUID(random.nextLong(), random.nextLong()))
+                    .version(1)
+                    .beerName("Beer " + i)
+                    .beerStyle(BeerStyle.IPA)
+                    .price(BigDecimal.valueOf(random.nextLong() % 1_000_000_000_000L, random.nextInt(8)))
+                    .createdDate(LocalDateTime.of(random.nextInt(3000), 1 + random.nextInt(12), 1 + random.nextInt(28),
+                            random.nextInt(24), random.nextInt(60), random.nextInt(60),
+                            random.nextBoolean() ? 0 : random.nextInt(1_000_000_000)))
+                    .updateDate(LocalDateTime.of(2024, 5, 1, 12, 0))
+                    .build();
+
+            String json = fast.writeValueAsString(beer);
+            assertThat(json).isEqualTo(standard.writeValueAsString(beer));
+            assertThat(fast.readValue(json, BeerDTO.class)).isEqualTo(beer);
+        }
+    }
+
+    @Test
+    void testDecimalsOffTheFastPath() throws Exception {
+        for (String price : new String[]{"0.00", "-0.05", "1E+3", "0.0000001", "0.000001", "123456789012345.6",
+                "99999999999999.9", "12345678901234567890.12", "1E-20"}) {
+            BeerDTO beer = BeerDTO.builder().price(new BigDecimal(price)).build();
+
+            assertThat(fast.writeValueAsString(beer)).isEqualTo(standard.writeValueAsString(beer));
+        }
+    }
+
+    @Test
+    void testReadsWhatStandardDeserializersRead() throws Exception {
+        String json = """
+                {"id":"0C5D1E6A-2B3F-4A5B-9C8D-7E6F5A4B3C2D","createdDate":"2024-05-01T12:30",
+                 "updateDate":"2024-05-01T12:30:15.5Z"}""";
+
+        BeerDTO beer = fast.readValue(json, BeerDTO.class);
+
+        assertThat(beer).isEqualTo(standard.readValue(json, BeerDTO.class));
+        assertThat(beer.getId()).isEqualTo(UUID.fromString("0c5d1e6a-2b3f-4a5b-9c8d-7e6f5a4b3c2d"));
+        assertThat(beer.getCreatedDate()).isEqualTo(LocalDateTime.of(2024, 5, 1, 12, 30));
+    }
+
+    @Test
+    void testInvalidValuesFailLikeStandardDeserializers() {
+        for (String json : new String[]{"{\"id\":\"0c5d1e6a-2b3f-4a5b-9c8d-7e6f5a4b3c2g\"}",
+                "{\"createdDate\":\"2024-02-30T12:00:00\"}"}) {
+            assertThatThrownBy(() -> standard.readValue(json, BeerDTO.class));
+            assertThatThrownBy(() -> fast.readValue(json, BeerDTO.class));
+        }
+    }
+
+    @Test
+    void testBinaryFormatsAreUnchanged() throws Exception {
+        BeerDTO beer = BeerDTO.builder()
+                .id(UUID.randomUUID())
+                .price(new BigDecimal("12.99"))
+                .createdDate(LocalDateTime.now())
+                .build();
+
+        ObjectMapper cbor = BinaryFormatsConfig.binaryMapper(Jackson2ObjectMapperBuilder.json(), new CBORFactory());
+        ObjectMapper fastCbor = BinaryFormatsConfig.binaryMapper(
+                Jackson2ObjectMapperBuilder.json().modulesToInstall(new ScalarCodecsModule()), new CBORFactory());
+
+        assertThat(fastCbor.writeValueAsBytes(beer)).isEqualTo(cbor.writeValueAsBytes(beer));
+    }
+}
@@ -0,0 +1,362 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.BeerBatchResult;
+import guru.springframework.spring6restmvc.model.BeerChange;
+import guru.springframework.spring6restmvc.model.BeerChangeFeed;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BeerServiceImplTest {
+
+    BeerServiceImpl beerService;
+
+    @BeforeEach
+    void setUp() {
+        beerService = new BeerServiceImpl();
+
+        for (int i = 0; i < 50; i++) {
+            beerService.saveNewBeer(BeerDTO.builder()
+                    .beerName(String.format("Test Beer %02d", i))
+                    .beerStyle(i % 2 == 0 ? BeerStyle.STOUT : BeerStyle.GOSE)
+                    .price(new BigDecimal(i))
+                    .build());
+        }
+    }
+
+    @Test
+    void testListBeersPageSortedByName() {
+        Slice<BeerDTO> page = beerService.listBeers(null, null, PageRequest.of(1, 10, Sort.by("beerName")));
+
+        assertThat(page.getContent()).hasSize(10);
+        assertThat(page.getContent().get(0).getBeerName()).isEqualTo("Test Beer 07");
+        assertThat(page.hasNext()).isTrue();
+    }
+
+    @Test
+    void testListBeersLastPage() {
+        // 53 beers, with the three the service starts with
+        Slice<BeerDTO> page = beerService.listBeers(null, null, PageRequest.of(5, 10, Sort.by("beerName")));
+
+        assertThat(page.getContent()).hasSize(3);
+        assertThat(page.hasNext()).isFalse();
+        assertThat(beerService.listBeers(null, null, PageRequest.of(4, 13)).hasNext()).isFalse();
+        assertThat(beerService.listBeers(null, null, PageRequest.of(3, 13)).hasNext()).isTrue();
+    }
+
+    @Test
+    void testListBeersByStyleAndNamePrefix() {
+        Slice<BeerDTO> page = beerService.listBeers("test beer 1", BeerStyle.STOUT,
+                PageRequest.of(0, 25, Sort.by(Sort.Direction.DESC, "beerName")));
+
+        assertThat(page.getContent()).extracting(BeerDTO::getBeerName)
+                .containsExactly("Test Beer 18", "Test Beer 16", "Test Beer 14", "Test Beer 12", "Test Beer 10");
+    }
+
+    @Test
+    void testListBeersSortedByPrice() {
+        Slice<BeerDTO> page = beerService.listBeers(null, BeerStyle.GOSE,
+                PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "price")));
+
+        assertThat(page.getContent()).extracting(BeerDTO::getPrice)
+                .containsExactly(new BigDecimal(49), new BigDecimal(47), new BigDecimal(45));
+        assertThat(page.hasNext()).isTrue();
+        assertThat(beerService.listBeers(null, BeerStyle.GOSE,
+                PageRequest.of(8, 3, Sort.by(Sort.Direction.DESC, "price"))).hasNext()).isFalse();
+    }
+
+    @Test
+    void testListBeersAfterCursor() {
+        Slice<BeerDTO> first = beerService.listBeersAfter("test", BeerStyle.GOSE, null, 10, true);
+        assertThat(first.getContent().get(0).getBeerName()).isEqualTo("Test Beer 49");
+
+        // renamed to sort before the cursor, it must not come up again
+        BeerDTO last = first.getContent().get(9);
+        beerService.patchBeerById(first.getContent().get(0).getId(), BeerDTO.builder().beerName("Test Beer 99").build());
+
+        Slice<BeerDTO> next = beerService.listBeersAfter("test", BeerStyle.GOSE, BeerCursor.after(last), 10, true);
+        assertThat(next.getContent()).extracting(BeerDTO::getBeerName)
+                .startsWith("Test Beer 29", "Test Beer 27")
+                .hasSize(10);
+        assertThat(next.hasNext()).isTrue();
+        assertThat(beerService.listBeersAfter("test", BeerStyle.GOSE, BeerCursor.after(next.getContent().get(9)), 10,
+                true).getContent()).extracting(BeerDTO::getBeerName).endsWith("Test Beer 01").hasSize(5);
+    }
+
+    @Test
+    void testListBeersFollowsUpdates() {
+        BeerDTO beer = beerService.listBeers("test beer 00", null, PageRequest.of(0, 1)).getContent().get(0);
+
+        beerService.patchBeerById(beer.getId(), BeerDTO.builder().beerName("Renamed").beerStyle(BeerStyle.IPA).build());
+
+        assertThat(beerService.listBeers("test beer 00", null, PageRequest.of(0, 10)).getContent()).isEmpty();
+        assertThat(beerService.listBeers("renamed", BeerStyle.IPA, PageRequest.of(0, 10)).getContent())
+                .extracting(BeerDTO::getId).containsExactly(beer.getId());
+
+        beerService.deleteById(beer.getId());
+
+        assertThat(beerService.listBeers("renamed", null, PageRequest.of(0, 10)).getContent()).isEmpty();
+    }
+
+    @Test
+    void testWriteIsCountedOnlyOnceListed() throws Exception {
+        VersionedStore<BeerDTO> store = new VersionedStore<>();
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // registered before the service's indexes, holds the write before they see it
+        store.addListener((previous, current) -> {
+            if (current != null && "Held".equals(current.getBeerName())) {
+                writing.countDown();
+                awaitUninterruptibly(release);
+            }
+        });
+        BeerServiceImpl beerService = new BeerServiceImpl(store);
+        long count = beerService.getModificationCount();
+
+        CompletableFuture<BeerDTO> saved = CompletableFuture.supplyAsync(
+                () -> beerService.saveNewBeer(BeerDTO.builder().beerName("Held").build()));
+        writing.await();
+
+        // an ETag built from this count validates the page read after it, the page must not lack a counted write
+        assertThat(beerService.getModificationCount()).isEqualTo(count);
+        assertThat(beerService.listBeers("held", null, PageRequest.of(0, 10)).getContent()).isEmpty();
+
+        release.countDown();
+        saved.join();
+
+        assertThat(beerService.getModificationCount()).isEqualTo(count + 1);
+        assertThat(beerService.listBeers("held", null, PageRequest.of(0, 10)).getContent()).hasSize(1);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void testUpsertBeersFindsBeerSharingItsUpc() {
+        BeerDTO first = beerService.saveNewBeer(BeerDTO.builder().beerName("First").upc("shared").build());
+        BeerDTO second = beerService.saveNewBeer(BeerDTO.builder().beerName("Second").upc("shared").build());
+        BeerDTO third = beerService.saveNewBeer(BeerDTO.builder().beerName("Third").upc("shared").build());
+
+        // neither losing the upc nor being deleted takes the others off the upc
+        beerService.patchBeerById(third.getId(), BeerDTO.builder().upc("other").build());
+        beerService.deleteById(second.getId());
+        List<BeerBatchResult> results = beerService.upsertBeers(List.of(
+                BeerDTO.builder().beerName("Upserted").upc("shared").build()));
+
+        assertThat(results).extracting(BeerBatchResult::getStatus).containsExactly(BeerBatchResult.Status.UPDATED);
+        assertThat(results.get(0).getId()).isEqualTo(first.getId());
+        assertThat(beerService.getBeerById(first.getId()).orElseThrow().getBeerName()).isEqualTo("Upserted");
+    }
+
+    @Test
+    void testUpsertBeersByIdAndUpc() {
+        BeerDTO existing = beerService.saveNewBeer(BeerDTO.builder().beerName("Old Name").upc("upc-1").build());
+        UUID newId = UUID.randomUUID();
+
+        List<BeerBatchResult> results = beerService.upsertBeers(List.of(
+                BeerDTO.builder().beerName("By Upc").upc("upc-1").build(),
+                BeerDTO.builder().id(newId).beerName("New With Id").upc("upc-2").build(),
+                BeerDTO.builder().beerName("New").upc("upc-3").build()));
+
+        assertThat(results).extracting(BeerBatchResult::getStatus).containsExactly(
+                BeerBatchResult.Status.UPDATED, BeerBatchResult.Status.CREATED, BeerBatchResult.Status.CREATED);
+        assertThat(results.get(0).getId()).isEqualTo(existing.getId());
+        assertThat(results.get(1).getId()).isEqualTo(newId);
+
+        BeerDTO updated = beerService.getBeerById(existing.getId()).orElseThrow();
+        assertThat(updated.getBeerName()).isEqualTo("By Upc");
+        assertThat(updated.getVersion()).isEqualTo(2);
+        assertThat(beerService.getBeerById(newId)).isPresent();
+    }
+
+    @Test
+    void testConditionalUpdate() {
+        BeerDTO beer = beerService.saveNewBeer(BeerDTO.builder().beerName("Conditional").build());
+        long modificationCount = beerService.getModificationCount();
+
+        beerService.updateBeerById(beer.getId(), BeerDTO.builder().beerName("First").version(1).build());
+
+        assertThatThrownBy(() -> beerService.updateBeerById(beer.getId(),
+                BeerDTO.builder().beerName("Stale").version(1).build()))
+                .isInstanceOf(VersionConflictException.class);
+        assertThat(beerService.getBeerById(beer.getId()).orElseThrow().getBeerName()).isEqualTo("First");
+        assertThat(beerService.getModificationCount()).isEqualTo(modificationCount + 1);
+    }
+
+    @Test
+    void testMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        beerService.bindTo(registry);
+
+        beerService.listBeers(null, BeerStyle.GOSE, PageRequest.of(0, 10));
+        beerService.upsertBeers(List.of(BeerDTO.builder().beerName("New").build()));
+
+        assertThat(registry.get("beer.store.size").gauge().value()).isEqualTo(54);
+        assertThat(registry.get("beer.index.size").tag("index", "GOSE").gauge().value()).isEqualTo(25);
+        assertThat(registry.get("beer.list.page.size").summary().totalAmount()).isEqualTo(10);
+        assertThat(registry.get("beer.batch.results").tag("status", "CREATED").counter().count()).isEqualTo(1);
+        assertThat(registry.get("beer.store.writes").functionCounter().count()).isEqualTo(54);
+    }
+
+    @Test
+    void testSearchRanksExactAbovePrefixAboveFuzzy() {
+        beerService.saveNewBeer(BeerDTO.builder().beerName("Hoppy Lager").upc("987001").build());
+        beerService.saveNewBeer(BeerDTO.builder().beerName("Hopscotch Ale").upc("987002").build());
+        beerService.saveNewBeer(BeerDTO.builder().beerName("Happy Hour").upc("555").build());
+
+        assertThat(beerService.searchBeers("hop lager", PageRequest.of(0, 10)).getContent())
+                .extracting(BeerDTO::getBeerName)
+                .containsExactly("Hoppy Lager", "Hopscotch Ale");
+        assertThat(beerService.searchBeers("hapy", PageRequest.of(0, 10)).getContent())
+                .extracting(BeerDTO::getBeerName)
+                .containsExactly("Happy Hour");
+        assertThat(beerService.searchBeers("hoppi ale", PageRequest.of(0, 10)).getContent())
+                .extracting(BeerDTO::getBeerName)
+                .containsExactly("Hopscotch Ale", "Hoppy Lager");
+        assertThat(beerService.searchBeers("98700", PageRequest.of(0, 10)).getTotalElements()).isEqualTo(2);
+    }
+
+    @Test
+    void testSearchFollowsWrites() {
+        BeerDTO saved = beerService.saveNewBeer(BeerDTO.builder().beerName("Midnight Porter").build());
+
+        beerService.patchBeerById(saved.getId(), BeerDTO.builder().beerName("Dawn Porter").build());
+        assertThat(beerService.searchBeers("midnight", PageRequest.of(0, 10))).isEmpty();
+        assertThat(beerService.searchBeers("dawn", PageRequest.of(0, 10)).getContent())
+                .extracting(BeerDTO::getId).containsExactly(saved.getId());
+
+        beerService.deleteById(saved.getId());
+        assertThat(beerService.searchBeers("dawn porter", PageRequest.of(0, 10))).isEmpty();
+    }
+
+    @Test
+    void testSearchPages() {
+        Page<BeerDTO> page = beerService.searchBeers("test", PageRequest.of(2, 20));
+
+        assertThat(page.getContent()).hasSize(10);
+        assertThat(page.getTotalElements()).isEqualTo(50);
+    }
+
+    @Test
+    void testChangesSince() {
+        long since = beerService.getChanges(null, 10).getLastSequence();
+
+        BeerDTO saved = beerService.saveNewBeer(BeerDTO.builder().beerName("Change Ale").build());
+        beerService.patchBeerById(saved.getId(), BeerDTO.builder().price(new BigDecimal("4.50")).build());
+        beerService.deleteById(saved.getId());
+
+        BeerChangeFeed feed = beerService.getChanges(since, 10);
+
+        assertThat(feed.getLastSequence()).isEqualTo(since + 3);
+        assertThat(feed.getChanges()).extracting(BeerChange::getType)
+                .containsExactly(BeerChange.Type.INSERT, BeerChange.Type.UPDATE, BeerChange.Type.DELETE);
+        assertThat(feed.getChanges()).extracting(BeerChange::getBeerId).containsOnly(saved.getId());
+        assertThat(feed.getChanges().get(1).getBeer().getPrice()).isEqualTo(new BigDecimal("4.50"));
+
+        assertThat(beerService.getChanges(since, 2).getChanges()).hasSize(2);
+        assertThat(beerService.getChanges(feed.getLastSequence(), 10).getChanges()).isEmpty();
+    }
+
+    @Test
+    void testChangesExpire() {
+        BeerChangeLog changeLog = new BeerChangeLog(4);
+
+        for (int i = 0; i < 6; i++) {
+            changeLog.onWrite(null, BeerDTO.builder().id(UUID.randomUUID()).build());
+        }
+
+        assertThat(changeLog.changesSince(2L, 10).getChanges()).extracting(BeerChange::getSequence)
+                .containsExactly(3L, 4L, 5L, 6L);
+        assertThatThrownBy(() -> changeLog.changesSince(1L, 10)).isInstanceOf(ChangesExpiredException.class);
+        assertThatThrownBy(() -> changeLog.changesSince(7L, 10)).isInstanceOf(ChangesExpiredException.class);
+    }
+
+    @Test
+    void testAwaitChange() {
+        long since = beerService.getChanges(null, 10).getLastSequence();
+
+        CompletableFuture<Void> change = beerService.awaitChange(since);
+        assertThat(change).isNotDone();
+        assertThat(beerService.awaitChange(since - 1)).isDone();
+
+        beerService.saveNewBeer(BeerDTO.builder().beerName("Wake Up Lager").build());
+
+        assertThat(change).succeedsWithin(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void testAbandonedWaitsAreReleased() {
+        BeerChangeLog changeLog = new BeerChangeLog(4);
+
+        for (int i = 0; i < 1000; i++) {
+            CompletableFuture<Void> change = changeLog.awaitChange(0);
+            // what completeOnTimeout does, and a client going away
+            if (i % 2 == 0) {
+                change.complete(null);
+            } else {
+                change.cancel(false);
+            }
+        }
+        CompletableFuture<Void> pending = changeLog.awaitChange(0);
+
+        assertThat(changeLog.waiting()).isEqualTo(1);
+
+        changeLog.onWrite(null, BeerDTO.builder().id(UUID.randomUUID()).build());
+
+        assertThat(pending).succeedsWithin(Duration.ofSeconds(1));
+        assertThat(changeLog.waiting()).isZero();
+    }
+
+    @Test
+    void testAdjustInventory() {
+        BeerDTO saved = beerService.saveNewBeer(BeerDTO.builder().beerName("Stock Ale").quantityOnHand(10).build());
+
+        assertThat(beerService.adjustInventory(saved.getId(), -4)).get()
+                .extracting(BeerDTO::getQuantityOnHand).isEqualTo(6);
+        assertThatThrownBy(() -> beerService.adjustInventory(saved.getId(), -7))
+                .isInstanceOf(InsufficientInventoryException.class);
+        assertThat(beerService.getBeerById(saved.getId()).get().getQuantityOnHand()).isEqualTo(6);
+        assertThat(beerService.adjustInventory(UUID.randomUUID(), 1)).isEmpty();
+    }
+
+    @Test
+    void testConcurrentInventoryAdjustmentsAreNotLost() throws Exception {
+        BeerDTO saved = beerService.saveNewBeer(BeerDTO.builder().beerName("Hot Sku").quantityOnHand(0).build());
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            for (int i = 0; i < 4; i++) {
+                executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        beerService.adjustInventory(saved.getId(), 2);
+                        beerService.adjustInventory(saved.getId(), -1);
+                    }
+                });
+            }
+        }
+
+        assertThat(beerService.getBeerById(saved.getId()).get().getQuantityOnHand()).isEqualTo(4000);
+    }
+}
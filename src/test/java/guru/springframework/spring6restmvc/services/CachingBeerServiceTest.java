@@ -0,0 +1,129 @@
+package guru.springframework.spring6restmvc.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachingBeerServiceTest {
+
+    BeerServiceImpl beerServiceImpl;
+    Cache<UUID, BeerDTO> cache;
+    CachingBeerService beerService;
+
+    @BeforeEach
+    void setUp() {
+        beerServiceImpl = new BeerServiceImpl();
+        cache = Caffeine.newBuilder()
+                .maximumWeight(1024 * 1024)
+                .weigher(CachingBeerService::weigh)
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+        beerService = new CachingBeerService(beerServiceImpl, cache);
+    }
+
+    @Test
+    void testReadsAreServedFromCache() {
+        UUID beerId = beerServiceImpl.listBeers().get(0).getId();
+
+        beerService.getBeerById(beerId);
+        beerService.getBeerById(beerId);
+
+        assertThat(cache.stats().missCount()).isEqualTo(1);
+        assertThat(cache.stats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testBatchLookupOnlyLoadsMisses() {
+        List<UUID> beerIds = beerServiceImpl.listBeers().stream().map(BeerDTO::getId).toList();
+        UUID missing = UUID.randomUUID();
+
+        beerService.getBeerById(beerIds.get(0));
+
+        assertThat(beerService.getBeersByIds(List.of(beerIds.get(0), beerIds.get(1), missing)))
+                .containsOnlyKeys(beerIds.get(0), beerIds.get(1));
+        assertThat(cache.stats().hitCount()).isEqualTo(1);
+        // batch loads do not fill the cache
+        assertThat(cache.asMap()).containsOnlyKeys(beerIds.get(0));
+    }
+
+    @Test
+    void testWriteDuringBatchLookupIsNotOverwritten() throws Exception {
+        CountDownLatch loaded = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(1);
+        BeerServiceImpl slowBatches = new BeerServiceImpl() {
+            @Override
+            public Map<UUID, BeerDTO> getBeersByIds(Collection<UUID> ids) {
+                Map<UUID, BeerDTO> found = super.getBeersByIds(ids);
+                loaded.countDown();
+                try {
+                    written.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                return found;
+            }
+        };
+        CachingBeerService cachingService = new CachingBeerService(slowBatches, cache);
+        UUID beerId = slowBatches.listBeers().get(0).getId();
+
+        CompletableFuture<Map<UUID, BeerDTO>> lookup =
+                CompletableFuture.supplyAsync(() -> cachingService.getBeersByIds(List.of(beerId)));
+        assertThat(loaded.await(10, TimeUnit.SECONDS)).isTrue();
+
+        cachingService.patchBeerById(beerId, BeerDTO.builder().beerName("Patched").build());
+        written.countDown();
+
+        // the lookup read the beer before the patch, it must not end up in the cache
+        assertThat(lookup.get(10, TimeUnit.SECONDS).get(beerId).getBeerName()).isNotEqualTo("Patched");
+        assertThat(cachingService.getBeerById(beerId).orElseThrow().getBeerName()).isEqualTo("Patched");
+    }
+
+    @Test
+    void testMissingBeerIsNotCached() {
+        assertThat(beerService.getBeerById(UUID.randomUUID())).isEmpty();
+        assertThat(cache.estimatedSize()).isZero();
+    }
+
+    @Test
+    void testWritesInvalidate() {
+        BeerDTO saved = beerService.saveNewBeer(BeerDTO.builder().beerName("Cached").build());
+        assertThat(cache.getIfPresent(saved.getId())).isEqualTo(saved);
+
+        beerService.patchBeerById(saved.getId(), BeerDTO.builder().beerName("Patched").build());
+        assertThat(beerService.getBeerById(saved.getId()).orElseThrow().getBeerName()).isEqualTo("Patched");
+
+        assertThatThrownBy(() -> beerService.updateBeerById(saved.getId(), BeerDTO.builder().version(1).build()))
+                .isInstanceOf(VersionConflictException.class);
+        assertThat(cache.getIfPresent(saved.getId())).isNull();
+
+        beerService.getBeerById(saved.getId());
+        beerService.deleteById(saved.getId());
+        assertThat(beerService.getBeerById(saved.getId())).isEmpty();
+    }
+
+    @Test
+    void testEvictsBeyondMaximumWeight() {
+        for (int i = 0; i < 10_000; i++) {
+            beerService.saveNewBeer(BeerDTO.builder().beerName("Beer " + i).upc(String.valueOf(i)).build());
+        }
+        cache.cleanUp();
+
+        assertThat(cache.policy().eviction().orElseThrow().weightedSize().orElseThrow()).isLessThanOrEqualTo(1024 * 1024);
+        assertThat(cache.stats().evictionCount()).isPositive();
+    }
+}
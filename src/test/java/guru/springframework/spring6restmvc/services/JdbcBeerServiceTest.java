@@ -0,0 +1,375 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.BeerBatchResult;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JdbcBeerServiceTest {
+
+    EmbeddedDatabase database;
+    JdbcBeerService beerService;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("db/beer-schema.sql")
+                .build();
+        beerService = newService();
+
+        for (int i = 0; i < 50; i++) {
+            beerService.saveNewBeer(BeerDTO.builder()
+                    .beerName(String.format("Test Beer %02d", i))
+                    .beerStyle(i % 2 == 0 ? BeerStyle.STOUT : BeerStyle.GOSE)
+                    .upc("upc-" + i)
+                    .price(BigDecimal.valueOf(i, 2))
+                    .build());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        beerService.close();
+        database.shutdown();
+    }
+
+    JdbcBeerService newService() {
+        return new JdbcBeerService(new NamedParameterJdbcTemplate(database),
+                new DataSourceTransactionManager(database), JdbcBeerService.DEFAULT_BATCH_SIZE);
+    }
+
+    @Test
+    void testSaveAndGetBeer() {
+        BeerDTO saved = beerService.saveNewBeer(BeerDTO.builder()
+                .beerName("Crank")
+                .beerStyle(BeerStyle.PALE_ALE)
+                .upc("8380495518")
+                .quantityOnHand(12)
+                .price(new BigDecimal("10.99"))
+                .build());
+
+        BeerDTO found = beerService.getBeerById(saved.getId()).orElseThrow();
+        assertThat(found.getVersion()).isEqualTo(1);
+        assertThat(found.getBeerName()).isEqualTo("Crank");
+        assertThat(found.getBeerStyle()).isEqualTo(BeerStyle.PALE_ALE);
+        assertThat(found.getQuantityOnHand()).isEqualTo(12);
+        assertThat(found.getPrice()).isEqualByComparingTo("10.99");
+        assertThat(found.getCreatedDate()).isNotNull();
+    }
+
+    @Test
+    void testDuplicateUpcIsRejected() {
+        assertThatThrownBy(() -> beerService.saveNewBeer(BeerDTO.builder().beerName("Copy").upc("upc-7").build()))
+                .isInstanceOf(DuplicateKeyException.class);
+
+        assertThat(beerService.listBeers()).hasSize(50);
+    }
+
+    @Test
+    void testUpdateChecksVersion() {
+        BeerDTO beer = beerService.listBeers("test beer 03", null, PageRequest.of(0, 1)).getContent().get(0);
+
+        beerService.updateBeerById(beer.getId(), beer.toBuilder().beerName("Renamed").build());
+        BeerDTO updated = beerService.getBeerById(beer.getId()).orElseThrow();
+        assertThat(updated.getVersion()).isEqualTo(2);
+        assertThat(updated.getBeerName()).isEqualTo("Renamed");
+
+        // still version 1
+        assertThatThrownBy(() -> beerService.patchBeerById(beer.getId(), BeerDTO.builder().version(1).upc("x").build()))
+                .isInstanceOf(VersionConflictException.class);
+        assertThat(beerService.getBeerById(beer.getId()).orElseThrow().getUpc()).isEqualTo("upc-3");
+    }
+
+    @Test
+    void testConcurrentInventoryAdjustmentsAreNotLost() throws Exception {
+        UUID beerId = beerService.listBeers().get(0).getId();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            List<CompletableFuture<?>> adjustments = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                adjustments.add(CompletableFuture.runAsync(() -> beerService.adjustInventory(beerId, 1), executor));
+            }
+            CompletableFuture.allOf(adjustments.toArray(CompletableFuture[]::new)).join();
+        }
+
+        BeerDTO beer = beerService.getBeerById(beerId).orElseThrow();
+        assertThat(beer.getQuantityOnHand()).isEqualTo(200);
+        assertThat(beer.getVersion()).isEqualTo(201);
+        assertThatThrownBy(() -> beerService.adjustInventory(beerId, -201))
+                .isInstanceOf(InsufficientInventoryException.class);
+    }
+
+    @Test
+    void testDeleteBeer() {
+        UUID beerId = beerService.listBeers().get(0).getId();
+
+        beerService.deleteById(beerId);
+
+        assertThat(beerService.getBeerById(beerId)).isEmpty();
+        assertThat(beerService.searchBeers("test beer", PageRequest.of(0, 100)).getTotalElements()).isEqualTo(49);
+    }
+
+    @Test
+    void testListBeersPageSortedByName() {
+        Slice<BeerDTO> page = beerService.listBeers(null, null, PageRequest.of(1, 10, Sort.by("beerName")));
+
+        assertThat(page.getContent()).hasSize(10);
+        assertThat(page.getContent().get(0).getBeerName()).isEqualTo("Test Beer 10");
+        assertThat(page.hasNext()).isTrue();
+        assertThat(beerService.listBeers(null, null, PageRequest.of(4, 10, Sort.by("beerName"))).hasNext()).isFalse();
+    }
+
+    @Test
+    void testListBeersByStyleAndNamePrefix() {
+        Slice<BeerDTO> page = beerService.listBeers("test beer 1", BeerStyle.STOUT,
+                PageRequest.of(0, 25, Sort.by(Sort.Direction.DESC, "beerName")));
+
+        assertThat(page.getContent()).extracting(BeerDTO::getBeerName)
+                .containsExactly("Test Beer 18", "Test Beer 16", "Test Beer 14", "Test Beer 12", "Test Beer 10");
+    }
+
+    @Test
+    void testListBeersSortedByPrice() {
+        Slice<BeerDTO> page = beerService.listBeers(null, BeerStyle.GOSE,
+                PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "price")));
+
+        assertThat(page.getContent()).extracting(BeerDTO::getBeerName)
+                .containsExactly("Test Beer 49", "Test Beer 47", "Test Beer 45");
+        assertThat(page.hasNext()).isTrue();
+        assertThat(beerService.listBeers(null, BeerStyle.GOSE,
+                PageRequest.of(8, 3, Sort.by(Sort.Direction.DESC, "price"))).hasNext()).isFalse();
+    }
+
+    @Test
+    void testNamePrefixMatchesWildcardsLiterally() {
+        beerService.saveNewBeer(BeerDTO.builder().beerName("100% Stout").build());
+
+        assertThat(beerService.listBeers("100%", null, PageRequest.of(0, 10)).getContent())
+                .extracting(BeerDTO::getBeerName).containsExactly("100% Stout");
+        assertThat(beerService.listBeers("test_", null, PageRequest.of(0, 10)).getContent()).isEmpty();
+    }
+
+    @Test
+    void testPagingOnFromPreviousPageMatchesOffsetPaging() {
+        for (boolean descending : new boolean[]{false, true}) {
+            Sort sort = descending ? Sort.by(Sort.Direction.DESC, "beerName") : Sort.unsorted();
+            List<String> walked = new ArrayList<>();
+
+            // each page seeks past the last beer of the one before
+            for (Pageable pageable = PageRequest.of(0, 7, sort); ; pageable = pageable.next()) {
+                Slice<BeerDTO> page = beerService.listBeers("test", BeerStyle.STOUT, pageable);
+                page.getContent().forEach(beer -> walked.add(beer.getBeerName()));
+                if (!page.hasNext()) {
+                    break;
+                }
+            }
+
+            // without the previous page cached in a fresh service, page 2 is read with an offset
+            try (JdbcBeerService fresh = newService()) {
+                assertThat(fresh.listBeers("test", BeerStyle.STOUT, PageRequest.of(2, 7, sort)).getContent())
+                        .extracting(BeerDTO::getBeerName)
+                        .containsExactlyElementsOf(walked.subList(14, 21));
+            }
+
+            List<String> expected = beerService.listBeers("test", BeerStyle.STOUT, Pageable.unpaged(sort))
+                    .getContent().stream().map(BeerDTO::getBeerName).toList();
+            assertThat(walked).hasSize(25).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void testPagingAfterWriteSeesTheWrite() {
+        Pageable firstPage = PageRequest.of(0, 10);
+        beerService.listBeers(null, null, firstPage);
+
+        // sorts into the first page, the boundary remembered for it is stale now
+        beerService.saveNewBeer(BeerDTO.builder().beerName("Test Beer 00a").build());
+
+        assertThat(beerService.listBeers(null, null, firstPage.next()).getContent().get(0).getBeerName())
+                .isEqualTo("Test Beer 09");
+    }
+
+    @Test
+    void testListBeersAfterCursor() {
+        for (boolean descending : new boolean[]{false, true}) {
+            List<String> walked = new ArrayList<>();
+            BeerCursor after = null;
+            BeerDTO inserted = null;
+
+            for (int slices = 0; ; slices++) {
+                Slice<BeerDTO> slice = beerService.listBeersAfter("test", BeerStyle.STOUT, after, 7, descending);
+                slice.getContent().forEach(beer -> walked.add(beer.getBeerName()));
+
+                if (slices == 1) {
+                    // sorts before the cursor whichever the direction, the next slices go on where they were
+                    inserted = beerService.saveNewBeer(BeerDTO.builder()
+                            .beerName(descending ? "Test Beer 99" : "Test Beer 00a")
+                            .beerStyle(BeerStyle.STOUT)
+                            .build());
+                }
+                if (!slice.hasNext()) {
+                    break;
+                }
+                after = BeerCursor.after(slice.getContent().get(slice.getNumberOfElements() - 1));
+            }
+
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 50; i += 2) {
+                expected.add(String.format("Test Beer %02d", i));
+            }
+            assertThat(walked).containsExactlyElementsOf(descending ? expected.reversed() : expected);
+            beerService.deleteById(inserted.getId());
+        }
+    }
+
+    @Test
+    void testCursorBreaksNameTiesById() {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(beerService.saveNewBeer(BeerDTO.builder().beerName("Twin").upc("twin-" + i).build()).getId());
+        }
+
+        List<UUID> walked = new ArrayList<>();
+        BeerCursor after = null;
+        for (;;) {
+            Slice<BeerDTO> slice = beerService.listBeersAfter("twin", null, after, 2, false);
+            slice.getContent().forEach(beer -> walked.add(beer.getId()));
+            if (!slice.hasNext()) {
+                break;
+            }
+            after = BeerCursor.after(slice.getContent().get(slice.getNumberOfElements() - 1));
+        }
+
+        assertThat(walked).hasSize(5).containsExactlyInAnyOrderElementsOf(ids);
+    }
+
+    @Test
+    void testConcurrentSavesAreAllInserted() {
+        List<CompletableFuture<BeerDTO>> saves = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(16)) {
+            for (int i = 0; i < 500; i++) {
+                BeerDTO beer = BeerDTO.builder().beerName("Burst " + i).upc("burst-" + i).build();
+                saves.add(CompletableFuture.supplyAsync(() -> beerService.saveNewBeer(beer), executor));
+            }
+            // one duplicate in the burst fails alone, not the batch it landed in
+            saves.add(CompletableFuture.supplyAsync(() -> beerService.saveNewBeer(BeerDTO.builder()
+                    .beerName("Duplicate").upc("upc-1").build()), executor));
+        }
+
+        assertThat(saves.subList(0, 500)).allMatch(save -> !save.isCompletedExceptionally());
+        assertThat(saves.get(500)).isCompletedExceptionally();
+        assertThat(beerService.listBeers("burst", null, PageRequest.of(0, 1000)).getContent()).hasSize(500);
+        assertThat(beerService.getModificationCount()).isEqualTo(550);
+    }
+
+    @Test
+    void testUpsertBeers() {
+        BeerDTO existing = beerService.listBeers("test beer 05", null, PageRequest.of(0, 1)).getContent().get(0);
+
+        List<BeerBatchResult> results = beerService.upsertBeers(List.of(
+                BeerDTO.builder().beerName("Upserted").upc("upc-5").build(),
+                BeerDTO.builder().beerName("New").upc("new-1").build(),
+                BeerDTO.builder().id(UUID.randomUUID()).beerName("Clash").upc("upc-6").build()));
+
+        assertThat(results).extracting(BeerBatchResult::getStatus).containsExactly(BeerBatchResult.Status.UPDATED,
+                BeerBatchResult.Status.CREATED, BeerBatchResult.Status.FAILED);
+        assertThat(results.get(0).getId()).isEqualTo(existing.getId());
+        assertThat(beerService.getBeerById(existing.getId()).orElseThrow().getBeerName()).isEqualTo("Upserted");
+        assertThat(beerService.getBeerById(results.get(1).getId())).isPresent();
+    }
+
+    @Test
+    void testUpsertBeersFallBackRowByRow() {
+        BeerDTO first = beerService.listBeers("test beer 07", null, PageRequest.of(0, 1)).getContent().get(0);
+        BeerDTO second = beerService.listBeers("test beer 08", null, PageRequest.of(0, 1)).getContent().get(0);
+
+        List<BeerBatchResult> results = beerService.upsertBeers(List.of(
+                BeerDTO.builder().beerName("Once").upc("upc-7").build(),
+                BeerDTO.builder().id(second.getId()).beerName("Taken").upc("upc-9").build(),
+                BeerDTO.builder().id(first.getId()).beerName("Twice").upc("upc-7").build()));
+
+        // the upc clash fails the batch, the items are written one by one then and only the clash fails
+        assertThat(results).extracting(BeerBatchResult::getStatus).containsExactly(BeerBatchResult.Status.UPDATED,
+                BeerBatchResult.Status.FAILED, BeerBatchResult.Status.UPDATED);
+        assertThat(beerService.getBeerById(first.getId()).orElseThrow())
+                .extracting(BeerDTO::getBeerName, BeerDTO::getVersion)
+                .containsExactly("Twice", first.getVersion() + 2);
+        assertThat(beerService.getBeerById(second.getId()).orElseThrow().getBeerName()).isEqualTo(second.getBeerName());
+    }
+
+    @Test
+    void testUpsertBeersUpdatesWhatAnEarlierItemCreated() {
+        UUID newId = UUID.randomUUID();
+
+        List<BeerBatchResult> results = beerService.upsertBeers(List.of(
+                BeerDTO.builder().beerName("New").upc("new-1").build(),
+                BeerDTO.builder().id(newId).beerName("With Id").upc("new-2").build(),
+                BeerDTO.builder().beerName("New Again").upc("new-1").build(),
+                BeerDTO.builder().id(newId).beerName("With Id Again").upc("new-2").build()));
+
+        assertThat(results).extracting(BeerBatchResult::getStatus).containsExactly(BeerBatchResult.Status.CREATED,
+                BeerBatchResult.Status.CREATED, BeerBatchResult.Status.UPDATED, BeerBatchResult.Status.UPDATED);
+        assertThat(results.get(2).getId()).isEqualTo(results.get(0).getId());
+        assertThat(results.get(3).getId()).isEqualTo(newId);
+        assertThat(beerService.getBeerById(results.get(0).getId()).orElseThrow().getBeerName()).isEqualTo("New Again");
+        assertThat(beerService.getBeerById(newId).orElseThrow().getBeerName()).isEqualTo("With Id Again");
+    }
+
+    @Test
+    void testUpsertBeersBatchesUpdates() {
+        BeerDTO first = beerService.listBeers("test beer 07", null, PageRequest.of(0, 1)).getContent().get(0);
+        BeerDTO second = beerService.listBeers("test beer 08", null, PageRequest.of(0, 1)).getContent().get(0);
+        long modifications = beerService.getModificationCount();
+
+        List<BeerBatchResult> results = beerService.upsertBeers(List.of(
+                BeerDTO.builder().beerName("First").upc("upc-7").build(),
+                BeerDTO.builder().id(second.getId()).beerName("Second").upc("upc-8").build()));
+
+        assertThat(results).extracting(BeerBatchResult::getId).containsExactly(first.getId(), second.getId());
+        assertThat(beerService.getModificationCount()).isEqualTo(modifications + 2);
+        assertThat(beerService.getBeerById(second.getId()).orElseThrow())
+                .extracting(BeerDTO::getBeerName, BeerDTO::getVersion)
+                .containsExactly("Second", second.getVersion() + 1);
+    }
+
+    @Test
+    void testSearchReadsCurrentRows() {
+        BeerDTO beer = beerService.listBeers("test beer 42", null, PageRequest.of(0, 1)).getContent().get(0);
+        beerService.patchBeerById(beer.getId(), BeerDTO.builder().quantityOnHand(5).build());
+
+        assertThat(beerService.searchBeers("upc-42", PageRequest.of(0, 10)).getContent().get(0).getQuantityOnHand())
+                .isEqualTo(5);
+
+        // rebuilt from the table
+        try (JdbcBeerService restarted = newService()) {
+            assertThat(restarted.searchBeers("upc-42", PageRequest.of(0, 10)).getContent().get(0).getId())
+                    .isEqualTo(beer.getId());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OffHeapBeerStoreTest {
+
+    OffHeapBeerStore store = new OffHeapBeerStore();
+
+    @Test
+    void testRoundTripsEveryField() {
+        BeerDTO beer = BeerDTO.builder()
+                .id(UUID.randomUUID())
+                .version(1)
+                .beerName("Galaxy Cät")
+                .beerStyle(BeerStyle.PALE_ALE)
+                .upc("12356")
+                .price(new BigDecimal("12.99"))
+                .quantityOnHand(122)
+                .createdDate(LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123456789))
+                .updateDate(LocalDateTime.of(2024, 5, 2, 8, 0))
+                .build();
+
+        store.insert(beer);
+
+        assertThat(store.get(beer.getId())).contains(beer);
+    }
+
+    @Test
+    void testGetAllSkipsMissingIds() {
+        BeerDTO first = store.insert(BeerDTO.builder().id(UUID.randomUUID()).beerName("First").build());
+        BeerDTO second = store.insert(BeerDTO.builder().id(UUID.randomUUID()).beerName("Second").build());
+        UUID missing = UUID.randomUUID();
+
+        assertThat(store.getAll(List.of(first.getId(), missing, second.getId())))
+                .containsOnlyKeys(first.getId(), second.getId())
+                .containsEntry(second.getId(), second);
+    }
+
+    @Test
+    void testRoundTripsNulls() {
+        BeerDTO beer = BeerDTO.builder().id(UUID.randomUUID()).build();
+
+        store.insert(beer);
+
+        assertThat(store.get(beer.getId())).contains(beer);
+    }
+
+    @Test
+    void testPriceIsStoredAsCents() {
+        BeerDTO beer = store.insert(BeerDTO.builder().id(UUID.randomUUID()).price(new BigDecimal("4.5")).build());
+
+        assertThat(beer.getPrice()).isEqualTo(new BigDecimal("4.50"));
+    }
+
+    @Test
+    void testUpdateRemoveAndVersionConflict() {
+        UUID beerId = UUID.randomUUID();
+        store.insert(BeerDTO.builder().id(beerId).version(1).beerName("First").build());
+
+        BeerDTO updated = store.update(beerId, 1, existing -> existing.toBuilder().beerName("Second").build()).orElseThrow();
+        assertThat(updated.getVersion()).isEqualTo(2);
+        assertThat(store.get(beerId).orElseThrow().getBeerName()).isEqualTo("Second");
+
+        assertThatThrownBy(() -> store.update(beerId, 1, existing -> existing))
+                .isInstanceOf(VersionConflictException.class);
+        assertThatThrownBy(() -> store.insert(BeerDTO.builder().id(beerId).build()))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(store.remove(beerId)).isPresent();
+        assertThat(store.get(beerId)).isEmpty();
+        assertThat(store.size()).isZero();
+        assertThat(store.getModificationCount()).isEqualTo(3);
+    }
+
+    @Test
+    void testCompactionKeepsLiveRecords() {
+        int beers = 1000;
+        UUID[] ids = new UUID[beers];
+        for (int i = 0; i < beers; i++) {
+            ids[i] = UUID.randomUUID();
+            store.insert(BeerDTO.builder().id(ids[i]).version(1).quantityOnHand(0).beerName("Beer " + i).build());
+        }
+
+        // enough rewrites to leave several chunks of garbage behind
+        for (int round = 0; round < 500; round++) {
+            for (UUID id : ids) {
+                store.update(id, existing -> existing.toBuilder().quantityOnHand(existing.getQuantityOnHand() + 1).build());
+            }
+        }
+
+        assertThat(store.getStorageBytes()).isLessThan(20L * 1024 * 1024);
+        assertThat(store.size()).isEqualTo(beers);
+        for (int i = 0; i < beers; i++) {
+            BeerDTO beer = store.get(ids[i]).orElseThrow();
+            assertThat(beer.getQuantityOnHand()).isEqualTo(500);
+            assertThat(beer.getBeerName()).isEqualTo("Beer " + i);
+        }
+    }
+
+    @Test
+    void testBeerServiceOnOffHeapStore() {
+        BeerServiceImpl beerService = new BeerServiceImpl(store);
+
+        assertThat(beerService.listBeers()).hasSize(3);
+        assertThat(store.values()).hasSize(3);
+    }
+}
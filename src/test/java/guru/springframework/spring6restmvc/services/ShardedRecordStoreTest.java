@@ -0,0 +1,180 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardedRecordStoreTest {
+
+    List<VersionedStore<BeerDTO>> shards = List.of(new VersionedStore<>(), new VersionedStore<>(),
+            new VersionedStore<>(), new VersionedStore<>());
+    ShardedRecordStore<BeerDTO> store = new ShardedRecordStore<>(shards);
+
+    List<UUID> insertBeers(int count) {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(store.insert(BeerDTO.builder().id(UUID.randomUUID()).version(1).quantityOnHand(0).build()).getId());
+        }
+
+        return ids;
+    }
+
+    @Test
+    void testRingSpreadsIdsEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(4, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+        int[] owned = new int[4];
+
+        for (int i = 0; i < 100_000; i++) {
+            owned[ring.owner(UUID.randomUUID())]++;
+        }
+
+        for (int count : owned) {
+            assertThat(count).isBetween(18_000, 32_000);
+        }
+    }
+
+    @Test
+    void testAddingNodeMovesOnlyItsShare() {
+        ConsistentHashRing ring = new ConsistentHashRing(4, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+        ConsistentHashRing grown = ring.withNode();
+        int moved = 0;
+
+        for (int i = 0; i < 100_000; i++) {
+            UUID id = UUID.randomUUID();
+            int owner = grown.owner(id);
+
+            if (owner != ring.owner(id)) {
+                // only ever to the new node
+                assertThat(owner).isEqualTo(4);
+                moved++;
+            }
+        }
+
+        // a fifth, give or take
+        assertThat(moved).isBetween(14_000, 26_000);
+    }
+
+    @Test
+    void testWritesAreRoutedToOneShard() {
+        List<UUID> ids = insertBeers(1000);
+
+        assertThat(shards).allMatch(shard -> shard.size() > 0);
+        assertThat(shards.stream().mapToInt(VersionedStore::size).sum()).isEqualTo(1000);
+        assertThat(store.size()).isEqualTo(1000);
+        assertThat(store.values()).hasSize(1000);
+        assertThat(store.stream().count()).isEqualTo(1000);
+        assertThat(store.getAll(ids.subList(0, 100))).hasSize(100).containsOnlyKeys(ids.subList(0, 100));
+        assertThat(store.getModificationCount()).isEqualTo(1000);
+
+        store.update(ids.get(0), beer -> beer.toBuilder().quantityOnHand(5).build());
+        store.remove(ids.get(1));
+
+        assertThat(store.get(ids.get(0)).orElseThrow().getQuantityOnHand()).isEqualTo(5);
+        assertThat(store.get(ids.get(1))).isEmpty();
+        assertThat(store.getModificationCount()).isEqualTo(1002);
+    }
+
+    @Test
+    void testAddShardMovesItsShareWithoutNotifyingListeners() {
+        List<UUID> ids = insertBeers(10_000);
+        AtomicInteger notified = new AtomicInteger();
+        store.addListener((previous, current) -> notified.incrementAndGet());
+        VersionedStore<BeerDTO> added = new VersionedStore<>();
+
+        store.addShard(added);
+
+        assertThat(store.getShardCount()).isEqualTo(5);
+        assertThat(added.size()).isBetween(1_400, 2_600);
+        assertThat(store.size()).isEqualTo(10_000);
+        assertThat(store.getAll(ids)).hasSize(10_000);
+        assertThat(notified).hasValue(0);
+
+        // moved beers are written where they live now
+        UUID movedId = added.values().get(0).getId();
+        store.update(movedId, beer -> beer.toBuilder().quantityOnHand(7).build());
+        assertThat(added.get(movedId).orElseThrow().getQuantityOnHand()).isEqualTo(7);
+        assertThat(notified).hasValue(1);
+    }
+
+    @Test
+    void testWritesDuringAddShardAreNotLost() throws Exception {
+        List<UUID> ids = insertBeers(1000);
+        int threads = 8;
+        int updatesPerThread = 2000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                for (int j = 0; j < updatesPerThread; j++) {
+                    UUID id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+                    store.update(id, beer -> beer.toBuilder().quantityOnHand(beer.getQuantityOnHand() + 1).build());
+                }
+            });
+        }
+        store.addShard(new VersionedStore<>());
+        store.addShard(new VersionedStore<>());
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(store.values().stream().mapToInt(BeerDTO::getQuantityOnHand).sum())
+                .isEqualTo(threads * updatesPerThread);
+    }
+
+    @Test
+    void testListenersSeeWritesDuringAddShard() throws Exception {
+        List<UUID> ids = insertBeers(1000);
+        AtomicInteger notified = new AtomicInteger();
+        store.addListener((previous, current) -> notified.incrementAndGet());
+        AtomicInteger written = new AtomicInteger();
+        int threads = 8;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                for (int j = 0; j < 2000; j++) {
+                    if (j % 4 == 0) {
+                        store.insert(BeerDTO.builder().id(UUID.randomUUID()).version(1).quantityOnHand(0).build());
+                        written.incrementAndGet();
+                    } else {
+                        UUID id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+                        store.update(id, beer -> beer.toBuilder().quantityOnHand(beer.getQuantityOnHand() + 1).build())
+                                .ifPresent(updated -> written.incrementAndGet());
+                    }
+                }
+            });
+        }
+        for (int i = 0; i < 4; i++) {
+            store.addShard(new VersionedStore<>());
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(notified).hasValue(written.get());
+        assertThat(store.size()).isEqualTo(1000 + threads * 500);
+    }
+
+    @Test
+    void testBeerServiceOverOffHeapShards() {
+        BeerServiceImpl beerService = new BeerServiceImpl(new ShardedRecordStore<>(List.of(new OffHeapBeerStore(),
+                new OffHeapBeerStore(), new OffHeapBeerStore())));
+
+        for (int i = 0; i < 100; i++) {
+            beerService.saveNewBeer(BeerDTO.builder().beerName(String.format("Sharded Beer %03d", i)).build());
+        }
+
+        assertThat(beerService.listBeers()).hasSize(103);
+        assertThat(beerService.listBeers("sharded", null, PageRequest.of(9, 10)).getContent()).hasSize(10);
+        assertThat(beerService.listBeers("sharded", null, PageRequest.of(9, 10)).hasNext()).isFalse();
+    }
+}
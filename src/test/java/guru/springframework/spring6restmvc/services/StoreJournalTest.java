@@ -0,0 +1,156 @@
+package guru.springframework.spring6restmvc.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StoreJournalTest {
+
+    @TempDir
+    Path directory;
+
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    void testRecoverFromSnapshotAndLog() throws IOException {
+        BeerServiceImpl beerService = new BeerServiceImpl();
+        UUID updatedId;
+        UUID deletedId;
+
+        try (StoreJournal<BeerDTO> journal = journal()) {
+            journal.open(beerService.getBeerStore());
+
+            updatedId = beerService.saveNewBeer(BeerDTO.builder().beerName("Journaled").price(new BigDecimal("9.99")).build()).getId();
+            deletedId = beerService.saveNewBeer(BeerDTO.builder().beerName("Deleted").build()).getId();
+            beerService.patchBeerById(updatedId, BeerDTO.builder().quantityOnHand(7).build());
+            journal.snapshot();
+            beerService.patchBeerById(updatedId, BeerDTO.builder().beerName("After Snapshot").build());
+            beerService.deleteById(deletedId);
+        }
+
+        BeerServiceImpl restarted = new BeerServiceImpl();
+        try (StoreJournal<BeerDTO> journal = journal()) {
+            journal.open(restarted.getBeerStore());
+        }
+
+        assertThat(restarted.listBeers()).hasSize(4);
+        assertThat(restarted.getBeerById(deletedId)).isEmpty();
+
+        BeerDTO updated = restarted.getBeerById(updatedId).orElseThrow();
+        assertThat(updated.getBeerName()).isEqualTo("After Snapshot");
+        assertThat(updated.getQuantityOnHand()).isEqualTo(7);
+        assertThat(updated.getPrice()).isEqualByComparingTo("9.99");
+        assertThat(updated.getVersion()).isEqualTo(3);
+        // the indexes are rebuilt as well
+        assertThat(restarted.listBeers("after", null, Pageable.unpaged()).getContent())
+                .extracting(BeerDTO::getId).containsExactly(updatedId);
+    }
+
+    @Test
+    void testTornRecordIsIgnored() throws IOException {
+        BeerServiceImpl beerService = new BeerServiceImpl();
+        UUID keptId;
+
+        try (StoreJournal<BeerDTO> journal = journal()) {
+            journal.open(beerService.getBeerStore());
+            keptId = beerService.saveNewBeer(BeerDTO.builder().beerName("Kept").build()).getId();
+            beerService.saveNewBeer(BeerDTO.builder().beerName("Torn").build());
+        }
+
+        // damage the last record of the newest segment
+        List<Long> segments = WriteAheadLog.segments(directory, "beers");
+        Path segment = WriteAheadLog.segmentPath(directory, "beers", segments.get(segments.size() - 1));
+        int[] lastRecord = new int[2];
+        WriteAheadLog.read(segment, (type, payload) -> {
+            lastRecord[0] += lastRecord[1];
+            lastRecord[1] = WriteAheadLog.HEADER_SIZE + payload.length;
+        });
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'x'}), lastRecord[0] + WriteAheadLog.HEADER_SIZE + 2);
+        }
+
+        BeerServiceImpl restarted = new BeerServiceImpl();
+        try (StoreJournal<BeerDTO> journal = journal()) {
+            journal.open(restarted.getBeerStore());
+        }
+
+        assertThat(restarted.getBeerById(keptId)).isPresent();
+        assertThat(restarted.listBeers()).hasSize(4);
+    }
+
+    @Test
+    void testFailedAppendAbortsTheWrite() throws IOException {
+        // prices cannot be journaled, so any write of a priced beer fails to append
+        ObjectMapper failingPrices = Jackson2ObjectMapperBuilder.json()
+                .serializerByType(BigDecimal.class, new JsonSerializer<BigDecimal>() {
+                    @Override
+                    public void serialize(BigDecimal value, JsonGenerator gen, SerializerProvider serializers)
+                            throws IOException {
+                        throw new IOException("Cannot journal " + value);
+                    }
+                })
+                .build();
+
+        for (RecordStore<BeerDTO> store : List.of(new VersionedStore<BeerDTO>(), new OffHeapBeerStore())) {
+            AtomicInteger notified = new AtomicInteger();
+            store.addListener((previous, current) -> notified.incrementAndGet());
+            UUID beerId = UUID.randomUUID();
+
+            try (StoreJournal<BeerDTO> journal = new StoreJournal<>(directory.resolve(store.getClass().getSimpleName()),
+                    "beers", BeerDTO.class, failingPrices, true, Duration.ofMillis(1), Duration.ofHours(1))) {
+                journal.open(store);
+                store.insert(BeerDTO.builder().id(beerId).version(1).beerName("Unpriced").build());
+
+                assertThatThrownBy(() -> store.update(beerId,
+                        beer -> beer.toBuilder().price(new BigDecimal("4.99")).build()))
+                        .isInstanceOf(UncheckedIOException.class);
+                assertThatThrownBy(() -> store.insert(BeerDTO.builder().id(UUID.randomUUID()).version(1)
+                        .price(BigDecimal.ONE).build()))
+                        .isInstanceOf(UncheckedIOException.class);
+
+                // neither failed write was published nor seen by listeners
+                BeerDTO beer = store.get(beerId).orElseThrow();
+                assertThat(beer.getPrice()).isNull();
+                assertThat(beer.getVersion()).isEqualTo(1);
+                assertThat(store.size()).isEqualTo(1);
+                assertThat(notified).hasValue(1);
+
+                store.update(beerId, unpriced -> unpriced.toBuilder().beerName("Renamed").build());
+            }
+
+            VersionedStore<BeerDTO> restarted = new VersionedStore<>();
+            try (StoreJournal<BeerDTO> journal = new StoreJournal<>(directory.resolve(store.getClass().getSimpleName()),
+                    "beers", BeerDTO.class, objectMapper, true, Duration.ofMillis(1), Duration.ofHours(1))) {
+                journal.open(restarted);
+            }
+
+            assertThat(restarted.values()).extracting(BeerDTO::getBeerName).containsExactly("Renamed");
+        }
+    }
+
+    StoreJournal<BeerDTO> journal() {
+        return new StoreJournal<>(directory, "beers", BeerDTO.class, objectMapper,
+                true, Duration.ofMillis(1), Duration.ofHours(1));
+    }
+}
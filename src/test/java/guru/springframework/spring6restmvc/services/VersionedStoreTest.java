@@ -0,0 +1,64 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VersionedStoreTest {
+
+    VersionedStore<BeerDTO> store = new VersionedStore<>();
+
+    @Test
+    void testConcurrentUpdatesAreNotLost() throws Exception {
+        UUID beerId = UUID.randomUUID();
+        BeerDTO original = store.insert(BeerDTO.builder().id(beerId).version(1).quantityOnHand(0).build());
+
+        int threads = 8;
+        int updatesPerThread = 1000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                for (int j = 0; j < updatesPerThread; j++) {
+                    store.update(beerId, existing -> existing.toBuilder()
+                            .quantityOnHand(existing.getQuantityOnHand() + 1)
+                            .build());
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        BeerDTO updated = store.get(beerId).orElseThrow();
+        assertThat(updated.getQuantityOnHand()).isEqualTo(threads * updatesPerThread);
+        assertThat(updated.getVersion()).isEqualTo(threads * updatesPerThread + 1);
+        // snapshots are never mutated in place
+        assertThat(original.getQuantityOnHand()).isZero();
+        assertThat(original.getVersion()).isEqualTo(1);
+    }
+
+    @Test
+    void testUpdateAndRemoveMissingId() {
+        UUID missing = UUID.randomUUID();
+
+        assertThat(store.update(missing, existing -> existing.toBuilder().build())).isEmpty();
+        assertThat(store.remove(missing)).isEmpty();
+    }
+
+    @Test
+    void testInsertAfterRemove() {
+        UUID beerId = UUID.randomUUID();
+        store.insert(BeerDTO.builder().id(beerId).version(1).beerName("First").build());
+        store.remove(beerId);
+        store.insert(BeerDTO.builder().id(beerId).version(1).beerName("Second").build());
+
+        assertThat(store.get(beerId)).get().extracting(BeerDTO::getBeerName).isEqualTo("Second");
+        assertThat(store.size()).isEqualTo(1);
+    }
+}